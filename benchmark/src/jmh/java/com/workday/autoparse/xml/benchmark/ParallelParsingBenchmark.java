@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.benchmark;
+
+import com.workday.autoparse.xml.context.XmlParserSettings;
+import com.workday.autoparse.xml.context.XmlParserSettingsBuilder;
+import com.workday.autoparse.xml.parser.ParseException;
+import com.workday.autoparse.xml.parser.UnexpectedChildException;
+import com.workday.autoparse.xml.parser.UnknownElementException;
+import com.workday.autoparse.xml.parser.XmlStreamParser;
+import com.workday.autoparse.xml.parser.XmlStreamParserFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how parsing a large document in parallel scales with the number of threads, compared
+ * to parsing it sequentially.
+ *
+ * @since 1.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelParsingBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The name of a {@link XmlParserSettings.ReaderBackend}.
+     */
+    @Param({"PULL_PARSER", "BUILT_IN"})
+    public String backend;
+
+    /**
+     * The parallelism of the pool the children are parsed on.
+     */
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    /**
+     * The number of children of the root element. Each takes about 150 bytes.
+     */
+    @Param({"100000"})
+    public int children;
+
+    private XmlStreamParser parser;
+    private ForkJoinPool pool;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        XmlParserSettings settings =
+                new XmlParserSettingsBuilder()
+                        .withReaderBackend(XmlParserSettings.ReaderBackend.valueOf(backend))
+                        .build();
+        parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+        pool = new ForkJoinPool(threads);
+        bytes = newDocument(children);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Object parseSequentially()
+            throws ParseException, UnexpectedChildException, UnknownElementException {
+        return parser.parse(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public Object parseParallel()
+            throws ParseException, UnexpectedChildException, UnknownElementException {
+        return parser.parseParallel(bytes, 0, bytes.length, pool);
+    }
+
+    private static byte[] newDocument(int children) {
+        StringBuilder builder = new StringBuilder("<Root_Model>\n");
+        for (int i = 0; i < children; i += 2) {
+            builder.append("    <Repeated_Child_Model value=\"")
+                   .append(i)
+                   .append("\">Text content number ")
+                   .append(i)
+                   .append(" with an &amp; entity.</Repeated_Child_Model>\n")
+                   .append("    <Alternate_Attribute_Model int1=\"")
+                   .append(i)
+                   .append("\"/>\n");
+        }
+        builder.append("</Root_Model>\n");
+        return builder.toString().getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.benchmark;
+
+import com.workday.autoparse.xml.context.XmlParserSettings;
+import com.workday.autoparse.xml.context.XmlParserSettingsBuilder;
+import com.workday.autoparse.xml.parser.ParseException;
+import com.workday.autoparse.xml.parser.UnexpectedChildException;
+import com.workday.autoparse.xml.parser.UnknownElementException;
+import com.workday.autoparse.xml.parser.XmlStreamParser;
+import com.workday.autoparse.xml.parser.XmlStreamParserFactory;
+import com.workday.autoparse.xml.stax.StaxXmlStreamReaderProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to parse the demo models with each reader backend.
+ *
+ * @since 1.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReaderBackendBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The name of a {@link XmlParserSettings.ReaderBackend}, or "STAX" for the StAX provider.
+     */
+    @Param({"PULL_PARSER", "BUILT_IN", "STAX"})
+    public String backend;
+
+    /**
+     * "input.xml" for the small demo document, or "large" for a generated document with many
+     * children.
+     */
+    @Param({"input.xml", "large"})
+    public String document;
+
+    private XmlStreamParser parser;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        XmlParserSettingsBuilder builder = new XmlParserSettingsBuilder();
+        if ("STAX".equals(backend)) {
+            builder.withReaderProvider(new StaxXmlStreamReaderProvider());
+        } else {
+            builder.withReaderBackend(XmlParserSettings.ReaderBackend.valueOf(backend));
+        }
+        parser = XmlStreamParserFactory.newXmlStreamParser(builder.build());
+        bytes = "large".equals(document) ? newLargeDocument() : readResource(document);
+    }
+
+    @Benchmark
+    public Object parse()
+            throws ParseException, UnexpectedChildException, UnknownElementException {
+        return parser.parseStream(new ByteArrayInputStream(bytes));
+    }
+
+    @Benchmark
+    public Object parseBytes()
+            throws ParseException, UnexpectedChildException, UnknownElementException {
+        return parser.parse(bytes, 0, bytes.length);
+    }
+
+    private static byte[] newLargeDocument() {
+        StringBuilder builder = new StringBuilder("<Root_Model>\n");
+        for (int i = 0; i < 1000; i++) {
+            builder.append("    <Repeated_Child_Model value=\"")
+                   .append(i)
+                   .append("\">Text content number ")
+                   .append(i)
+                   .append(" with an &amp; entity.</Repeated_Child_Model>\n")
+                   .append("    <Alternate_Attribute_Model int1=\"")
+                   .append(i)
+                   .append("\"/>\n");
+        }
+        builder.append("</Root_Model>\n");
+        return builder.toString().getBytes(UTF_8);
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        InputStream in = ReaderBackendBenchmark.class.getResourceAsStream(
+                "/com/workday/autoparse/xml/demo/" + name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates to the Autoparse framework that instances of the target class, which must also be
+ * annotated with {@link XmlElement}, may be reused for later elements instead of instantiating a
+ * new object for each. The generated parser then implements {@link
+ * com.workday.autoparse.xml.parser.RecyclingXmlElementParser}, and takes its instances from the
+ * {@link com.workday.autoparse.xml.parser.ModelPool} of the parser settings, if there is one.
+ * <p/>
+ * When an instance is recycled, every field annotated with {@link XmlAttribute} or {@link
+ * XmlTextContent} is reset to the value it has in a newly constructed instance, including any
+ * initializer, every singleton field annotated with {@link XmlChildElement} to null, and every
+ * collection field annotated with {@link XmlChildElement} is cleared, so that it can be filled
+ * again without being reallocated. Setters annotated with {@link XmlAttribute} or {@link
+ * XmlTextContent} are called with the default value of their type, 0, false or null. Anything
+ * else, such as state computed in an {@link XmlPostParse} method, must be reset by the class
+ * itself.
+ *
+ * @since 1.3
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface XmlRecyclable {
+}
@@ -7,6 +7,12 @@
 
 package com.workday.autoparse.xml.annotations;
 
+import com.workday.autoparse.xml.parser.Base64TextDecoder;
+import com.workday.autoparse.xml.parser.XmlTextConsumer;
+import com.workday.autoparse.xml.utils.StringTransformer;
+
+import java.io.OutputStream;
+import java.io.Reader;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -14,9 +20,24 @@ import java.lang.annotation.Target;
 
 /**
  * Indicates to the Autoparse framework that the target field should be inflated from the text
- * context of the element. This annotation only makes sense when applied to a {@link String}. This
- * annotation can also be applied to a setter method. The target method must be non-private and must
- * take exactly one parameter, which is of type String.
+ * context of the element. The field is usually a {@link String}, but may be of any of the types
+ * listed below. This annotation can also be applied to a setter method. The target method must be
+ * non-private and must take exactly one parameter, of one of the same types.
+ * <p/>
+ * Long text, such as large CDATA sections or embedded binary data, can be read without ever
+ * building one String from it by using one of the following types instead of String. None of them
+ * have the {@link StringTransformer}s applied.
+ * <ul>
+ * <li>{@link CharSequence}, which receives the text without the copy into a String.</li>
+ * <li>{@code byte[]}, which receives the text decoded as base64 as it is read.</li>
+ * <li>{@link Reader}, for setters only, which reads the text straight from the document. The
+ * reader is only valid until the setter returns, and any text it leaves unread is skipped.</li>
+ * <li>A type that implements {@link XmlTextConsumer}, for fields only, which is passed the text in
+ * chunks as it is read. The field must be initialized by the model. {@link Base64TextDecoder}
+ * decodes base64 text into an {@link OutputStream} this way.</li>
+ * </ul>
+ * Text is only read in bounded memory by readers that decode text as they go, such as the built-in
+ * one; others build each text event as a String first.
  *
  * @author nathan.taylor
  * @since 2013-9-26-11:10
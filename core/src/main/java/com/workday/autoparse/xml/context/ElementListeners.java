@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.context;
+
+import com.workday.autoparse.xml.parser.XmlElementListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The {@link XmlElementListener}s registered with an {@link XmlParserSettingsBuilder}. Listeners
+ * registered for a type receive instances of that type and its subtypes; the listeners for each
+ * concrete class are looked up once and then cached. Clients should not need to use this class.
+ *
+ * @since 1.3
+ */
+public final class ElementListeners {
+
+    static final ElementListeners NONE = new ElementListeners(
+            Collections.<Class<?>, List<XmlElementListener<Object>>>emptyMap(),
+            Collections.<String, List<XmlElementListener<Object>>>emptyMap(),
+            true);
+
+    private final Map<Class<?>, List<XmlElementListener<Object>>> typeListeners;
+    private final Map<String, List<XmlElementListener<Object>>> nameListeners;
+    private final boolean retainElements;
+    private final ConcurrentMap<Class<?>, List<XmlElementListener<Object>>> listenersByClass =
+            new ConcurrentHashMap<>();
+
+    ElementListeners(Map<Class<?>, List<XmlElementListener<Object>>> typeListeners,
+                     Map<String, List<XmlElementListener<Object>>> nameListeners,
+                     boolean retainElements) {
+        this.typeListeners = copy(typeListeners);
+        this.nameListeners = copy(nameListeners);
+        this.retainElements = retainElements;
+    }
+
+    public boolean isEmpty() {
+        return typeListeners.isEmpty() && nameListeners.isEmpty();
+    }
+
+    /**
+     * Passes {@code element} to the listeners registered for its type, in the order they were
+     * registered, followed by those registered for {@code name}.
+     *
+     * @return Whether the element should still be added to its parent, which is the case if no
+     * listener received it, or if the settings say to retain such elements.
+     */
+    public boolean onElement(String name, Object element) {
+        List<XmlElementListener<Object>> forType = getListenersFor(element.getClass());
+        List<XmlElementListener<Object>> forName = nameListeners.get(name);
+        for (XmlElementListener<Object> listener : forType) {
+            listener.onElement(element);
+        }
+        if (forName != null) {
+            for (XmlElementListener<Object> listener : forName) {
+                listener.onElement(element);
+            }
+        }
+        return retainElements || forType.isEmpty() && forName == null;
+    }
+
+    private static <K> Map<K, List<XmlElementListener<Object>>> copy(
+            Map<K, List<XmlElementListener<Object>>> listeners) {
+        Map<K, List<XmlElementListener<Object>>> copy = new LinkedHashMap<>();
+        for (Map.Entry<K, List<XmlElementListener<Object>>> entry : listeners.entrySet()) {
+            copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    private List<XmlElementListener<Object>> getListenersFor(Class<?> elementClass) {
+        List<XmlElementListener<Object>> listeners = listenersByClass.get(elementClass);
+        if (listeners == null) {
+            listeners = new ArrayList<>();
+            for (Map.Entry<Class<?>, List<XmlElementListener<Object>>> entry
+                    : typeListeners.entrySet()) {
+                if (entry.getKey().isAssignableFrom(elementClass)) {
+                    listeners.addAll(entry.getValue());
+                }
+            }
+            listeners = listeners.isEmpty()
+                        ? Collections.<XmlElementListener<Object>>emptyList()
+                        : Collections.unmodifiableList(listeners);
+            listenersByClass.put(elementClass, listeners);
+        }
+        return listeners;
+    }
+}
@@ -52,6 +52,7 @@ public class XmlParserContext {
         }
 
         KeyCollisionTester.validateMaps(components);
+        // The components are merged into a single table here, once per context.
         return new CompositeParserMap(components);
     }
 
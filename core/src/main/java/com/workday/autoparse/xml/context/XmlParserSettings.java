@@ -9,16 +9,22 @@ package com.workday.autoparse.xml.context;
 
 import com.workday.autoparse.xml.annotations.XmlElement;
 import com.workday.autoparse.xml.annotations.XmlUnknownElement;
+import com.workday.autoparse.xml.parser.ModelPool;
+import com.workday.autoparse.xml.parser.Projection;
 import com.workday.autoparse.xml.parser.UnknownElementException;
 import com.workday.autoparse.xml.parser.XmlElementParser;
 import com.workday.autoparse.xml.parser.XmlStreamParser;
 import com.workday.autoparse.xml.parser.XmlStreamParserFactory;
+import com.workday.autoparse.xml.parser.XmlStreamReader;
+import com.workday.autoparse.xml.parser.XmlStreamReaderProvider;
 import com.workday.autoparse.xml.utils.Preconditions;
 import com.workday.autoparse.xml.utils.StringTransformer;
 
+import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.ServiceLoader;
 
 /**
  * A collection of preferences that can be set when creating a new {@link XmlStreamParser}.
@@ -52,18 +58,52 @@ public class XmlParserSettings {
         PARSE
     }
 
+    /**
+     * The implementations of {@link XmlStreamReader} that the parser can read documents with.
+     */
+    public enum ReaderBackend {
+        /**
+         * Read documents with the {@link XmlStreamReaderProvider} registered through {@link
+         * ServiceLoader}, such as the one in the autoparse-xml-stax artifact. If no provider is
+         * registered, this behaves like {@link #PULL_PARSER}. Parsing fails with an {@link
+         * IllegalStateException} if a registered provider cannot be loaded or if several are
+         * registered; choose one with {@link XmlParserSettingsBuilder#withReaderProvider} then.
+         */
+        DISCOVERED,
+        /**
+         * Read documents with the XmlPull parser available on the classpath, such as the one built
+         * into Android.
+         */
+        PULL_PARSER,
+        /**
+         * Read documents with autoparse's own tokenizer, which works directly on the encoded bytes
+         * and only decodes the names, attributes and text that are actually requested. It is
+         * fastest for UTF-8 encoded input.
+         */
+        BUILT_IN
+    }
+
     private final UnknownElementHandling unknownElementHandling;
     private final boolean ignoreUnexpectedChildren;
     private final List<StringTransformer> stringTransformers;
     private final Class<?> unknownElementClass;
     private final XmlElementParser<?> unknownElementParser;
     private final Collection<String> partitionPackages;
+    private final int readerPoolSize;
+    private final ReaderBackend readerBackend;
+    private final XmlStreamReaderProvider readerProvider;
+    private final Charset charset;
+    private final ElementListeners elementListeners;
+    private final Projection projection;
+    private final ModelPool modelPool;
 
     XmlParserSettings(UnknownElementHandling unknownElementHandling,
                       boolean ignoreUnexpectedChildren,
                       Collection<String> partitionPackages) {
         this(unknownElementHandling, ignoreUnexpectedChildren, null, null,
-             Collections.<StringTransformer>emptyList(), partitionPackages);
+             Collections.<StringTransformer>emptyList(), partitionPackages,
+             XmlParserSettingsBuilder.DEFAULT_READER_POOL_SIZE, ReaderBackend.DISCOVERED,
+             null, null, ElementListeners.NONE, null, null);
     }
 
     XmlParserSettings(UnknownElementHandling unknownElementHandling,
@@ -71,9 +111,19 @@ public class XmlParserSettings {
                       Class<?> unknownElementClass,
                       XmlElementParser<?> unknownElementParser,
                       List<StringTransformer> stringTransformers,
-                      Collection<String> partitionPackages) {
+                      Collection<String> partitionPackages,
+                      int readerPoolSize,
+                      ReaderBackend readerBackend,
+                      XmlStreamReaderProvider readerProvider,
+                      Charset charset,
+                      ElementListeners elementListeners,
+                      Projection projection,
+                      ModelPool modelPool) {
         Preconditions.checkArgument(partitionPackages.size() > 0,
                                     "You must declare at least one partition package.");
+        Preconditions.checkArgument(readerPoolSize >= 0,
+                                    "The reader pool size must be nonnegative.");
+        Preconditions.checkArgument(readerBackend != null, "The reader backend must not be null.");
 
         this.unknownElementHandling = unknownElementHandling;
         this.ignoreUnexpectedChildren = ignoreUnexpectedChildren;
@@ -81,6 +131,13 @@ public class XmlParserSettings {
         this.unknownElementParser = unknownElementParser;
         this.stringTransformers = stringTransformers;
         this.partitionPackages = partitionPackages;
+        this.readerPoolSize = readerPoolSize;
+        this.readerBackend = readerBackend;
+        this.readerProvider = readerProvider;
+        this.charset = charset;
+        this.elementListeners = elementListeners;
+        this.projection = projection;
+        this.modelPool = modelPool;
     }
 
     public boolean ignoresUnexpectedChildren() {
@@ -106,4 +163,56 @@ public class XmlParserSettings {
     Collection<String> getPartitionPackages() {
         return partitionPackages;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return The maximum number of idle readers an {@link XmlStreamParser} keeps for reuse by
+     * subsequent parses. Zero means that readers are not reused.
+     */
+    public int getReaderPoolSize() {
+        return readerPoolSize;
+    }
+
+    public ReaderBackend getReaderBackend() {
+        return readerBackend;
+    }
+
+    /**
+     * @return The provider that was set explicitly to create readers with, or null if readers are
+     * created according to {@link #getReaderBackend()}.
+     */
+    public XmlStreamReaderProvider getReaderProvider() {
+        return readerProvider;
+    }
+
+    /**
+     * @return The encoding that all documents are read with, or null if the encoding of each
+     * document is detected from its byte order mark or XML declaration.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * @return The listeners that receive elements as they are parsed, which may be empty but is
+     * never null.
+     */
+    public ElementListeners getElementListeners() {
+        return elementListeners;
+    }
+
+    /**
+     * @return The parts of documents that are parsed into objects, or null if documents are parsed
+     * in full.
+     */
+    public Projection getProjection() {
+        return projection;
+    }
+
+    /**
+     * @return The pool that instances of recyclable model classes are taken from, or null if every
+     * element is parsed into a new object.
+     */
+    public ModelPool getModelPool() {
+        return modelPool;
+    }
+}
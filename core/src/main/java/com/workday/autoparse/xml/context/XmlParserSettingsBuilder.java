@@ -10,15 +10,23 @@ package com.workday.autoparse.xml.context;
 import com.workday.autoparse.xml.annotations.XmlParserPartition;
 import com.workday.autoparse.xml.parser.GeneratedClassNames;
 import com.workday.autoparse.xml.parser.ParserMap;
+import com.workday.autoparse.xml.parser.ModelPool;
+import com.workday.autoparse.xml.parser.Projection;
+import com.workday.autoparse.xml.parser.XmlElementListener;
 import com.workday.autoparse.xml.parser.XmlElementParser;
 import com.workday.autoparse.xml.parser.XmlStreamParser;
+import com.workday.autoparse.xml.parser.XmlStreamReaderProvider;
+import com.workday.autoparse.xml.utils.Preconditions;
 import com.workday.autoparse.xml.utils.StringTransformer;
 import com.workday.meta.ConcreteTypeNames;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author nathan.taylor
@@ -27,6 +35,7 @@ import java.util.List;
 public class XmlParserSettingsBuilder {
 
     public static final String DEFAULT_PACKAGE = ParserMap.class.getPackage().getName();
+    public static final int DEFAULT_READER_POOL_SIZE = 4;
 
     private Class<?> unknownElementClass;
     private XmlElementParser<?> unknownElementParser;
@@ -35,6 +44,17 @@ public class XmlParserSettingsBuilder {
     private boolean ignoreUnexpectedChildren;
     private List<String> partitionPackages = new ArrayList<>();
     private List<StringTransformer> stringFilters = new ArrayList<>();
+    private int readerPoolSize = DEFAULT_READER_POOL_SIZE;
+    private XmlParserSettings.ReaderBackend readerBackend =
+            XmlParserSettings.ReaderBackend.DISCOVERED;
+    private XmlStreamReaderProvider readerProvider;
+    private Charset charset;
+    private Map<Class<?>, List<XmlElementListener<Object>>> typeListeners = new LinkedHashMap<>();
+    private Map<String, List<XmlElementListener<Object>>> nameListeners = new LinkedHashMap<>();
+    private boolean retainElementsWithListeners;
+    private List<String> projectedPaths = new ArrayList<>();
+    private List<XmlElementParser<?>> projectedParsers = new ArrayList<>();
+    private ModelPool modelPool;
 
     /**
      * Use the given {@link XmlParserSettings.UnknownElementHandling} when parsing. This value
@@ -89,7 +109,12 @@ public class XmlParserSettingsBuilder {
      */
     public XmlParserSettingsBuilder withUnknownElementClass(Class<?> unknownObjectClass) {
         this.unknownElementClass = unknownObjectClass;
-        String parserName = ConcreteTypeNames.constructClassName(unknownObjectClass,
+        unknownElementParser = getGeneratedParser(unknownObjectClass);
+        return this;
+    }
+
+    private static XmlElementParser<?> getGeneratedParser(Class<?> modelClass) {
+        String parserName = ConcreteTypeNames.constructClassName(modelClass,
                                                                  GeneratedClassNames.PARSER_SUFFIX);
         try {
             @SuppressWarnings("unchecked")
@@ -101,10 +126,10 @@ public class XmlParserSettingsBuilder {
                 throw new RuntimeException(
                         "Public constant INSTANCE must be of type XmlElementParser");
             }
-            unknownElementParser = (XmlElementParser<?>) instance;
+            return (XmlElementParser<?>) instance;
         } catch (ClassNotFoundException e) {
             throw new RuntimeException("No XmlElementParser found for class of type "
-                                               + unknownObjectClass, e);
+                                               + modelClass, e);
         } catch (NoSuchFieldException e) {
             throw new RuntimeException("Parser does not have static field named INSTANCE.", e);
         } catch (IllegalAccessException e) {
@@ -112,7 +137,6 @@ public class XmlParserSettingsBuilder {
         } catch (NullPointerException e) {
             throw new RuntimeException("Field INSTANCE is not static", e);
         }
-        return this;
     }
 
     /**
@@ -172,6 +196,178 @@ public class XmlParserSettingsBuilder {
         return this;
     }
 
+    /**
+     * Set how many idle readers the {@link XmlStreamParser} keeps around for reuse. Reusing a
+     * reader avoids creating a new pull parser and its internal buffers for every parsed document,
+     * which matters when parsing many small documents. A reader is only held by one parse at a
+     * time, so a pool size close to the number of threads parsing concurrently with the same
+     * parser is sufficient. This value defaults to {@link #DEFAULT_READER_POOL_SIZE}.
+     *
+     * @param readerPoolSize The maximum number of idle readers to keep, or zero to create a new
+     * reader for every parse.
+     *
+     * @return This SettingsBuilder.
+     */
+    public XmlParserSettingsBuilder withReaderPoolSize(int readerPoolSize) {
+        this.readerPoolSize = readerPoolSize;
+        return this;
+    }
+
+    /**
+     * Set which {@link XmlParserSettings.ReaderBackend} reads the documents. The built-in backend
+     * avoids most of the per-event allocations of a pull parser, particularly for UTF-8 input. This
+     * value defaults to {@link XmlParserSettings.ReaderBackend#DISCOVERED}, which uses a pull
+     * parser unless another {@link XmlStreamReaderProvider} is on the classpath.
+     *
+     * @param readerBackend The backend to use.
+     *
+     * @return This SettingsBuilder.
+     */
+    public XmlParserSettingsBuilder withReaderBackend(XmlParserSettings.ReaderBackend
+                                                              readerBackend) {
+        this.readerBackend = readerBackend;
+        return this;
+    }
+
+    /**
+     * Set the {@link XmlStreamReaderProvider} that creates the readers for the documents. This
+     * takes precedence over {@link #withReaderBackend(XmlParserSettings.ReaderBackend)}.
+     *
+     * @param readerProvider The provider to use, or null to choose one according to the reader
+     * backend.
+     *
+     * @return This SettingsBuilder.
+     */
+    public XmlParserSettingsBuilder withReaderProvider(XmlStreamReaderProvider readerProvider) {
+        this.readerProvider = readerProvider;
+        return this;
+    }
+
+    /**
+     * Declare the encoding of the documents up front. By default, the encoding of each document is
+     * detected from its byte order mark or XML declaration, falling back to UTF-8; the platform
+     * default encoding is never used. A byte order mark still takes precedence over the declared
+     * encoding.
+     *
+     * @param charset The encoding of the documents, or null to detect it.
+     *
+     * @return This SettingsBuilder.
+     */
+    public XmlParserSettingsBuilder withCharset(Charset charset) {
+        this.charset = charset;
+        return this;
+    }
+
+    /**
+     * Register a listener that receives every element that is parsed into an instance of {@code
+     * type} or one of its subtypes, as soon as the element has been parsed. Unless {@link
+     * #retainElementsWithListeners(boolean)} says otherwise, elements that are passed to a listener
+     * are then dropped rather than added to their parents, so that documents with many such
+     * elements can be processed in constant memory. The root element is passed to listeners too,
+     * but is never dropped, so it is still returned by the parse.
+     *
+     * @param type The type of the elements to receive.
+     * @param listener The listener to invoke.
+     *
+     * @return This SettingsBuilder.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> XmlParserSettingsBuilder withElementListener(Class<T> type,
+                                                            XmlElementListener<? super T>
+                                                                    listener) {
+        addListener(typeListeners, type, (XmlElementListener<Object>) listener);
+        return this;
+    }
+
+    /**
+     * Register a listener that receives every element with the given name, as soon as the element
+     * has been parsed. Elements are dropped afterwards just like with {@link
+     * #withElementListener(Class, XmlElementListener)}.
+     *
+     * @param elementName The qualified name of the elements to receive.
+     * @param listener The listener to invoke.
+     *
+     * @return This SettingsBuilder.
+     */
+    public XmlParserSettingsBuilder withElementListener(String elementName,
+                                                        XmlElementListener<Object> listener) {
+        addListener(nameListeners, elementName, listener);
+        return this;
+    }
+
+    /**
+     * If {@code retainElementsWithListeners} is {@code true}, elements that are passed to an
+     * {@link XmlElementListener} are still added to their parents afterwards. This value defaults
+     * to {@code false}.
+     *
+     * @return This SettingsBuilder.
+     */
+    public XmlParserSettingsBuilder retainElementsWithListeners(
+            boolean retainElementsWithListeners) {
+        this.retainElementsWithListeners = retainElementsWithListeners;
+        return this;
+    }
+
+    /**
+     * Only parse the elements at the given paths, their descendants, and their ancestors; skip
+     * everything else without instantiating any objects. Paths consist of element names separated
+     * by slashes, starting with the root element, such as {@code "feed/record/id"}. How much was
+     * skipped is reported by {@link Projection#getStatistics()}.
+     * <p/>
+     * By default, documents are parsed in full.
+     *
+     * @param paths The paths to parse.
+     *
+     * @return This SettingsBuilder.
+     *
+     * @see #withProjectedClasses(Class[])
+     */
+    public XmlParserSettingsBuilder withProjectedPaths(String... paths) {
+        projectedPaths.addAll(Arrays.asList(paths));
+        return this;
+    }
+
+    /**
+     * Parse the elements mapped to the given classes, and their descendants, wherever they occur
+     * in the document, and skip everything else without instantiating any objects. Since the
+     * elements around them are skipped, such elements can only be received through {@link
+     * #withElementListener(Class, XmlElementListener)}, unless their ancestors are included with
+     * {@link #withProjectedPaths(String...)}.
+     *
+     * @param modelClasses Classes annotated with {@link com.workday.autoparse.xml.annotations
+     * .XmlElement}.
+     *
+     * @return This SettingsBuilder.
+     */
+    public XmlParserSettingsBuilder withProjectedClasses(Class<?>... modelClasses) {
+        for (Class<?> modelClass : modelClasses) {
+            projectedParsers.add(getGeneratedParser(modelClass));
+        }
+        return this;
+    }
+
+    /**
+     * Recycle instances of the given model classes: the generated parsers take objects from a
+     * {@link ModelPool} instead of instantiating new ones, as long as it has idle instances.
+     * Objects are returned to the pool with {@link ModelPool#release(Object)} once they are no
+     * longer used; the pool is available from {@link XmlParserSettings#getModelPool()}. By
+     * default, every element is parsed into a new object.
+     *
+     * @param maxIdleInstances The maximum number of idle instances to keep for each class.
+     * @param modelClasses Classes annotated with {@link com.workday.autoparse.xml.annotations
+     * .XmlRecyclable}.
+     *
+     * @return This SettingsBuilder.
+     */
+    public XmlParserSettingsBuilder withModelPool(int maxIdleInstances, Class<?>... modelClasses) {
+        Map<Class<?>, XmlElementParser<?>> parsers = new LinkedHashMap<>();
+        for (Class<?> modelClass : modelClasses) {
+            parsers.put(modelClass, getGeneratedParser(modelClass));
+        }
+        modelPool = new ModelPool(maxIdleInstances, parsers);
+        return this;
+    }
+
     /**
      * Creates a new instance of {@link XmlParserSettings} with the specified preferences set.
      *
@@ -186,6 +382,30 @@ public class XmlParserSettingsBuilder {
                                      unknownElementClass,
                                      unknownElementParser,
                                      stringFilters,
-                                     partitionPackages);
+                                     partitionPackages,
+                                     readerPoolSize,
+                                     readerBackend,
+                                     readerProvider,
+                                     charset,
+                                     new ElementListeners(typeListeners,
+                                                          nameListeners,
+                                                          retainElementsWithListeners),
+                                     projectedPaths.isEmpty() && projectedParsers.isEmpty()
+                                     ? null
+                                     : new Projection(projectedPaths, projectedParsers),
+                                     modelPool);
+    }
+
+    private static <K> void addListener(Map<K, List<XmlElementListener<Object>>> listeners,
+                                        K key,
+                                        XmlElementListener<Object> listener) {
+        Preconditions.checkNotNull(key, "key");
+        Preconditions.checkNotNull(listener, "listener");
+        List<XmlElementListener<Object>> list = listeners.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            listeners.put(key, list);
+        }
+        list.add(listener);
     }
 }
@@ -8,127 +8,513 @@
 package com.workday.autoparse.xml.parser;
 
 import com.workday.autoparse.xml.context.XmlContextHolder;
+import com.workday.autoparse.xml.context.XmlParserContext;
+import com.workday.autoparse.xml.utils.NumberUtils;
+import com.workday.autoparse.xml.utils.Preconditions;
 import com.workday.autoparse.xml.utils.StringTransformer;
 import com.workday.autoparse.xml.utils.StringUtils;
 
-import java.util.HashMap;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 /**
+ * The attributes and text content of an element, as read by the generated {@link
+ * XmlElementParser}s.
+ * <p/>
+ * Instances obtained from {@link #forCurrentElement(XmlStreamReader)} are views onto the reader's
+ * current element. The view is owned by the reader and reused for every element, and attribute
+ * values are only read from the reader when they are asked for, so attributes the model does not
+ * declare cost nothing. All attributes must be read before {@link #readContentString()} moves the
+ * reader past the start element.
+ * <p/>
+ * Instances created with {@link #Attributes(XmlStreamReader)} instead take a copy of all the
+ * attributes and the text content up front, and remain valid indefinitely.
+ *
  * @author nathan.taylor
  * @since 2013-9-19
  */
 public class Attributes {
 
-    private final Map<String, String> attributeMap;
-    private final String contentString;
-    private final List<StringTransformer> stringTransformers;
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int TEXT_CHUNK_SIZE = 8 * 1024;
+
+    // The reader this is a view onto, or null for a copy.
+    private final XmlStreamReader reader;
+    private List<StringTransformer> stringTransformers;
+
+    private String[] names;
+    private String[] values;
+    // The number of attributes, or -1 if the names have not been read from the reader yet.
+    private int count;
+    private boolean atStartElement;
+    private String contentString;
+    private char[] textChunk;
+    // The reader returned by readContentReader(), until the rest of its text has been skipped.
+    private ContentReader contentReader;
 
+    /**
+     * Copies all the attributes of the current element and then reads its text content, if any.
+     * When this returns, the reader is at the event following the text content.
+     */
     public Attributes(XmlStreamReader reader)
             throws ParseException {
-        stringTransformers = XmlContextHolder.getContext().getSettings().getStringTransformers();
+        this(reader, XmlContextHolder.getContext());
+    }
+
+    /**
+     * Like {@link #Attributes(XmlStreamReader)}, but with the context passed explicitly rather than
+     * looked up in {@link XmlContextHolder}.
+     */
+    public Attributes(XmlStreamReader reader, XmlParserContext context)
+            throws ParseException {
+        this.reader = null;
+        stringTransformers = context.getSettings().getStringTransformers();
 
-        attributeMap = new HashMap<>();
-        for (int i = 0; i < reader.getAttributeCount(); i++) {
-            attributeMap.put(reader.getAttributeName(i), reader.getAttributeValue(i));
+        count = Math.max(reader.getAttributeCount(), 0);
+        names = new String[count];
+        values = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = reader.getAttributeName(i);
+            values[i] = reader.getAttributeValue(i);
         }
-        String string = null;
-        reader.next();
-        if (reader.isCharacters()) {
-            string = reader.getText();
-            reader.next();
+        String string = readText(reader);
+        contentString = string != null ? applyFilters(string) : null;
+    }
+
+    private Attributes(XmlStreamReader reader, int capacity) {
+        this.reader = reader;
+        names = new String[capacity];
+        values = new String[capacity];
+    }
+
+    static Attributes newView(XmlStreamReader reader) {
+        return new Attributes(reader, INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param reader A reader at a start element.
+     *
+     * @return The reader's reusable view onto the attributes of its current element. It is only
+     * valid until the reader moves on to the next element.
+     */
+    public static Attributes forCurrentElement(XmlStreamReader reader) {
+        return forCurrentElement(reader, XmlContextHolder.getContext());
+    }
+
+    /**
+     * Like {@link #forCurrentElement(XmlStreamReader)}, but with the context passed explicitly
+     * rather than looked up in {@link XmlContextHolder}.
+     */
+    public static Attributes forCurrentElement(XmlStreamReader reader, XmlParserContext context) {
+        Attributes attributes = reader.getAttributesView();
+        attributes.stringTransformers = context.getSettings().getStringTransformers();
+        if (attributes.count > 0) {
+            Arrays.fill(attributes.names, 0, attributes.count, null);
+            Arrays.fill(attributes.values, 0, attributes.count, null);
+        }
+        attributes.count = -1;
+        attributes.atStartElement = true;
+        attributes.contentString = null;
+        attributes.contentReader = null;
+        return attributes;
+    }
+
+    /**
+     * Moves the reader past the start element and reads the element's text content, if any. When
+     * this returns, the reader is at the event following the text content.
+     *
+     * @return The text content after applying the {@link StringTransformer}s, or null if there is
+     * none.
+     */
+    public String readContentString()
+            throws ParseException {
+        if (reader == null) {
+            return contentString;
         }
+        Preconditions.checkState(atStartElement, "The content string has already been read.");
+        atStartElement = false;
+        String string = readText(reader);
         contentString = string != null ? applyFilters(string) : null;
+        return contentString;
+    }
+
+    /**
+     * Like {@link #readContentString()}, but passes the text content to {@code consumer} in chunks
+     * as it is read rather than building a String, so that text of any length is read in bounded
+     * memory. No {@link StringTransformer}s are applied. For a copy, the text content read by the
+     * constructor is passed in a single chunk.
+     *
+     * @return Whether there was any text content. If not, {@code consumer} is not called.
+     */
+    public boolean readContent(XmlTextConsumer consumer)
+            throws ParseException {
+        if (reader == null) {
+            if (contentString == null) {
+                return false;
+            }
+            consumer.onText(contentString.toCharArray(), 0, contentString.length());
+            consumer.onTextEnd();
+            return true;
+        }
+        if (!startContent()) {
+            return false;
+        }
+        char[] chunk = getTextChunk();
+        int length;
+        while ((length = reader.readText(chunk, 0, chunk.length)) >= 0) {
+            consumer.onText(chunk, 0, length);
+        }
+        consumer.onTextEnd();
+        return true;
+    }
+
+    /**
+     * Like {@link #readContentString()}, but without applying any {@link StringTransformer}s, and
+     * without the copy that creating a String from the text would take.
+     *
+     * @return The text content, or null if there is none.
+     */
+    public CharSequence readContentCharacters()
+            throws ParseException {
+        if (reader == null) {
+            return contentString;
+        }
+        if (!startContent()) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        char[] chunk = getTextChunk();
+        int length;
+        while ((length = reader.readText(chunk, 0, chunk.length)) >= 0) {
+            builder.append(chunk, 0, length);
+        }
+        return builder;
+    }
+
+    /**
+     * Like {@link #readContentString()}, but decodes the text content as base64 as it is read, so
+     * that only the decoded bytes are held in memory.
+     *
+     * @return The decoded bytes, or null if there is no text content.
+     *
+     * @see Base64TextDecoder
+     */
+    public byte[] readContentBase64()
+            throws ParseException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return readContent(new Base64TextDecoder(out)) ? out.toByteArray() : null;
+    }
+
+    /**
+     * Moves the reader past the start element and returns a {@link Reader} that reads the text
+     * content straight from the document, so that text of any length is read in bounded memory. No
+     * {@link StringTransformer}s are applied. The reader must not be used after {@link
+     * #skipRemainingContent()}, which must be called before anything else is read from the
+     * document. For a copy, the reader reads the text content read by the constructor.
+     *
+     * @return A reader over the text content, or null if there is none.
+     */
+    public Reader readContentReader()
+            throws ParseException {
+        if (reader == null) {
+            return contentString != null ? new StringReader(contentString) : null;
+        }
+        if (!startContent()) {
+            return null;
+        }
+        contentReader = new ContentReader(reader);
+        return contentReader;
+    }
+
+    /**
+     * Skips whatever text content the reader returned by {@link #readContentReader()} has left
+     * unread. When this returns, the reader is at the event following the text content.
+     */
+    public void skipRemainingContent()
+            throws ParseException {
+        if (contentReader == null) {
+            return;
+        }
+        contentReader.closed = true;
+        char[] chunk = getTextChunk();
+        while (!contentReader.finished && reader.readText(chunk, 0, chunk.length) >= 0) {
+            // Discard the text.
+        }
+        contentReader = null;
     }
 
     public String getStringAttributeWithName(String name) {
-        String attribute = attributeMap.get(name);
+        return getStringAttributeAt(indexOf(name));
+    }
+
+    public boolean getBooleanAttributeWithName(String name) {
+        return getBooleanAttributeAt(indexOf(name));
+    }
+
+    public int getIntAttributeWithName(String name)
+            throws NumberFormatException {
+        return getIntAttributeAt(indexOf(name));
+    }
+
+    public byte getByteAttributeWithName(String name) {
+        return getByteAttributeAt(indexOf(name));
+    }
+
+    public short getShortAttributeWithName(String name) {
+        return getShortAttributeAt(indexOf(name));
+    }
+
+    public long getLongAttributeWithName(String name) {
+        return getLongAttributeAt(indexOf(name));
+    }
+
+    public double getDoubleAttributeWithName(String name) {
+        return getDoubleAttributeAt(indexOf(name));
+    }
+
+    public float getFloatAttributeWithName(String name) {
+        return getFloatAttributeAt(indexOf(name));
+    }
+
+    public char getCharAttributeWithName(String name) {
+        return getCharAttributeAt(indexOf(name));
+    }
+
+    /**
+     * Like {@code new BigDecimal(getStringAttributeWithName(name))}, but without creating a String
+     * when there are no {@link StringTransformer}s to apply.
+     *
+     * @return The value of the attribute, or null if there is no such attribute.
+     *
+     * @throws NumberFormatException if the value is not a valid {@link BigDecimal}.
+     */
+    public BigDecimal getBigDecimalAttributeWithName(String name)
+            throws NumberFormatException {
+        return getBigDecimalAttributeAt(indexOf(name));
+    }
+
+    /**
+     * @return The number of attributes on the element.
+     */
+    public int getAttributeCount() {
+        if (count < 0) {
+            readNames();
+        }
+        return count;
+    }
+
+    /**
+     * @return The qualified name of the attribute at {@code index}. Names are interned, so they
+     * are identical to String constants with the same value.
+     */
+    public String getAttributeName(int index) {
+        if (count < 0) {
+            readNames();
+        }
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("No attribute at index " + index);
+        }
+        return names[index];
+    }
+
+    // The getXxxAttributeAt methods below take an index between 0 and getAttributeCount(), or a
+    // negative index for a missing attribute, in which case they return the same default values as
+    // the getXxxAttributeWithName methods.
+
+    public String getStringAttributeAt(int index) {
+        String attribute = getValue(index);
         if (attribute != null) {
             return applyFilters(attribute);
         }
         return null;
     }
 
-    public boolean getBooleanAttributeWithName(String name) {
-        String string = attributeMap.get(name);
-        if (StringUtils.isNotEmpty(string)) {
-            string = string.trim();
-            return "1".equals(string);
+    public boolean getBooleanAttributeAt(int index) {
+        CharSequence chars = getCharacters(index);
+        if (StringUtils.isNotEmpty(chars)) {
+            int start = NumberUtils.trimmedStart(chars);
+            return NumberUtils.trimmedEnd(chars) - start == 1 && chars.charAt(start) == '1';
         }
         return false;
     }
 
-    public int getIntAttributeWithName(String name)
+    public int getIntAttributeAt(int index)
             throws NumberFormatException {
         int value = -1;
-        String stringValue = attributeMap.get(name);
-        if (StringUtils.isNotEmpty(stringValue)) {
-            value = Integer.parseInt(stringValue.trim());
+        CharSequence chars = getCharacters(index);
+        if (StringUtils.isNotEmpty(chars)) {
+            value = NumberUtils.parseInt(chars,
+                                         NumberUtils.trimmedStart(chars),
+                                         NumberUtils.trimmedEnd(chars));
         }
         return value;
     }
 
-    public byte getByteAttributeWithName(String name) {
+    public byte getByteAttributeAt(int index) {
         byte value = 0;
-        String stringValue = attributeMap.get(name);
-        if (StringUtils.isNotEmpty(stringValue)) {
-            value = Byte.parseByte(stringValue);
+        CharSequence chars = getCharacters(index);
+        if (StringUtils.isNotEmpty(chars)) {
+            value = NumberUtils.parseByte(chars);
         }
         return value;
     }
 
-    public short getShortAttributeWithName(String name) {
+    public short getShortAttributeAt(int index) {
         short value = 0;
-        String stringValue = attributeMap.get(name);
-        if (StringUtils.isNotEmpty(stringValue)) {
-            value = Short.parseShort(stringValue);
+        CharSequence chars = getCharacters(index);
+        if (StringUtils.isNotEmpty(chars)) {
+            value = NumberUtils.parseShort(chars);
         }
         return value;
     }
 
-    public long getLongAttributeWithName(String name) {
+    public long getLongAttributeAt(int index) {
         long value = 0;
-        String stringValue = attributeMap.get(name);
-        if (StringUtils.isNotEmpty(stringValue)) {
-            value = Long.parseLong(stringValue);
+        CharSequence chars = getCharacters(index);
+        if (StringUtils.isNotEmpty(chars)) {
+            value = NumberUtils.parseLong(chars);
         }
         return value;
     }
 
-    public double getDoubleAttributeWithName(String name) {
+    public double getDoubleAttributeAt(int index) {
         double value = 0;
-        String stringValue = attributeMap.get(name);
-        if (StringUtils.isNotEmpty(stringValue)) {
-            value = Double.parseDouble(stringValue);
+        CharSequence chars = getCharacters(index);
+        if (StringUtils.isNotEmpty(chars)) {
+            value = NumberUtils.parseDouble(chars);
         }
         return value;
     }
 
-    public float getFloatAttributeWithName(String name) {
+    public float getFloatAttributeAt(int index) {
         float value = 0;
-        String stringValue = attributeMap.get(name);
-        if (StringUtils.isNotEmpty(stringValue)) {
-            value = Float.parseFloat(stringValue);
+        CharSequence chars = getCharacters(index);
+        if (StringUtils.isNotEmpty(chars)) {
+            value = NumberUtils.parseFloat(chars);
         }
         return value;
     }
 
-    public char getCharAttributeWithName(String name) {
+    public char getCharAttributeAt(int index) {
         char value = 0;
-        String stringValue = attributeMap.get(name);
-        if (stringValue != null && stringValue.length() == 1) {
-            value = stringValue.charAt(0);
+        CharSequence chars = getCharacters(index);
+        if (chars != null && chars.length() == 1) {
+            value = chars.charAt(0);
         }
         return value;
     }
 
+    public BigDecimal getBigDecimalAttributeAt(int index)
+            throws NumberFormatException {
+        if (!stringTransformers.isEmpty()) {
+            String string = getStringAttributeAt(index);
+            return string != null ? new BigDecimal(string) : null;
+        }
+        CharSequence chars = getCharacters(index);
+        return chars != null ? NumberUtils.parseBigDecimal(chars) : null;
+    }
+
+    /**
+     * @return The text content read by {@link #readContentString()} or, for a copy, by the
+     * constructor.
+     */
     public String getContentString() {
         return contentString;
     }
 
     public boolean hasAttribute(String name) {
-        return attributeMap.containsKey(name);
+        return indexOf(name) >= 0;
+    }
+
+    private int indexOf(String name) {
+        if (count < 0) {
+            readNames();
+        }
+        for (int i = 0; i < count; i++) {
+            // Names from the reader are interned, so this usually succeeds on identity.
+            if (name.equals(names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String getValue(int index) {
+        if (index < 0) {
+            return null;
+        }
+        if (values[index] == null && reader != null) {
+            Preconditions.checkState(atStartElement,
+                                     "Attributes must be read before the content string.");
+            values[index] = reader.getAttributeValue(index);
+        }
+        return values[index];
+    }
+
+    /**
+     * @return The value of the attribute without any {@link StringTransformer}s applied, possibly
+     * as a view onto the reader's buffer that is only valid until the next call.
+     */
+    private CharSequence getCharacters(int index) {
+        if (index < 0) {
+            return null;
+        }
+        if (values[index] != null || reader == null) {
+            return values[index];
+        }
+        Preconditions.checkState(atStartElement,
+                                 "Attributes must be read before the content string.");
+        return reader.getAttributeValueCharacters(index);
+    }
+
+    private void readNames() {
+        Preconditions.checkState(atStartElement,
+                                 "Attributes must be read before the content string.");
+        count = Math.max(reader.getAttributeCount(), 0);
+        if (count > names.length) {
+            int capacity = Math.max(count, names.length * 2);
+            names = new String[capacity];
+            values = new String[capacity];
+        }
+        for (int i = 0; i < count; i++) {
+            names[i] = reader.getAttributeName(i);
+        }
+    }
+
+    /**
+     * Moves the reader past the start element.
+     *
+     * @return Whether the reader is at text content.
+     */
+    private boolean startContent()
+            throws ParseException {
+        Preconditions.checkState(atStartElement, "The content string has already been read.");
+        atStartElement = false;
+        reader.next();
+        return reader.isCharacters();
+    }
+
+    private char[] getTextChunk() {
+        if (textChunk == null) {
+            textChunk = new char[TEXT_CHUNK_SIZE];
+        }
+        return textChunk;
+    }
+
+    private static String readText(XmlStreamReader reader)
+            throws ParseException {
+        String string = null;
+        reader.next();
+        if (reader.isCharacters()) {
+            string = reader.getText();
+            reader.next();
+        }
+        return string;
     }
 
     private String applyFilters(String original) {
@@ -140,4 +526,38 @@ public class Attributes {
         }
         return result;
     }
+
+    private static final class ContentReader extends Reader {
+
+        private final XmlStreamReader reader;
+        private boolean finished;
+        private boolean closed;
+
+        ContentReader(XmlStreamReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int read(char[] chars, int offset, int length)
+                throws IOException {
+            if (closed) {
+                throw new IOException("The text content has already been skipped");
+            }
+            if (finished) {
+                return -1;
+            }
+            try {
+                int count = reader.readText(chars, offset, length);
+                finished = count < 0;
+                return count;
+            } catch (ParseException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            // The rest of the text is skipped by skipRemainingContent().
+        }
+    }
 }
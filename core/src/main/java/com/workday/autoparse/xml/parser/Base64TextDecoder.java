@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Decodes base64 text content as it is read and writes the bytes to an {@link OutputStream}, so
+ * that binary payloads embedded in a document can be written to a file or any other destination
+ * without ever holding the text or the bytes in memory as a whole. Whitespace, which is commonly
+ * used to break base64 text into lines, is ignored, and the trailing padding may be left out.
+ * <p/>
+ * The stream is neither flushed nor closed. The decoder can be reused for the text of several
+ * elements, whose bytes are written one after the other.
+ *
+ * @since 1.3
+ */
+public final class Base64TextDecoder implements XmlTextConsumer {
+
+    private static final String ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    private static final int[] VALUES = new int[128];
+
+    static {
+        Arrays.fill(VALUES, -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            VALUES[ALPHABET.charAt(i)] = i;
+        }
+    }
+
+    private final OutputStream out;
+    private final byte[] bytes = new byte[3 * 1024];
+    private int byteCount;
+
+    // The bits of the current group of four chars, and how many chars of it have been read.
+    private int group;
+    private int groupLength;
+    private int paddingLength;
+
+    public Base64TextDecoder(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void onText(char[] chars, int offset, int length)
+            throws ParseException {
+        for (int i = offset; i < offset + length; i++) {
+            char c = chars[i];
+            if (c == ' ' || c == '\n' || c == '\t' || c == '\r') {
+                continue;
+            }
+            if (c == '=') {
+                if (groupLength < 2) {
+                    throw new ParseException("Unexpected padding in base64 text");
+                }
+                if (groupLength + ++paddingLength == 4) {
+                    endGroup();
+                }
+                continue;
+            }
+            int value = c < VALUES.length ? VALUES[c] : -1;
+            if (value < 0) {
+                throw new ParseException("Invalid character '" + c + "' in base64 text");
+            }
+            if (paddingLength > 0) {
+                throw new ParseException("Unexpected padding in base64 text");
+            }
+            group = (group << 6) | value;
+            if (++groupLength == 4) {
+                putByte(group >> 16);
+                putByte(group >> 8);
+                putByte(group);
+                group = 0;
+                groupLength = 0;
+            }
+        }
+    }
+
+    @Override
+    public void onTextEnd()
+            throws ParseException {
+        try {
+            if (groupLength == 1 || paddingLength > 0) {
+                throw new ParseException("Truncated base64 text");
+            }
+            endGroup();
+            flush();
+        } finally {
+            group = 0;
+            groupLength = 0;
+            paddingLength = 0;
+            byteCount = 0;
+        }
+    }
+
+    /**
+     * Writes the bytes of a group that was cut short by padding or the end of the text.
+     */
+    private void endGroup()
+            throws ParseException {
+        if (groupLength == 2) {
+            putByte(group >> 4);
+        } else if (groupLength == 3) {
+            putByte(group >> 10);
+            putByte(group >> 2);
+        }
+        group = 0;
+        groupLength = 0;
+        paddingLength = 0;
+    }
+
+    private void putByte(int b)
+            throws ParseException {
+        if (byteCount == bytes.length) {
+            flush();
+        }
+        bytes[byteCount++] = (byte) b;
+    }
+
+    private void flush()
+            throws ParseException {
+        try {
+            out.write(bytes, 0, byteCount);
+        } catch (IOException e) {
+            throw new ParseException(e);
+        }
+        byteCount = 0;
+    }
+}
@@ -7,41 +7,109 @@
 
 package com.workday.autoparse.xml.parser;
 
-import java.util.ArrayList;
+import com.workday.autoparse.xml.utils.CollectionUtils;
+
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Set;
 
 /**
+ * A {@link ParserMap} that combines several others, whose keys must be disjoint (see {@link
+ * KeyCollisionTester}). The entries of the components are copied into a single open addressing
+ * table when this map is constructed, so a lookup costs the same no matter how many components
+ * there are.
+ * <p/>
+ * The table hashes keys the same way as {@link String#hashCode()}, which lets {@link
+ * #get(CharSequence)} and {@link #get(char[], int, int)} find entries without creating a String,
+ * while {@link #get(String)} gets to use the hash code cached in the String.
+ *
  * @author nathan.taylor
  * @since 2015-03-02
  */
 public class CompositeParserMap implements ParserMap {
 
-    private final Collection<ParserMap> components;
+    private final String[] keys;
+    private final XmlElementParser<?>[] parsers;
+    private final int mask;
+    private final Set<String> keySet;
 
     public CompositeParserMap(Collection<ParserMap> components) {
-        this.components = Collections.unmodifiableCollection(new ArrayList<>(components));
+        int size = 0;
+        for (ParserMap component : components) {
+            size += component.keySet().size();
+        }
+        // Keep the table at most half full, so that probe sequences stay short.
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+        keys = new String[capacity];
+        parsers = new XmlElementParser<?>[capacity];
+        mask = capacity - 1;
+
+        Set<String> allKeys = CollectionUtils.newHashSetWithExpectedSize(size);
+        for (ParserMap component : components) {
+            for (String key : component.keySet()) {
+                if (allKeys.add(key)) {
+                    put(key, component.get(key));
+                }
+            }
+        }
+        keySet = Collections.unmodifiableSet(allKeys);
     }
 
     @Override
     public XmlElementParser<?> get(String name) {
-        for (ParserMap parserMap : components) {
-            XmlElementParser<?> parser = parserMap.get(name);
-            if (parser != null) {
-                return parser;
+        if (name == null) {
+            return null;
+        }
+        for (int slot = name.hashCode() & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (name.equals(keys[slot])) {
+                return parsers[slot];
             }
         }
         return null;
     }
 
     @Override
-    public Set<String> keySet() {
-        Set<String> keySet = new HashSet<>();
-        for (ParserMap component : components) {
-            keySet.addAll(component.keySet());
+    public XmlElementParser<?> get(CharSequence name) {
+        if (name instanceof String) {
+            return get((String) name);
+        }
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + name.charAt(i);
         }
+        for (int slot = hash & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (ParserUtils.contentEquals(name, keys[slot])) {
+                return parsers[slot];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public XmlElementParser<?> get(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        for (int slot = hash & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (ParserUtils.contentEquals(chars, offset, length, keys[slot])) {
+                return parsers[slot];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Set<String> keySet() {
         return keySet;
     }
+
+    private void put(String key, XmlElementParser<?> parser) {
+        int slot = key.hashCode() & mask;
+        while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        parsers[slot] = parser;
+    }
 }
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
+
+/**
+ * A {@link Reader} that decodes an XML document in the encoding given by its byte order mark or
+ * XML declaration, rather than the platform default. UTF-8, US-ASCII and ISO-8859-1 are decoded
+ * directly from the byte buffer; other encodings go through a {@link CharsetDecoder}.
+ * <p/>
+ * Instances are reused for several documents through {@link #setInput(InputStream, Charset)},
+ * which keeps the buffer and decoder. Closing this reader does not close the underlying stream.
+ *
+ * @since 1.3
+ */
+final class DecodingReader extends Reader {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final int MODE_UTF_8 = 0;
+    private static final int MODE_ISO_8859_1 = 1;
+    private static final int MODE_DECODER = 2;
+
+    private final byte[] bytes = new byte[BUFFER_SIZE];
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+    private InputStream in;
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+
+    private Charset charset;
+    private int mode;
+    private CharsetDecoder decoder;
+    private boolean decoderFlushed;
+    // The second half of a surrogate pair that did not fit into the caller's buffer, or 0.
+    private char pendingLowSurrogate;
+
+    /**
+     * Points this reader at a new document.
+     *
+     * @param in The document, or null to detach this reader from its current input.
+     * @param declaredCharset The encoding of the document if it is known up front, or null to
+     * detect it. A byte order mark in the document takes precedence either way.
+     */
+    void setInput(InputStream in, Charset declaredCharset)
+            throws ParseException {
+        this.in = in;
+        position = 0;
+        limit = 0;
+        endOfInput = in == null;
+        pendingLowSurrogate = 0;
+        charset = null;
+        if (in == null) {
+            return;
+        }
+
+        try {
+            fillForDetection(declaredCharset == null ? EncodingDetector.DETECTION_LIMIT : 3);
+        } catch (IOException e) {
+            throw new ParseException(e);
+        }
+        position = EncodingDetector.getByteOrderMarkLength(bytes, 0, limit);
+        charset = position > 0 || declaredCharset == null
+                  ? EncodingDetector.detect(bytes, 0, limit)
+                  : declaredCharset;
+
+        if (EncodingDetector.isUtf8Compatible(charset)) {
+            mode = MODE_UTF_8;
+        } else if (EncodingDetector.ISO_8859_1.equals(charset)) {
+            mode = MODE_ISO_8859_1;
+        } else {
+            mode = MODE_DECODER;
+            if (decoder == null || !decoder.charset().equals(charset)) {
+                decoder = charset.newDecoder();
+            }
+            decoder.reset();
+            decoderFlushed = false;
+        }
+    }
+
+    /**
+     * @return The encoding the current document is decoded with, or null if there is no input.
+     */
+    Charset getCharset() {
+        return charset;
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length)
+            throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        int count = 0;
+        if (pendingLowSurrogate != 0) {
+            chars[offset] = pendingLowSurrogate;
+            pendingLowSurrogate = 0;
+            count = 1;
+        }
+        switch (mode) {
+            case MODE_UTF_8:
+                count = readUtf8(chars, offset, length, count);
+                break;
+            case MODE_ISO_8859_1:
+                count = readIso88591(chars, offset, length, count);
+                break;
+            default:
+                count = readWithDecoder(chars, offset, length, count);
+                break;
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public void close() {
+        in = null;
+        endOfInput = true;
+        position = limit;
+    }
+
+    private int readUtf8(char[] chars, int offset, int length, int count)
+            throws IOException {
+        while (count < length) {
+            if (position == limit && (count > 0 || !refill())) {
+                break;
+            }
+            int b = bytes[position];
+            if (b >= 0) {
+                // Runs of ASCII are by far the most common case.
+                int end = Math.min(limit, position + length - count);
+                int p = position;
+                while (p < end && bytes[p] >= 0) {
+                    chars[offset + count++] = (char) bytes[p++];
+                }
+                position = p;
+                continue;
+            }
+
+            int sequenceLength = getUtf8SequenceLength(b);
+            if (limit - position < sequenceLength) {
+                if (count > 0) {
+                    break;
+                }
+                if (!refill()) {
+                    throw new MalformedInputException(limit - position);
+                }
+                continue;
+            }
+            int codePoint = decodeUtf8(sequenceLength);
+            position += sequenceLength;
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                chars[offset + count++] = (char) codePoint;
+            } else {
+                chars[offset + count++] = Character.highSurrogate(codePoint);
+                if (count < length) {
+                    chars[offset + count++] = Character.lowSurrogate(codePoint);
+                } else {
+                    pendingLowSurrogate = Character.lowSurrogate(codePoint);
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int getUtf8SequenceLength(int leadByte)
+            throws MalformedInputException {
+        if ((leadByte & 0xE0) == 0xC0) {
+            return 2;
+        } else if ((leadByte & 0xF0) == 0xE0) {
+            return 3;
+        } else if ((leadByte & 0xF8) == 0xF0) {
+            return 4;
+        }
+        throw new MalformedInputException(1);
+    }
+
+    private int decodeUtf8(int sequenceLength)
+            throws MalformedInputException {
+        int codePoint = bytes[position] & (0x7F >> sequenceLength);
+        for (int i = 1; i < sequenceLength; i++) {
+            int b = bytes[position + i];
+            if ((b & 0xC0) != 0x80) {
+                throw new MalformedInputException(i);
+            }
+            codePoint = (codePoint << 6) | (b & 0x3F);
+        }
+        int minimum = sequenceLength == 2 ? 0x80 : sequenceLength == 3 ? 0x800 : 0x10000;
+        if (codePoint < minimum || codePoint > Character.MAX_CODE_POINT
+                || codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+            throw new MalformedInputException(sequenceLength);
+        }
+        return codePoint;
+    }
+
+    private int readIso88591(char[] chars, int offset, int length, int count)
+            throws IOException {
+        while (count < length) {
+            if (position == limit && (count > 0 || !refill())) {
+                break;
+            }
+            int end = Math.min(limit, position + length - count);
+            while (position < end) {
+                chars[offset + count++] = (char) (bytes[position++] & 0xFF);
+            }
+        }
+        return count;
+    }
+
+    private int readWithDecoder(char[] chars, int offset, int length, int count)
+            throws IOException {
+        if (length - count < 2) {
+            // The decoder cannot make progress if a surrogate pair does not fit.
+            char[] pair = new char[2];
+            int decoded = readWithDecoder(pair, 0, 2, 0);
+            if (decoded > 0) {
+                chars[offset + count++] = pair[0];
+                if (decoded > 1) {
+                    pendingLowSurrogate = pair[1];
+                }
+            }
+            return count;
+        }
+
+        CharBuffer out = CharBuffer.wrap(chars, offset + count, length - count);
+        while (!decoderFlushed) {
+            byteBuffer.limit(limit);
+            byteBuffer.position(position);
+            CoderResult result = decoder.decode(byteBuffer, out, endOfInput);
+            position = byteBuffer.position();
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow() || out.position() > offset + count) {
+                break;
+            }
+            if (endOfInput) {
+                decoder.flush(out);
+                decoderFlushed = true;
+            } else {
+                refill();
+            }
+        }
+        return out.position() - offset;
+    }
+
+    /**
+     * Moves the unread bytes to the front of the buffer and reads more behind them.
+     *
+     * @return Whether any bytes were read.
+     */
+    private boolean refill()
+            throws IOException {
+        if (endOfInput) {
+            return false;
+        }
+        if (position > 0) {
+            System.arraycopy(bytes, position, bytes, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        int read = in.read(bytes, limit, bytes.length - limit);
+        if (read < 0) {
+            endOfInput = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    /**
+     * Reads until there are {@code maximum} bytes in the buffer, a {@code '>'} has been read, or
+     * the input ends.
+     */
+    private void fillForDetection(int maximum)
+            throws IOException {
+        int scanned = 0;
+        while (limit < maximum) {
+            for (; scanned < limit; scanned++) {
+                if (bytes[scanned] == '>') {
+                    return;
+                }
+            }
+            if (!refill()) {
+                return;
+            }
+        }
+    }
+}
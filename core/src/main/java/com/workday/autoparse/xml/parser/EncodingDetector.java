@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Determines the character encoding of an XML document from its first bytes, as described in
+ * appendix F of the XML specification: a byte order mark takes precedence, followed by the
+ * encoding declaration in the XML declaration. Documents with neither are UTF-8.
+ *
+ * @since 1.3
+ */
+final class EncodingDetector {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    static final Charset UTF_16BE = Charset.forName("UTF-16BE");
+    static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+    static final Charset US_ASCII = Charset.forName("US-ASCII");
+    static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * The number of bytes {@link #detect(byte[], int, int)} should be given to find the encoding
+     * declaration in all but the most unusual documents. Detection stops at the first {@code '>'}
+     * though, so there is no need to read this far if it occurs earlier.
+     */
+    static final int DETECTION_LIMIT = 1024;
+
+    private EncodingDetector() {
+    }
+
+    /**
+     * @return The length of the byte order mark at the start of {@code bytes}, or 0 if there is
+     * none.
+     */
+    static int getByteOrderMarkLength(byte[] bytes, int offset, int length) {
+        if (length >= 3 && (bytes[offset] & 0xFF) == 0xEF && (bytes[offset + 1] & 0xFF) == 0xBB
+                && (bytes[offset + 2] & 0xFF) == 0xBF) {
+            return 3;
+        }
+        if (length >= 2) {
+            int first = bytes[offset] & 0xFF;
+            int second = bytes[offset + 1] & 0xFF;
+            if (first == 0xFE && second == 0xFF || first == 0xFF && second == 0xFE) {
+                return 2;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param bytes Contains the first bytes of the document.
+     * @param offset The index of the first byte of the document.
+     * @param length The number of bytes available, which need not be more than up to and including
+     * the first {@code '>'}.
+     *
+     * @return The encoding of the document.
+     */
+    static Charset detect(byte[] bytes, int offset, int length)
+            throws ParseException {
+        if (length >= 2) {
+            int first = bytes[offset] & 0xFF;
+            int second = bytes[offset + 1] & 0xFF;
+            if (first == 0xEF && length >= 3 && second == 0xBB
+                    && (bytes[offset + 2] & 0xFF) == 0xBF) {
+                return UTF_8;
+            } else if (first == 0xFE && second == 0xFF) {
+                return UTF_16BE;
+            } else if (first == 0xFF && second == 0xFE) {
+                return UTF_16LE;
+            } else if (first == 0 && second == '<') {
+                return UTF_16BE;
+            } else if (first == '<' && second == 0) {
+                return UTF_16LE;
+            }
+        }
+        String declaredEncoding = findDeclaredEncoding(bytes, offset, offset + length);
+        if (declaredEncoding == null) {
+            return UTF_8;
+        }
+        try {
+            return Charset.forName(declaredEncoding);
+        } catch (IllegalArgumentException e) {
+            // Thrown as IllegalCharsetNameException or UnsupportedCharsetException.
+            throw new ParseException("Unsupported encoding: " + declaredEncoding, e);
+        }
+    }
+
+    /**
+     * @return Whether text in {@code charset} can be read by treating it as UTF-8.
+     */
+    static boolean isUtf8Compatible(Charset charset) {
+        return UTF_8.equals(charset) || US_ASCII.equals(charset);
+    }
+
+    /**
+     * Reads the value of the encoding pseudo-attribute of an XML declaration in an ASCII
+     * compatible encoding.
+     *
+     * @return The declared encoding, or null if there is none.
+     */
+    private static String findDeclaredEncoding(byte[] bytes, int start, int end) {
+        if (!startsWith(bytes, end, start, "<?xml")) {
+            return null;
+        }
+        for (int i = start + 5; i < end && bytes[i] != '>'; i++) {
+            if (!startsWith(bytes, end, i, "encoding")) {
+                continue;
+            }
+            int p = skipWhitespace(bytes, end, i + 8);
+            if (p >= end || bytes[p] != '=') {
+                return null;
+            }
+            p = skipWhitespace(bytes, end, p + 1);
+            if (p >= end || bytes[p] != '"' && bytes[p] != '\'') {
+                return null;
+            }
+            byte quote = bytes[p];
+            int valueStart = ++p;
+            while (p < end && bytes[p] != quote) {
+                p++;
+            }
+            if (p >= end) {
+                return null;
+            }
+            return new String(bytes, valueStart, p - valueStart, US_ASCII).toUpperCase(Locale.US);
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] bytes, int end, int offset, String prefix) {
+        if (offset + prefix.length() > end) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes[offset + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipWhitespace(byte[] bytes, int end, int p) {
+        while (p < end && (bytes[p] == ' ' || bytes[p] == '\t' || bytes[p] == '\n'
+                || bytes[p] == '\r')) {
+            p++;
+        }
+        return p;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+/**
+ * The interfaces of {@code java.util.concurrent.Flow}, which is not available on Android or before
+ * Java 9. They have the same methods and follow the same rules, those of the Reactive Streams
+ * specification, so they can be bridged to {@code java.util.concurrent.Flow}, Reactive Streams or
+ * any library built on either with a few lines of delegation.
+ *
+ * @see XmlElementPublisher
+ * @since 1.3
+ */
+public final class Flow {
+
+    private Flow() {
+    }
+
+    /**
+     * A source of items that are delivered to a {@link Subscriber} as it asks for them.
+     *
+     * @param <T> The type of the items.
+     */
+    public interface Publisher<T> {
+
+        /**
+         * Adds a subscriber. It is first passed a {@link Subscription} through {@link
+         * Subscriber#onSubscribe(Subscription)}, and then receives the items it requests, until
+         * the source is exhausted, fails or the subscription is cancelled.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Receives items from a {@link Publisher}. Its methods are never called concurrently.
+     *
+     * @param <T> The type of the items.
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Called before any other method, with the subscription to request items through.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with each requested item.
+         */
+        void onNext(T item);
+
+        /**
+         * Called once if the source failed. No other methods are called after it.
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called once after the last item. No other methods are called after it.
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a {@link Publisher} and one of its {@link Subscriber}s.
+     */
+    public interface Subscription {
+
+        /**
+         * Asks for {@code n} more items, on top of those already requested but not yet delivered.
+         * {@link Long#MAX_VALUE} asks for all remaining items.
+         */
+        void request(long n);
+
+        /**
+         * Asks the publisher to stop delivering items and to release what it holds for the
+         * subscriber. Items may still arrive for a short while after this.
+         */
+        void cancel();
+    }
+}
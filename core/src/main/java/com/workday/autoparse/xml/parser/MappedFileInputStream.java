@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An {@link InputStream} over a memory-mapped file. The file is mapped one window at a time, so
+ * files of any size can be read, and the bytes are copied straight from the page cache into the
+ * reader's buffer.
+ * <p/>
+ * Closing this stream does not close the channel.
+ *
+ * @since 1.3
+ */
+final class MappedFileInputStream extends InputStream {
+
+    /**
+     * Mapping the whole file at once could exhaust the address space of a 32-bit process.
+     */
+    static final long DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long windowSize;
+    private final long end;
+    // The file position of the start of the current window.
+    private long windowStart;
+    private MappedByteBuffer window;
+
+    /**
+     * Reads {@code channel} from its current position to the end of the file.
+     */
+    MappedFileInputStream(FileChannel channel)
+            throws IOException {
+        this(channel, DEFAULT_WINDOW_SIZE);
+    }
+
+    MappedFileInputStream(FileChannel channel, long windowSize)
+            throws IOException {
+        this.channel = channel;
+        this.windowSize = windowSize;
+        this.windowStart = channel.position();
+        this.end = channel.size();
+    }
+
+    @Override
+    public int read()
+            throws IOException {
+        if (!ensureWindow()) {
+            return -1;
+        }
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length)
+            throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureWindow()) {
+            return -1;
+        }
+        int count = Math.min(length, window.remaining());
+        window.get(buffer, offset, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long count)
+            throws IOException {
+        long skipped = 0;
+        while (skipped < count && ensureWindow()) {
+            int step = (int) Math.min(count - skipped, window.remaining());
+            window.position(window.position() + step);
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        long remaining = end - windowStart - (window != null ? window.position() : 0);
+        return (int) Math.min(Integer.MAX_VALUE, remaining);
+    }
+
+    @Override
+    public void close() {
+        window = null;
+        windowStart = end;
+    }
+
+    /**
+     * @return Whether there are bytes left to read in the current window, after moving on to the
+     * next window if necessary.
+     */
+    private boolean ensureWindow()
+            throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+        if (window != null) {
+            windowStart += window.capacity();
+            window = null;
+        }
+        if (windowStart >= end) {
+            return false;
+        }
+        long size = Math.min(windowSize, end - windowStart);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, size);
+        return true;
+    }
+}
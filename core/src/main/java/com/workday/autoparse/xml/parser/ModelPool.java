@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import com.workday.autoparse.xml.annotations.XmlRecyclable;
+import com.workday.autoparse.xml.context.XmlParserSettingsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Keeps instances of model classes annotated with {@link XmlRecyclable} that are no longer used,
+ * so that the generated parsers can parse into them rather than instantiating new objects. This
+ * spares the garbage collector when many short-lived objects are parsed, such as when a large
+ * document is {@link XmlElementStreamParser#stream(java.io.InputStream, String, Class) streamed}
+ * and each element is dropped as soon as it has been processed.
+ * <p/>
+ * Objects are only recycled once they are {@link #release(Object) released}, which resets them
+ * right away. A released object must no longer be used, and must not be released again, since it
+ * may be handed out by a later parse at any time. At most a fixed number of idle instances are kept
+ * for each class; further released objects are left to the garbage collector.
+ * <p/>
+ * Instances are thread safe.
+ *
+ * @see XmlParserSettingsBuilder#withModelPool(int, Class[])
+ * @since 1.3
+ */
+public final class ModelPool {
+
+    private final Map<Class<?>, Instances<?>> instances = new HashMap<>();
+
+    /**
+     * @param maxIdleInstances The maximum number of idle instances to keep for each class.
+     * @param parsers The model classes to recycle, and their parsers.
+     *
+     * @throws IllegalArgumentException If one of the classes is not annotated with {@link
+     * XmlRecyclable}.
+     */
+    public ModelPool(int maxIdleInstances, Map<Class<?>, XmlElementParser<?>> parsers) {
+        if (maxIdleInstances <= 0) {
+            throw new IllegalArgumentException(
+                    "maxIdleInstances must be positive but was " + maxIdleInstances);
+        }
+        for (Map.Entry<Class<?>, XmlElementParser<?>> entry : parsers.entrySet()) {
+            if (!(entry.getValue() instanceof RecyclingXmlElementParser)) {
+                throw new IllegalArgumentException(String.format(
+                        "%s is not annotated with @%s",
+                        entry.getKey().getName(),
+                        XmlRecyclable.class.getSimpleName()));
+            }
+            instances.put(entry.getKey(),
+                          new Instances<>((RecyclingXmlElementParser<?>) entry.getValue(),
+                                          maxIdleInstances));
+        }
+    }
+
+    /**
+     * Takes an idle instance of {@code type}. Called by the generated parsers.
+     *
+     * @return A reset instance, or null if there is none.
+     */
+    public <T> T acquire(Class<T> type) {
+        Instances<?> idle = instances.get(type);
+        return idle != null ? type.cast(idle.queue.poll()) : null;
+    }
+
+    /**
+     * Resets {@code model} and keeps it for a later parse, unless enough instances of its class
+     * are idle already.
+     *
+     * @param model An object that was parsed into an instance of one of the recycled classes, and
+     * is no longer used.
+     *
+     * @throws IllegalArgumentException If the class of {@code model} is not recycled by this
+     * pool.
+     */
+    public void release(Object model) {
+        Instances<?> idle = instances.get(model.getClass());
+        if (idle == null) {
+            throw new IllegalArgumentException(
+                    model.getClass().getName() + " is not recycled by this pool");
+        }
+        idle.release(model);
+    }
+
+    /**
+     * @return The number of idle instances of {@code type}.
+     */
+    public int getIdleCount(Class<?> type) {
+        Instances<?> idle = instances.get(type);
+        return idle != null ? idle.queue.size() : 0;
+    }
+
+    private static final class Instances<T> {
+
+        private final RecyclingXmlElementParser<T> parser;
+        final ArrayBlockingQueue<Object> queue;
+
+        Instances(RecyclingXmlElementParser<T> parser, int capacity) {
+            this.parser = parser;
+            queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        @SuppressWarnings("unchecked")
+        void release(Object model) {
+            // Reset before pooling, so that an idle instance does not keep its children alive.
+            parser.reset((T) model);
+            queue.offer(model);
+        }
+    }
+}
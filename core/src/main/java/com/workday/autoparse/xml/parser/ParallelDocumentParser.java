@@ -0,0 +1,433 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import com.workday.autoparse.xml.context.XmlParserContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parses a document by parsing the children of its root element in parallel.
+ * <p/>
+ * {@link #split(Source)} first scans the document for the byte ranges of the root's children with
+ * {@link Utf8XmlStreamReader#skipElement()}, which only looks for tags, and hands them to the
+ * executor in batches as it goes. Each batch is parsed with its own reader, every child as a
+ * document of its own. {@link #parse()} then parses the root element with its own {@link
+ * XmlElementParser}, from a {@link ReplayingXmlStreamReader} that hands it the children in
+ * document order, so the root's collections, setters and post-parse hooks see exactly what they
+ * would in a sequential parse.
+ * <p/>
+ * Documents that are not UTF-8 encoded, whose root element has text between its children, or
+ * that are too small to be worth splitting, are not split. Each instance parses one document.
+ *
+ * @see XmlStreamParser#parseParallel(byte[], int, int, ExecutorService)
+ * @since 1.3
+ */
+final class ParallelDocumentParser {
+
+    private static final Charset UTF_8 = EncodingDetector.UTF_8;
+
+    /**
+     * Children are parsed in batches of about this many bytes, so that small children do not
+     * each cost a task, and documents smaller than two batches are not split at all.
+     */
+    static final int DEFAULT_BATCH_SIZE = 256 * 1024;
+
+    private final XmlParserContext context;
+    private final XmlStreamReaderPool readerPool;
+    private final ExecutorService executor;
+    private final int batchSize;
+
+    private Source source;
+    private byte[] rootDocument;
+    private Projection.Node rootNode;
+    private final List<Batch> batches = new ArrayList<>();
+    private int childCount;
+
+    ParallelDocumentParser(XmlParserContext context,
+                           XmlStreamReaderPool readerPool,
+                           ExecutorService executor,
+                           int batchSize) {
+        this.context = context;
+        this.readerPool = readerPool;
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Scans the document and starts parsing the children of its root element.
+     *
+     * @return Whether the document was split. If not, it should be parsed sequentially instead.
+     */
+    boolean split(Source source)
+            throws ParseException {
+        this.source = source;
+        try {
+            if (!scan()) {
+                cancel();
+                return false;
+            }
+        } catch (ParseException | RuntimeException | Error e) {
+            cancel();
+            throw e;
+        }
+        return true;
+    }
+
+    private boolean scan()
+            throws ParseException {
+        Utf8XmlStreamReader scanner = new Utf8XmlStreamReader();
+        source.setInput(scanner, context.getSettings().getCharset());
+        if (!EncodingDetector.isUtf8Compatible(scanner.getCharset())
+                || scanner.next() != XmlStreamReader.START_ELEMENT) {
+            return false;
+        }
+        String rootName = scanner.getName();
+        long rootStart = scanner.getTagOffset();
+        Projection projection = context.getSettings().getProjection();
+        if (projection != null) {
+            rootNode = projection.getNode(null, rootName, context.getParserMap().get(rootName));
+            if (rootNode == null) {
+                return false;
+            }
+        }
+
+        long firstChildStart = -1;
+        Batch batch = null;
+        int event;
+        while ((event = scanner.next()) != XmlStreamReader.END_ELEMENT) {
+            if (event == XmlStreamReader.CHARACTERS) {
+                if (firstChildStart >= 0 && !scanner.isWhiteSpace()) {
+                    return false;
+                }
+                continue;
+            }
+            long start = scanner.getTagOffset();
+            String name = scanner.getName();
+            scanner.skipElement();
+            long end = scanner.getEndOffset();
+            if (firstChildStart < 0) {
+                firstChildStart = start;
+            }
+            if (batch == null) {
+                batch = new Batch(start, childCount);
+            }
+            batch.add(name, start, end);
+            childCount++;
+            if (end - batch.start >= batchSize) {
+                submit(batch);
+                batch = null;
+            }
+        }
+        if (batch != null) {
+            submit(batch);
+        }
+        if (batches.size() < 2) {
+            return false;
+        }
+
+        byte[] endTag = ("</" + rootName + ">").getBytes(UTF_8);
+        Chunk header = source.read(rootStart, (int) (firstChildStart - rootStart));
+        rootDocument = Arrays.copyOfRange(header.bytes, header.offset,
+                                          header.offset + header.length + endTag.length);
+        System.arraycopy(endTag, 0, rootDocument, header.length, endTag.length);
+        return true;
+    }
+
+    private void submit(Batch batch) {
+        batches.add(batch);
+        // The first batch is held back until it is clear that the document will be split.
+        if (batches.size() == 2) {
+            batches.get(0).future = executor.submit(batches.get(0));
+        }
+        if (batches.size() > 1) {
+            batch.future = executor.submit(batch);
+        }
+    }
+
+    /**
+     * Parses the root element, waiting for its children as they are needed.
+     *
+     * @return The object the root element was parsed into.
+     */
+    Object parse()
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        try {
+            return ReplayingXmlStreamReader.parseRoot(context, readerPool, rootDocument,
+                                                      new ParsedChildren());
+        } catch (ParseException | UnknownElementException | UnexpectedChildException
+                | RuntimeException | Error e) {
+            cancel();
+            throw e;
+        }
+    }
+
+    private void cancel() {
+        for (Batch batch : batches) {
+            if (batch.future != null) {
+                batch.future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * The bytes of a UTF-8 encoded document, which may be read at any offset from any thread.
+     */
+    abstract static class Source {
+
+        /**
+         * Points {@code reader} at the whole document.
+         */
+        abstract void setInput(Utf8XmlStreamReader reader, Charset charset)
+                throws ParseException;
+
+        /**
+         * @return The {@code length} bytes at {@code offset} in the document.
+         */
+        abstract Chunk read(long offset, int length)
+                throws ParseException;
+    }
+
+    /**
+     * A range of bytes in an array.
+     */
+    static final class Chunk {
+
+        final byte[] bytes;
+        final int offset;
+        final int length;
+
+        Chunk(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A document in an array, whose children are parsed in place.
+     */
+    static final class ByteArraySource extends Source {
+
+        private final byte[] bytes;
+        private final int offset;
+        private final int length;
+
+        ByteArraySource(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        void setInput(Utf8XmlStreamReader reader, Charset charset)
+                throws ParseException {
+            reader.setInput(bytes, offset, length, charset);
+        }
+
+        @Override
+        Chunk read(long position, int count) {
+            return new Chunk(bytes, offset + (int) position, count);
+        }
+    }
+
+    /**
+     * A document in a file, from the position of the channel to the end. The file is scanned
+     * through a {@link MappedFileInputStream}, and each batch of children is read into an array of
+     * its own, so files larger than 2 GB can be split.
+     */
+    static final class FileChannelSource extends Source {
+
+        private final FileChannel channel;
+        private final long start;
+
+        FileChannelSource(FileChannel channel)
+                throws ParseException {
+            this.channel = channel;
+            try {
+                start = channel.position();
+            } catch (IOException e) {
+                throw new ParseException(e);
+            }
+        }
+
+        @Override
+        void setInput(Utf8XmlStreamReader reader, Charset charset)
+                throws ParseException {
+            try {
+                reader.setInput(new MappedFileInputStream(channel), charset);
+            } catch (IOException e) {
+                throw new ParseException(e);
+            }
+        }
+
+        @Override
+        Chunk read(long position, int count)
+                throws ParseException {
+            byte[] bytes = new byte[count];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            try {
+                // Positional reads do not move the channel, so they may happen concurrently.
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + position + buffer.position()) < 0) {
+                        throw new ParseException("Unexpected end of file");
+                    }
+                }
+            } catch (IOException e) {
+                throw new ParseException(e);
+            }
+            return new Chunk(bytes, 0, count);
+        }
+    }
+
+    /**
+     * Consecutive children of the root element, parsed together by one task.
+     */
+    private final class Batch implements Callable<Object[]> {
+
+        final long start;
+        final int firstIndex;
+        int count;
+        String[] names = new String[16];
+        // The offsets of the children relative to the start of the batch.
+        int[] starts = new int[16];
+        int[] lengths = new int[16];
+        long end;
+        Future<Object[]> future;
+
+        Batch(long start, int firstIndex) {
+            this.start = start;
+            this.firstIndex = firstIndex;
+        }
+
+        void add(String name, long childStart, long childEnd) {
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+                starts = Arrays.copyOf(starts, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+            }
+            names[count] = name;
+            starts[count] = (int) (childStart - start);
+            lengths[count] = (int) (childEnd - childStart);
+            count++;
+            end = childEnd;
+        }
+
+        @Override
+        public Object[] call()
+                throws ParseException, UnknownElementException, UnexpectedChildException {
+            Chunk chunk = source.read(start, (int) (end - start));
+            Object[] elements = new Object[count];
+            Projection projection = context.getSettings().getProjection();
+            XmlStreamReader reader = readerPool.acquire();
+            if (projection != null) {
+                reader.getProjectionState().start();
+            }
+            try {
+                for (int i = 0; i < count; i++) {
+                    reader.setInput(chunk.bytes, chunk.offset + starts[i], lengths[i], UTF_8);
+                    reader.next();
+                    if (projection != null) {
+                        reader.getProjectionState().node = rootNode;
+                    }
+                    elements[i] = ParserUtils.parseCurrentElement(reader, context);
+                }
+            } finally {
+                if (projection != null) {
+                    reader.getProjectionState().finish(projection, 0);
+                }
+                readerPool.release(reader);
+            }
+            return elements;
+        }
+
+        Object[] getElements()
+                throws ParseException, UnknownElementException, UnexpectedChildException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ParseException(e);
+            } catch (ExecutionException e) {
+                // Some executors wrap exceptions further, as ForkJoinPool does with checked ones,
+                // so look for them along the chain of causes.
+                for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                    if (cause instanceof ParseException) {
+                        throw (ParseException) cause;
+                    } else if (cause instanceof UnknownElementException) {
+                        throw (UnknownElementException) cause;
+                    } else if (cause instanceof UnexpectedChildException) {
+                        throw (UnexpectedChildException) cause;
+                    }
+                }
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new ParseException(cause);
+            }
+        }
+    }
+
+    /**
+     * The children of the root element, taken from the batches in order.
+     */
+    private final class ParsedChildren implements ReplayingXmlStreamReader.Children {
+
+        private int batchIndex;
+        private Object[] elements;
+
+        @Override
+        public int size() {
+            return childCount;
+        }
+
+        @Override
+        public String getName(int index) {
+            Batch batch = getBatch(index);
+            return batch.names[index - batch.firstIndex];
+        }
+
+        @Override
+        public Object get(int index)
+                throws ParseException, UnknownElementException, UnexpectedChildException {
+            Batch batch = getBatch(index);
+            if (elements == null) {
+                elements = batch.getElements();
+            }
+            Object element = elements[index - batch.firstIndex];
+            if (index - batch.firstIndex == batch.count - 1) {
+                // Let the batch's elements be collected once the root holds on to them.
+                elements = null;
+                batch.future = null;
+            }
+            return element;
+        }
+
+        private Batch getBatch(int index) {
+            Batch batch = batches.get(batchIndex);
+            if (index >= batch.firstIndex + batch.count) {
+                batch = batches.get(++batchIndex);
+                elements = null;
+            }
+            return batch;
+        }
+    }
+}
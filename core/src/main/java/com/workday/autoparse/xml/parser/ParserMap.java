@@ -17,8 +17,30 @@ import java.util.Set;
  */
 public interface ParserMap {
 
+    /**
+     * @param name The qualified name of an element. Names from an {@link XmlStreamReader} are
+     * interned, so they are identical to the String constants a generated map is keyed by.
+     *
+     * @return The parser for elements with this name, or null if there is none.
+     */
     XmlElementParser<?> get(String name);
 
+    /**
+     * Looks up a name that is not available as a String, such as one in a reader's buffer.
+     * Generated maps implement this without creating a String.
+     */
+    default XmlElementParser<?> get(CharSequence name) {
+        return get(name.toString());
+    }
+
+    /**
+     * Looks up the name held in {@code chars} between {@code offset} and {@code offset + length}.
+     * Generated maps implement this without creating a String.
+     */
+    default XmlElementParser<?> get(char[] chars, int offset, int length) {
+        return get(new String(chars, offset, length));
+    }
+
     Set<String> keySet();
 
 }
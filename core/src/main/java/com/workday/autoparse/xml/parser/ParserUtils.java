@@ -7,7 +7,9 @@
 
 package com.workday.autoparse.xml.parser;
 
+import com.workday.autoparse.xml.context.ElementListeners;
 import com.workday.autoparse.xml.context.XmlContextHolder;
+import com.workday.autoparse.xml.context.XmlParserContext;
 import com.workday.autoparse.xml.utils.Preconditions;
 
 import javax.xml.stream.XMLStreamConstants;
@@ -24,6 +26,18 @@ public class ParserUtils {
     private ParserUtils() {
     }
 
+    /**
+     * Takes an idle instance of a model class annotated with {@link
+     * com.workday.autoparse.xml.annotations.XmlRecyclable XmlRecyclable} from the {@link ModelPool}
+     * of the settings.
+     *
+     * @return A reset instance, or null if there is none or the settings have no pool.
+     */
+    public static <T> T acquireRecycled(Class<T> type, XmlParserContext context) {
+        ModelPool pool = context.getSettings().getModelPool();
+        return pool != null ? pool.acquire(type) : null;
+    }
+
     /**
      * Assuming the reader is at a {@link XMLStreamConstants#START_ELEMENT} event, this method finds
      * the {@link XmlElementParser} associated with the element's name and calls {@link
@@ -40,20 +54,146 @@ public class ParserUtils {
     public static Object parseCurrentElement(XmlStreamReader reader)
             throws UnknownElementException, UnexpectedChildException, IllegalStateException,
             ParseException {
+        return parseCurrentElement(reader, XmlContextHolder.getContext());
+    }
+
+    /**
+     * Like {@link #parseCurrentElement(XmlStreamReader)}, but with the context passed explicitly
+     * rather than looked up in {@link XmlContextHolder}.
+     */
+    public static Object parseCurrentElement(XmlStreamReader reader, XmlParserContext context)
+            throws UnknownElementException, UnexpectedChildException, IllegalStateException,
+            ParseException {
+        return parseCurrentElement(reader, context, false);
+    }
+
+    /**
+     * Like {@link #parseCurrentElement(XmlStreamReader, XmlParserContext)}, for the root element of
+     * a document. The root is passed to the {@link XmlElementListener}s like any other element,
+     * but is never dropped, since it has no parent to be dropped from.
+     */
+    static Object parseRootElement(XmlStreamReader reader, XmlParserContext context)
+            throws UnknownElementException, UnexpectedChildException, ParseException {
+        return parseCurrentElement(reader, context, true);
+    }
+
+    private static Object parseCurrentElement(XmlStreamReader reader,
+                                              XmlParserContext context,
+                                              boolean root)
+            throws UnknownElementException, UnexpectedChildException, ParseException {
         Preconditions.checkArgument(reader.isStartElement(),
                                     "The reader must be at a start element.");
         String name = reader.getName();
-        XmlElementParser<?> parser = XmlContextHolder.getContext().getParserMap().get(name);
+        XmlElementParser<?> parser = context.getParserMap().get(name);
         if (parser == null) {
-            parser = UnexpectedElementHandler.handleUnknownElement(reader);
+            parser = UnexpectedElementHandler.handleUnknownElement(reader, context);
         }
 
         if (parser != null) {
-            return parser.parseElement(reader);
+            return parseElement(parser, reader, name, context, root);
+        }
+        return null;
+    }
+
+    /**
+     * Parses the current element with {@code parser}, unless it is outside the {@link Projection}
+     * of the context, and then passes the result to the {@link XmlElementListener}s. Used by the
+     * generated {@link XmlElementParser}s for children whose parser is known statically.
+     *
+     * @param name The name of the current element.
+     *
+     * @return The object the element was parsed into, or null if it was skipped or should not be
+     * added to its parent.
+     */
+    public static Object parseElement(XmlElementParser<?> parser,
+                                      XmlStreamReader reader,
+                                      String name,
+                                      XmlParserContext context)
+            throws UnknownElementException, UnexpectedChildException, ParseException {
+        return parseElement(parser, reader, name, context, false);
+    }
+
+    private static Object parseElement(XmlElementParser<?> parser,
+                                       XmlStreamReader reader,
+                                       String name,
+                                       XmlParserContext context,
+                                       boolean root)
+            throws UnknownElementException, UnexpectedChildException, ParseException {
+        if (reader instanceof ReplayingXmlStreamReader
+                && ((ReplayingXmlStreamReader) reader).isAtChild()) {
+            // Parsed in parallel already, including the projection and the listeners.
+            return ((ReplayingXmlStreamReader) reader).replayChild();
+        }
+        Projection projection = context.getSettings().getProjection();
+        if (projection == null) {
+            return onElementParsed(parser.parseElement(reader, context), name, context, root);
+        }
+
+        Projection.State state = reader.getProjectionState();
+        Projection.Node parentNode = state.node;
+        Projection.Node node = projection.getNode(parentNode, name, parser);
+        if (node == null) {
+            state.skippedElements += skip(reader);
+            return null;
+        }
+        state.node = node;
+        Object element;
+        if (node == Projection.NONE) {
+            state.skippedElements++;
+            parseProjectedDescendants(reader, context);
+            element = null;
+        } else {
+            state.parsedElements++;
+            element = parser.parseElement(reader, context);
+        }
+        state.node = parentNode;
+        return onElementParsed(element, name, context, root);
+    }
+
+    /**
+     * Passes a freshly parsed element to the {@link XmlElementListener}s of the context, if there
+     * are any.
+     *
+     * @param element The object the element was parsed into, or null.
+     * @param name The name of the element.
+     * @param root Whether the element is the root, which is never dropped.
+     *
+     * @return {@code element}, or null if it should not be added to its parent.
+     */
+    private static Object onElementParsed(Object element,
+                                          String name,
+                                          XmlParserContext context,
+                                          boolean root) {
+        ElementListeners listeners = context.getSettings().getElementListeners();
+        if (element == null || listeners.isEmpty() || listeners.onElement(name, element) || root) {
+            return element;
         }
         return null;
     }
 
+    /**
+     * Parses the children of the current element that are part of the projection, without
+     * parsing the element itself. When complete, the reader is at the event following the
+     * element's END_ELEMENT, as it is after {@link XmlElementParser#parseElement(XmlStreamReader)}.
+     */
+    private static void parseProjectedDescendants(XmlStreamReader reader,
+                                                  XmlParserContext context)
+            throws UnknownElementException, UnexpectedChildException, ParseException {
+        reader.next();
+        while (!reader.isEndElement()) {
+            if (reader.isStartElement()) {
+                parseCurrentElement(reader, context);
+            } else {
+                reader.next();
+            }
+        }
+        reader.next();
+        if (reader.isCharacters()) {
+            reader.nextTag();
+        }
+    }
+
+
     /**
      * Skips the current element and all descendants. When complete, the {@code reader} will be at
      * the event immediately following the current element's END_ELEMENT. If the reader starts at an
@@ -64,21 +204,58 @@ public class ParserUtils {
      */
     public static void skipElement(XmlStreamReader reader)
             throws ParseException {
+        skip(reader);
+    }
 
-        int depth = (reader.isEndElement()) ? 0 : 1;
-
-        while (depth > 0) {
-            reader.next();
-            if (reader.isStartElement()) {
-                depth++;
-            } else if (reader.isEndElement()) {
-                depth--;
-            }
-        }
+    /**
+     * Like {@link #skipElement(XmlStreamReader)}.
+     *
+     * @return The number of elements skipped, including the current one.
+     */
+    static int skip(XmlStreamReader reader)
+            throws ParseException {
+        int count = reader.isEndElement() ? 0 : reader.skipElement();
         reader.next();
         if (reader.isCharacters()) {
             reader.nextTag();
         }
+        return count;
+    }
+
+    /**
+     * Used by the generated {@link ParserMap}s.
+     *
+     * @return Whether {@code chars} holds exactly the characters of {@code key}.
+     */
+    public static boolean contentEquals(CharSequence chars, String key) {
+        int length = key.length();
+        if (chars.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars.charAt(i) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Used by the generated {@link ParserMap}s.
+     *
+     * @return Whether the {@code length} characters at {@code offset} in {@code chars} are
+     * exactly the characters of {@code key}.
+     */
+    public static boolean contentEquals(char[] chars, int offset, int length, String key) {
+        if (length != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
 }
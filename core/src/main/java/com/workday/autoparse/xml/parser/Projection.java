@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import com.workday.autoparse.xml.context.XmlParserSettingsBuilder;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The parts of a document that should be parsed into objects; everything else is skipped without
+ * being instantiated.
+ * <p/>
+ * An element is parsed if its path from the root element is one of the projected paths, or lies
+ * below one, or if it is an instance of one of the projected model classes. The ancestors of
+ * projected paths are parsed as well, so that the projected elements have parents to be added to.
+ * Elements that are not part of the projection are skipped with {@link
+ * ParserUtils#skipElement(XmlStreamReader)}, unless model classes are projected: since those may
+ * occur anywhere, such elements are searched for them instead. Elements found that way have no
+ * parent to be added to, so they are only seen by {@link XmlElementListener}s.
+ * <p/>
+ * Clients should not need to use this class other than to read its {@link #getStatistics()
+ * statistics}.
+ *
+ * @see XmlParserSettingsBuilder#withProjectedPaths(String...)
+ * @see XmlParserSettingsBuilder#withProjectedClasses(Class[])
+ * @since 1.3
+ */
+public final class Projection {
+
+    // Everything below an element with this node is parsed.
+    static final Node ALL = new Node();
+    // Only elements of projected classes below an element with this node are parsed.
+    static final Node NONE = new Node();
+    // Nothing below an element with this node is parsed.
+    static final Node SKIP = new Node();
+
+    private final Node root = new Node();
+    private final Set<XmlElementParser<?>> projectedParsers;
+    private final ProjectionStatistics statistics = new ProjectionStatistics();
+
+    /**
+     * @param paths The projected paths, such as {@code "feed/record/id"}.
+     * @param projectedParsers The parsers of the projected model classes.
+     */
+    public Projection(Collection<String> paths, Collection<XmlElementParser<?>> projectedParsers) {
+        for (String path : paths) {
+            Node node = root;
+            for (String name : XmlElementIterator.splitPath(path)) {
+                Node child = node.children.get(name);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(name, child);
+                }
+                node = child;
+            }
+            node.projected = true;
+        }
+        Set<XmlElementParser<?>> parsers =
+                Collections.newSetFromMap(new IdentityHashMap<XmlElementParser<?>, Boolean>());
+        parsers.addAll(projectedParsers);
+        this.projectedParsers = Collections.unmodifiableSet(parsers);
+    }
+
+    /**
+     * @return The number of elements parsed and skipped so far by all parsers with these
+     * settings.
+     */
+    public ProjectionStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @param parent The node of the parent element, or null for the root element.
+     * @param name The name of the element.
+     * @param parser The parser of the element, or null if it is not known.
+     *
+     * @return The node of the element, or null if the element should be skipped.
+     */
+    Node getNode(Node parent, String name, XmlElementParser<?> parser) {
+        if (parent == ALL) {
+            return ALL;
+        } else if (parent == SKIP) {
+            return null;
+        }
+        if (parser != null && projectedParsers.contains(parser)) {
+            return ALL;
+        }
+        Node child = (parent == null ? root : parent).children.get(name);
+        if (child != null) {
+            return child.projected ? ALL : child;
+        }
+        return projectedParsers.isEmpty() ? null : NONE;
+    }
+
+    /**
+     * @return The node of the parent of the elements at {@code path}.
+     */
+    Node getParentNode(String[] path) {
+        Node node = null;
+        for (int i = 0; i < path.length - 1; i++) {
+            node = getNode(node, path[i], null);
+            if (node == null) {
+                return SKIP;
+            }
+        }
+        return node;
+    }
+
+    static final class Node {
+
+        final Map<String, Node> children = new HashMap<>();
+        boolean projected;
+    }
+
+    /**
+     * The progress of a single parse through the projection. Each reader has one, so that the
+     * shared statistics are only updated once per document.
+     */
+    static final class State {
+
+        Node node;
+        int parsedElements;
+        int skippedElements;
+
+        void start() {
+            node = null;
+            parsedElements = 0;
+            skippedElements = 0;
+        }
+
+        void finish(Projection projection) {
+            finish(projection, 1);
+        }
+
+        /**
+         * @param documents The number of documents to count, which is 0 for the parts of a
+         * document that are parsed separately.
+         */
+        void finish(Projection projection, int documents) {
+            projection.statistics.add(documents, parsedElements, skippedElements);
+            start();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how much of the parsed documents a {@link Projection} let through. The counts are updated
+ * at the end of each document, and are safe to read from any thread.
+ *
+ * @since 1.3
+ */
+public final class ProjectionStatistics {
+
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong parsedElements = new AtomicLong();
+    private final AtomicLong skippedElements = new AtomicLong();
+
+    ProjectionStatistics() {
+    }
+
+    /**
+     * @return The number of documents parsed.
+     */
+    public long getDocumentCount() {
+        return documents.get();
+    }
+
+    /**
+     * @return The number of elements that were parsed into objects.
+     */
+    public long getParsedElementCount() {
+        return parsedElements.get();
+    }
+
+    /**
+     * @return The number of elements that were skipped, including all descendants of skipped
+     * elements.
+     */
+    public long getSkippedElementCount() {
+        return skippedElements.get();
+    }
+
+    /**
+     * @return The fraction of all elements that were skipped, or 0 if no elements have been seen.
+     */
+    public double getSkippedFraction() {
+        long skipped = skippedElements.get();
+        long total = skipped + parsedElements.get();
+        return total == 0 ? 0 : (double) skipped / total;
+    }
+
+    public void reset() {
+        documents.set(0);
+        parsedElements.set(0);
+        skippedElements.set(0);
+    }
+
+    void add(int documentCount, int parsed, int skipped) {
+        documents.addAndGet(documentCount);
+        parsedElements.addAndGet(parsed);
+        skippedElements.addAndGet(skipped);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d documents, %d elements parsed, %d elements skipped",
+                             getDocumentCount(),
+                             getParsedElementCount(),
+                             getSkippedElementCount());
+    }
+}
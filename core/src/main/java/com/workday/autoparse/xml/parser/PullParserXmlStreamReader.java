@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import com.workday.autoparse.xml.utils.CharSequenceReader;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * An {@link XmlStreamReader} backed by an {@link XmlPullParser}.
+ *
+ * @author nathan.taylor
+ * @since 2013-10-3
+ */
+final class PullParserXmlStreamReader extends XmlStreamReader {
+
+    private final XmlPullParser pullParser;
+    private final DecodingReader decodingReader = new DecodingReader();
+
+    PullParserXmlStreamReader(XmlPullParser pullParser) {
+        this.pullParser = pullParser;
+    }
+
+    @Override
+    protected void setInput(InputStream in, Charset charset)
+            throws ParseException {
+        decodingReader.setInput(in, charset);
+        setPullParserInput(in != null ? decodingReader : null);
+    }
+
+    @Override
+    protected void setInput(CharSequence text)
+            throws ParseException {
+        decodingReader.setInput(null, null);
+        setPullParserInput(new CharSequenceReader(text));
+    }
+
+    private void setPullParserInput(Reader reader)
+            throws ParseException {
+        try {
+            pullParser.setInput(reader);
+        } catch (XmlPullParserException e) {
+            throw new ParseException(e);
+        }
+    }
+
+    @Override
+    public int next()
+            throws ParseException {
+        try {
+            return pullParser.next();
+        } catch (XmlPullParserException e) {
+            throw new ParseException(e);
+        } catch (IOException e) {
+            throw new ParseException(e);
+        }
+    }
+
+    @Override
+    public int nextTag()
+            throws ParseException {
+        try {
+            return pullParser.nextTag();
+        } catch (XmlPullParserException e) {
+            throw new ParseException(e);
+        } catch (IOException e) {
+            throw new ParseException(e);
+        }
+    }
+
+    @Override
+    public boolean isWhiteSpace()
+            throws ParseException {
+        try {
+            return pullParser.isWhitespace();
+        } catch (XmlPullParserException e) {
+            throw new ParseException(e);
+        }
+    }
+
+    @Override
+    public String getAttributeValue(String namespaceURI, String localName) {
+        return pullParser.getAttributeValue(namespaceURI, localName);
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return pullParser.getAttributeCount();
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+        return pullParser.getAttributeNamespace(index);
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+        return pullParser.getAttributeName(index);
+    }
+
+    @Override
+    public String getAttributePrefix(int index) {
+        return pullParser.getAttributePrefix(index);
+    }
+
+    @Override
+    public String getAttributeType(int index) {
+        return pullParser.getAttributeType(index);
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        return pullParser.getAttributeValue(index);
+    }
+
+    @Override
+    public int getEventType()
+            throws ParseException {
+        try {
+            return pullParser.getEventType();
+        } catch (XmlPullParserException e) {
+            throw new ParseException(e);
+        }
+    }
+
+    @Override
+    public String getText() {
+        return pullParser.getText();
+    }
+
+    @Override
+    public String getEncoding() {
+        Charset charset = decodingReader.getCharset();
+        return charset != null ? charset.name() : null;
+    }
+
+    @Override
+    public String getLocalName() {
+        return pullParser.getName();
+    }
+
+    @Override
+    public String getPrefix() {
+        return pullParser.getPrefix();
+    }
+}
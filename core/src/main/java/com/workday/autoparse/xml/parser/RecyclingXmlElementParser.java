@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import com.workday.autoparse.xml.annotations.XmlRecyclable;
+import com.workday.autoparse.xml.context.XmlParserContext;
+
+/**
+ * An {@link XmlElementParser} that can parse into existing instances, generated for classes
+ * annotated with {@link XmlRecyclable}. Its {@link #parseElement(XmlStreamReader,
+ * XmlParserContext)} takes an instance from the {@link ModelPool} of the settings when one is
+ * available, and only instantiates a new object otherwise.
+ *
+ * @param <T> The type of the object that will be populated.
+ *
+ * @since 1.3
+ */
+public interface RecyclingXmlElementParser<T> extends XmlElementParser<T> {
+
+    /**
+     * Clears everything a parse sets on {@code object}, as described in {@link XmlRecyclable}, so
+     * that it can be parsed into again and no longer holds on to the children of its last element.
+     */
+    void reset(T object);
+
+    /**
+     * Populates {@code object}, which must be new or {@link #reset(Object) reset}, from the current
+     * element. Like {@link #parseElement(XmlStreamReader, XmlParserContext)}, the reader must be
+     * at the element's start tag, and is left at the event following its end tag.
+     *
+     * @param object The object to populate.
+     * @param reader The XMLStreamReader on which to operate.
+     * @param context The context of the parse.
+     *
+     * @return {@code object}, fully inflated.
+     */
+    T parseInto(T object, XmlStreamReader reader, XmlParserContext context)
+            throws UnknownElementException, UnexpectedChildException, ParseException;
+}
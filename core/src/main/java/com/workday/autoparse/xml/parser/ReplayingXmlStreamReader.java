@@ -0,0 +1,283 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import com.workday.autoparse.xml.context.XmlContextHolder;
+import com.workday.autoparse.xml.context.XmlParserContext;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Presents a root element whose children have already been parsed elsewhere, so that the root can
+ * be parsed by its own {@link XmlElementParser}. The root's start tag, attributes and leading text
+ * come from another reader; each child appears as a start element that {@link
+ * ParserUtils#parseElement(XmlElementParser, XmlStreamReader, String, XmlParserContext)} replaces
+ * with the object it was already parsed into, in document order.
+ * <p/>
+ * The children cannot be stepped into. Skipping a child with {@link #skipElement()} discards the
+ * object it was parsed into.
+ *
+ * @see ParallelDocumentParser
+ * @see XmlAsyncParser
+ * @since 1.3
+ */
+final class ReplayingXmlStreamReader extends XmlStreamReader {
+
+    /**
+     * The children of the root element, in document order.
+     */
+    interface Children {
+
+        int size();
+
+        String getName(int index);
+
+        /**
+         * @return The object the child was parsed into, or null if it should not be added to the
+         * root, waiting for it to be parsed if necessary.
+         */
+        Object get(int index)
+                throws ParseException, UnknownElementException, UnexpectedChildException;
+    }
+
+    // The reader is at the root start element or its leading text, provided by the root reader.
+    private static final int PHASE_ROOT = 0;
+    // The reader is at the start of the child at the current index.
+    private static final int PHASE_CHILD = 1;
+    // The reader is at the end of the child before the current index, after a skip.
+    private static final int PHASE_CHILD_END = 2;
+    // The reader is at the root end element or the end of the document.
+    private static final int PHASE_END = 3;
+
+    private final XmlStreamReader root;
+    private final Children children;
+    private int phase = PHASE_ROOT;
+    private int index;
+    private int eventType;
+
+    /**
+     * @param root A reader at the start element of a document that consists of the root's start
+     * tag and leading text only.
+     */
+    ReplayingXmlStreamReader(XmlStreamReader root, Children children)
+            throws ParseException {
+        this.root = root;
+        this.children = children;
+        eventType = root.getEventType();
+    }
+
+    /**
+     * Parses the root element of a document whose children have already been parsed.
+     *
+     * @param rootDocument The root element's start tag and leading text, followed by its end
+     * tag, encoded as UTF-8.
+     * @param children The children of the root element.
+     *
+     * @return The object the root element was parsed into.
+     */
+    static Object parseRoot(XmlParserContext context,
+                            XmlStreamReaderPool readerPool,
+                            byte[] rootDocument,
+                            Children children)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        Projection projection = context.getSettings().getProjection();
+        XmlStreamReader rootReader = readerPool.acquire();
+        try {
+            rootReader.setInput(rootDocument, 0, rootDocument.length, EncodingDetector.UTF_8);
+            rootReader.next();
+            ReplayingXmlStreamReader reader = new ReplayingXmlStreamReader(rootReader, children);
+            if (projection != null) {
+                reader.getProjectionState().start();
+            }
+            try {
+                // As in StandardXmlStreamParser, only for code that still looks the context up.
+                XmlContextHolder.setContext(context);
+                return ParserUtils.parseRootElement(reader, context);
+            } finally {
+                XmlContextHolder.removeContext();
+                if (projection != null) {
+                    reader.getProjectionState().finish(projection);
+                }
+            }
+        } finally {
+            readerPool.release(rootReader);
+        }
+    }
+
+    /**
+     * @return Whether the reader is at a child whose object can be taken with {@link
+     * #replayChild()}.
+     */
+    boolean isAtChild() {
+        return phase == PHASE_CHILD;
+    }
+
+    /**
+     * Takes the object the current child was parsed into and moves to the following event, just
+     * like {@link XmlElementParser#parseElement(XmlStreamReader)} does.
+     */
+    Object replayChild()
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        Object child = children.get(index++);
+        moveToChild();
+        return child;
+    }
+
+    @Override
+    protected void setInput(InputStream in, Charset charset) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int next()
+            throws ParseException {
+        switch (phase) {
+            case PHASE_ROOT:
+                if (root.next() == CHARACTERS) {
+                    return eventType = CHARACTERS;
+                }
+                return moveToChild();
+            case PHASE_CHILD:
+                throw new ParseException("Cannot step into an element that was parsed "
+                                                 + "separately: " + getName());
+            case PHASE_CHILD_END:
+                return moveToChild();
+            default:
+                if (eventType == END_DOCUMENT) {
+                    throw new ParseException("Already reached the end of the document");
+                }
+                return eventType = END_DOCUMENT;
+        }
+    }
+
+    private int moveToChild() {
+        if (index < children.size()) {
+            phase = PHASE_CHILD;
+            return eventType = START_ELEMENT;
+        }
+        phase = PHASE_END;
+        return eventType = END_ELEMENT;
+    }
+
+    @Override
+    public int nextTag()
+            throws ParseException {
+        int event = next();
+        if (event == CHARACTERS && isWhiteSpace()) {
+            event = next();
+        }
+        if (event != START_ELEMENT && event != END_ELEMENT) {
+            throw new ParseException("Expected a start or end tag");
+        }
+        return event;
+    }
+
+    @Override
+    public int skipElement()
+            throws ParseException {
+        if (phase != PHASE_CHILD) {
+            throw new ParseException("Expected to be at a start element");
+        }
+        index++;
+        phase = PHASE_CHILD_END;
+        eventType = END_ELEMENT;
+        return 1;
+    }
+
+    @Override
+    public int getEventType() {
+        return eventType;
+    }
+
+    @Override
+    public boolean isWhiteSpace()
+            throws ParseException {
+        return eventType == CHARACTERS && root.isWhiteSpace();
+    }
+
+    @Override
+    public String getText()
+            throws ParseException {
+        return eventType == CHARACTERS ? root.getText() : null;
+    }
+
+    @Override
+    public String getEncoding() {
+        return root.getEncoding();
+    }
+
+    @Override
+    public String getName() {
+        switch (phase) {
+            case PHASE_CHILD:
+                return children.getName(index);
+            case PHASE_CHILD_END:
+                return children.getName(index - 1);
+            default:
+                return eventType == END_DOCUMENT ? null : root.getName();
+        }
+    }
+
+    @Override
+    public String getLocalName() {
+        return getName();
+    }
+
+    @Override
+    public String getPrefix() {
+        return null;
+    }
+
+    // The attributes are only read at the root start element.
+
+    @Override
+    public String getAttributeValue(String namespaceURI, String localName) {
+        return root.getAttributeValue(namespaceURI, localName);
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return phase == PHASE_ROOT ? root.getAttributeCount() : -1;
+    }
+
+    @Override
+    public String getAttributeName(int index) {
+        return root.getAttributeName(index);
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+        return root.getAttributeNamespace(index);
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+        return root.getAttributeLocalName(index);
+    }
+
+    @Override
+    public String getAttributePrefix(int index) {
+        return root.getAttributePrefix(index);
+    }
+
+    @Override
+    public String getAttributeType(int index) {
+        return root.getAttributeType(index);
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        return root.getAttributeValue(index);
+    }
+
+    @Override
+    public CharSequence getAttributeValueCharacters(int index) {
+        return root.getAttributeValueCharacters(index);
+    }
+}
@@ -10,10 +10,19 @@ package com.workday.autoparse.xml.parser;
 import com.workday.autoparse.xml.annotations.XmlElement;
 import com.workday.autoparse.xml.context.XmlContextHolder;
 import com.workday.autoparse.xml.context.XmlParserContext;
+import com.workday.autoparse.xml.utils.Preconditions;
 
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
 
 /**
  * The entry point for parsing an XML input stream into objects annotated with {@link XmlElement}.
@@ -21,37 +30,243 @@ import java.io.InputStream;
  * @author nathan.taylor
  * @since 2013-9-18-11:41
  */
-class StandardXmlStreamParser implements XmlStreamParser {
+class StandardXmlStreamParser implements XmlElementStreamParser {
 
     private final XmlParserContext context;
+    private final XmlStreamReaderPool readerPool;
 
     StandardXmlStreamParser(XmlParserContext context) {
         this.context = context;
+        readerPool = new XmlStreamReaderPool(context.getSettings().getReaderPoolSize(),
+                                             XmlStreamReaderFactory.getReaderProvider(
+                                                     context.getSettings()));
     }
 
     @Override
     public Object parseStream(InputStream in) throws ParseException,
             UnknownElementException,
             UnexpectedChildException {
+        return parseStream(in, true);
+    }
+
+    /**
+     * Like {@link #parseStream(InputStream)}, but without making the context available through
+     * {@link XmlContextHolder}, which would cost a thread local map for every virtual thread.
+     * Parsers that still look the context up install it themselves.
+     */
+    Object parseIndependently(InputStream in) throws ParseException,
+            UnknownElementException,
+            UnexpectedChildException {
+        return parseStream(in, false);
+    }
+
+    private Object parseStream(InputStream in, boolean holdContext) throws ParseException,
+            UnknownElementException,
+            UnexpectedChildException {
 
-        Object result = null;
         XmlStreamReader reader = null;
+        try {
+            reader = readerPool.acquire();
+            reader.setInput(in, context.getSettings().getCharset());
+            return parseDocument(reader, holdContext);
+        } finally {
+            if (reader != null) {
+                readerPool.release(reader);
+            }
+            if (in != null) {
+                closeQuietly(in);
+            }
+        }
+    }
+
+    @Override
+    public Object parse(byte[] bytes, int offset, int length) throws ParseException,
+            UnknownElementException,
+            UnexpectedChildException {
+        Preconditions.checkArgument(offset >= 0 && length >= 0 && length <= bytes.length - offset,
+                                    "Invalid range: offset " + offset + ", length " + length);
+
+        XmlStreamReader reader = readerPool.acquire();
+        try {
+            reader.setInput(bytes, offset, length, context.getSettings().getCharset());
+            return parseDocument(reader, true);
+        } finally {
+            readerPool.release(reader);
+        }
+    }
+
+    @Override
+    public Object parse(CharSequence text) throws ParseException,
+            UnknownElementException,
+            UnexpectedChildException {
+        XmlStreamReader reader = readerPool.acquire();
+        try {
+            reader.setInput(text);
+            return parseDocument(reader, true);
+        } finally {
+            readerPool.release(reader);
+        }
+    }
 
+    @Override
+    public Object parseFile(File file) throws ParseException,
+            UnknownElementException,
+            UnexpectedChildException {
+        FileInputStream in;
         try {
-            XmlContextHolder.setContext(context);
-            reader = XmlStreamReaderFactory.newXmlStreamReader(in);
+            in = new FileInputStream(file);
+        } catch (IOException e) {
+            throw new ParseException(e);
+        }
+        try {
+            return parse(in.getChannel());
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    @Override
+    public Object parseParallel(byte[] bytes, int offset, int length, ExecutorService executor)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        Preconditions.checkArgument(offset >= 0 && length >= 0 && length <= bytes.length - offset,
+                                    "Invalid range: offset " + offset + ", length " + length);
+        Preconditions.checkNotNull(executor, "executor");
+
+        ParallelDocumentParser parser = newParallelDocumentParser(executor);
+        if (parser.split(new ParallelDocumentParser.ByteArraySource(bytes, offset, length))) {
+            return parser.parse();
+        }
+        return parse(bytes, offset, length);
+    }
+
+    @Override
+    public Object parseParallel(FileChannel channel, ExecutorService executor)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        Preconditions.checkNotNull(executor, "executor");
+
+        ParallelDocumentParser parser = newParallelDocumentParser(executor);
+        if (parser.split(new ParallelDocumentParser.FileChannelSource(channel))) {
+            return parser.parse();
+        }
+        return parse(channel);
+    }
+
+    private ParallelDocumentParser newParallelDocumentParser(ExecutorService executor) {
+        return new ParallelDocumentParser(context, readerPool, executor,
+                                          ParallelDocumentParser.DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public XmlAsyncParser newAsyncParser() {
+        return new XmlAsyncParser(this, context, readerPool);
+    }
+
+    @Override
+    public <T> XmlElementIterator<T> stream(InputStream in, String path, Class<T> type)
+            throws ParseException {
+        Preconditions.checkNotNull(in, "in");
+        Preconditions.checkNotNull(type, "type");
+        String[] names = XmlElementIterator.splitPath(path);
+        return newElementIterator(in, context.getSettings().getCharset(), names, type, null, 0);
+    }
+
+    @Override
+    public <T> XmlElementIterator<T> resume(InputStream in,
+                                            String path,
+                                            Class<T> type,
+                                            XmlCheckpoint checkpoint)
+            throws ParseException {
+        Preconditions.checkNotNull(in, "in");
+        Preconditions.checkNotNull(type, "type");
+        Preconditions.checkNotNull(checkpoint, "checkpoint");
+        String[] names = XmlElementIterator.splitPath(path);
+        Preconditions.checkArgument(
+                checkpoint.hasOpenElements(Arrays.copyOf(names, names.length - 1)),
+                "The checkpoint was not taken at the path " + path + ": " + checkpoint);
+
+        try {
+            skipFully(in, checkpoint.getOffset());
+        } catch (ParseException e) {
+            closeQuietly(in);
+            throw e;
+        }
+        // Stand in for the skipped part of the document with the start tags of the elements that
+        // are still open. Only UTF-8 encoded documents have checkpoints.
+        byte[] prefix = XmlElementIterator.getResumedPrefix(checkpoint);
+        InputStream resumed = new SequenceInputStream(new ByteArrayInputStream(prefix), in);
+        return newElementIterator(resumed, EncodingDetector.UTF_8, names, type, checkpoint,
+                                  prefix.length);
+    }
+
+    private <T> XmlElementIterator<T> newElementIterator(InputStream in,
+                                                         Charset charset,
+                                                         String[] names,
+                                                         Class<T> type,
+                                                         XmlCheckpoint resumedFrom,
+                                                         int resumedPrefixLength)
+            throws ParseException {
+        XmlStreamReader reader = readerPool.acquire();
+        try {
+            reader.setInput(in, charset);
+        } catch (ParseException | RuntimeException e) {
+            readerPool.release(reader);
+            closeQuietly(in);
+            throw e;
+        }
+        return new XmlElementIterator<>(context, readerPool, reader, in, names, type, resumedFrom,
+                                        resumedPrefixLength);
+    }
+
+    private static void skipFully(InputStream in, long count)
+            throws ParseException {
+        long remaining = count;
+        try {
+            while (remaining > 0) {
+                long skipped = in.skip(remaining);
+                if (skipped <= 0) {
+                    // Some streams only skip what they have buffered, so read a byte to tell
+                    // whether the end has been reached.
+                    if (in.read() < 0) {
+                        throw new ParseException("The document ends before the checkpoint at "
+                                                         + count);
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+        } catch (IOException e) {
+            throw new ParseException(e);
+        }
+    }
+
+    private Object parseDocument(XmlStreamReader reader, boolean holdContext)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+
+        Object result = null;
+        Projection projection = context.getSettings().getProjection();
+        if (projection != null) {
+            reader.getProjectionState().start();
+        }
+        try {
+            // The generated parsers are given the context explicitly. It is only made available
+            // here for code that still looks it up.
+            if (holdContext) {
+                XmlContextHolder.setContext(context);
+            }
 
             while (reader.hasNext()) {
                 reader.next();
                 if (reader.isStartElement()) {
-                    result = ParserUtils.parseCurrentElement(reader);
+                    result = ParserUtils.parseRootElement(reader, context);
                     break;
                 }
             }
         } finally {
-            XmlContextHolder.removeContext();
-            if (in != null) {
-                closeQuietly(in);
+            if (holdContext) {
+                XmlContextHolder.removeContext();
+            }
+            if (projection != null) {
+                reader.getProjectionState().finish(projection);
             }
         }
         return result;
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns the element and attribute names read by an {@link XmlStreamReader}, so that each
+ * distinct name is represented by a single String instance. That instance is the one returned by
+ * {@link String#intern()}, which means it is identical to the String constants in generated code,
+ * and {@link String#equals(Object)} and {@link String#hashCode()} on it are as cheap as they can
+ * be.
+ * <p/>
+ * Each reader has its own table, so it does not need to be thread safe. A table stops learning new
+ * names once it holds {@value #MAX_SYMBOLS} of them. Names beyond that are returned as they are,
+ * equal to but not identical with the canonical instance, since going through {@link
+ * String#intern()} for each of them would cost more than it saves. Clients should not need to use
+ * this class.
+ *
+ * @since 1.3
+ */
+public final class SymbolTable {
+
+    private static final Charset UTF_8 = EncodingDetector.UTF_8;
+
+    static final int MAX_SYMBOLS = 4096;
+    // Must be a power of two.
+    private static final int QUALIFIED_NAME_SLOTS = 256;
+    private static final int INITIAL_BYTE_BUCKETS = 64;
+
+    private final Map<String, String> strings = new HashMap<>();
+
+    // A direct mapped cache from (prefix, local name) instance pairs to qualified names. Readers
+    // that return the same local name instance for every occurrence of a name always hit it.
+    private final String[] cachedPrefixes = new String[QUALIFIED_NAME_SLOTS];
+    private final String[] cachedLocalNames = new String[QUALIFIED_NAME_SLOTS];
+    private final String[] cachedQualifiedNames = new String[QUALIFIED_NAME_SLOTS];
+
+    private ByteSymbol[] byteBuckets = new ByteSymbol[INITIAL_BYTE_BUCKETS];
+    private int byteSymbolCount;
+
+    /**
+     * @return The canonical instance of {@code prefix:localName}, or of {@code localName} if there
+     * is no prefix.
+     */
+    public String getQualifiedName(String prefix, String localName) {
+        if (localName == null) {
+            return null;
+        }
+        int slot = (System.identityHashCode(localName) * 31 + System.identityHashCode(prefix))
+                & (QUALIFIED_NAME_SLOTS - 1);
+        if (cachedLocalNames[slot] == localName && cachedPrefixes[slot] == prefix) {
+            return cachedQualifiedNames[slot];
+        }
+        String qualifiedName = intern(prefix == null || prefix.isEmpty()
+                                      ? localName
+                                      : prefix + ":" + localName);
+        cachedPrefixes[slot] = prefix;
+        cachedLocalNames[slot] = localName;
+        cachedQualifiedNames[slot] = qualifiedName;
+        return qualifiedName;
+    }
+
+    /**
+     * @return The canonical instance of {@code name}, or {@code name} itself if it is new and the
+     * table is full.
+     */
+    public String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        String symbol = strings.get(name);
+        if (symbol == null) {
+            if (strings.size() >= MAX_SYMBOLS) {
+                return name;
+            }
+            symbol = name.intern();
+            strings.put(symbol, symbol);
+        }
+        return symbol;
+    }
+
+    /**
+     * @return The canonical instance of the name encoded as UTF-8 in {@code bytes} between {@code
+     * start} (inclusive) and {@code end} (exclusive), or a new String if it is new and the table
+     * is full. Nothing is allocated if the name has been seen before.
+     */
+    String intern(byte[] bytes, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = hash * 31 + bytes[i];
+        }
+        int bucket = hash & (byteBuckets.length - 1);
+        for (ByteSymbol symbol = byteBuckets[bucket]; symbol != null; symbol = symbol.next) {
+            if (symbol.hash == hash && symbol.matches(bytes, start, end)) {
+                return symbol.name;
+            }
+        }
+
+        String name = intern(new String(bytes, start, end - start, UTF_8));
+        if (byteSymbolCount < MAX_SYMBOLS) {
+            byte[] copy = new byte[end - start];
+            System.arraycopy(bytes, start, copy, 0, copy.length);
+            byteBuckets[bucket] = new ByteSymbol(name, copy, hash, byteBuckets[bucket]);
+            if (++byteSymbolCount > byteBuckets.length * 3 / 4) {
+                rehash();
+            }
+        }
+        return name;
+    }
+
+    private void rehash() {
+        ByteSymbol[] oldBuckets = byteBuckets;
+        byteBuckets = new ByteSymbol[oldBuckets.length * 2];
+        for (ByteSymbol symbol : oldBuckets) {
+            while (symbol != null) {
+                ByteSymbol next = symbol.next;
+                int bucket = symbol.hash & (byteBuckets.length - 1);
+                symbol.next = byteBuckets[bucket];
+                byteBuckets[bucket] = symbol;
+                symbol = next;
+            }
+        }
+    }
+
+    private static final class ByteSymbol {
+
+        final String name;
+        final byte[] bytes;
+        final int hash;
+        ByteSymbol next;
+
+        ByteSymbol(String name, byte[] bytes, int hash, ByteSymbol next) {
+            this.name = name;
+            this.bytes = bytes;
+            this.hash = hash;
+            this.next = next;
+        }
+
+        boolean matches(byte[] other, int start, int end) {
+            if (end - start != bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] != other[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+/**
+ * Wraps a {@link ParseException}, {@link UnknownElementException} or {@link
+ * UnexpectedChildException} thrown where the API does not allow checked exceptions, such as from
+ * {@link XmlElementIterator#next()}.
+ *
+ * @since 1.3
+ */
+public class UncheckedParseException
+        extends RuntimeException {
+
+    private static final long serialVersionUID = -2841536209853297734L;
+
+    public UncheckedParseException(Exception cause) {
+        super(cause);
+    }
+
+    /**
+     * @return The checked exception that was thrown while parsing.
+     */
+    @Override
+    public synchronized Exception getCause() {
+        return (Exception) super.getCause();
+    }
+}
@@ -8,6 +8,7 @@
 package com.workday.autoparse.xml.parser;
 
 import com.workday.autoparse.xml.context.XmlContextHolder;
+import com.workday.autoparse.xml.context.XmlParserContext;
 import com.workday.autoparse.xml.context.XmlParserSettings;
 import com.workday.autoparse.xml.utils.Preconditions;
 
@@ -41,17 +42,23 @@ public class UnexpectedElementHandler {
     public static XmlElementParser<?> handleUnknownElement(
             XmlStreamReader reader)
             throws UnknownElementException, ParseException {
+        return handleUnknownElement(reader, XmlContextHolder.getContext());
+    }
 
-        Preconditions.checkArgument(reader.isStartElement(), "Must be at a start element event.");
+    /**
+     * Like {@link #handleUnknownElement(XmlStreamReader)}, but with the context passed explicitly
+     * rather than looked up in {@link XmlContextHolder}.
+     */
+    public static XmlElementParser<?> handleUnknownElement(XmlStreamReader reader,
+                                                           XmlParserContext context)
+            throws UnknownElementException, ParseException {
 
-        XmlElementParser<?> parserForUnknownElements = XmlContextHolder.getContext()
-                                                                       .getSettings()
-                                                                       .getUnknownElementParser();
+        Preconditions.checkArgument(reader.isStartElement(), "Must be at a start element event.");
 
+        XmlParserSettings settings = context.getSettings();
+        XmlElementParser<?> parserForUnknownElements = settings.getUnknownElementParser();
         XmlParserSettings.UnknownElementHandling unknownElementHandling =
-                XmlContextHolder.getContext()
-                                .getSettings()
-                                .getUnknownElementHandling();
+                settings.getUnknownElementHandling();
 
         if (unknownElementHandling == XmlParserSettings.UnknownElementHandling.IGNORE) {
             ParserUtils.skipElement(reader);
@@ -74,8 +81,20 @@ public class UnexpectedElementHandler {
      */
     public static void handleUnexpectedChild(Object parent, Object child, String childName)
             throws UnexpectedChildException {
+        handleUnexpectedChild(parent, child, childName, XmlContextHolder.getContext());
+    }
+
+    /**
+     * Like {@link #handleUnexpectedChild(Object, Object, String)}, but with the context passed
+     * explicitly rather than looked up in {@link XmlContextHolder}.
+     */
+    public static void handleUnexpectedChild(Object parent,
+                                             Object child,
+                                             String childName,
+                                             XmlParserContext context)
+            throws UnexpectedChildException {
 
-        if (!XmlContextHolder.getContext().getSettings().ignoresUnexpectedChildren()) {
+        if (!context.getSettings().ignoresUnexpectedChildren()) {
             throw new UnexpectedChildException(parent, child, childName);
         }
     }
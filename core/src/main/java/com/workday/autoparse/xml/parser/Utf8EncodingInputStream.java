@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * An {@link InputStream} that encodes the characters of a {@link Reader} as UTF-8. This lets
+ * {@link Utf8XmlStreamReader} read documents in other encodings.
+ *
+ * @since 1.3
+ */
+final class Utf8EncodingInputStream extends InputStream {
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private final Reader reader;
+    private final char[] chars = new char[CHUNK_SIZE];
+    // Every char takes at most three bytes, and a surrogate pair four.
+    private final byte[] bytes = new byte[CHUNK_SIZE * 3];
+    private int position;
+    private int limit;
+    // A high surrogate at the end of the previous chunk, or 0.
+    private char pendingHighSurrogate;
+
+    Utf8EncodingInputStream(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public int read()
+            throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return bytes[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length)
+            throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        int count = Math.min(length, limit - position);
+        System.arraycopy(bytes, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    private boolean fill()
+            throws IOException {
+        position = 0;
+        limit = 0;
+        while (limit == 0) {
+            int offset = 0;
+            if (pendingHighSurrogate != 0) {
+                chars[0] = pendingHighSurrogate;
+                pendingHighSurrogate = 0;
+                offset = 1;
+            }
+            int read = reader.read(chars, offset, chars.length - offset);
+            if (read < 0) {
+                if (offset > 0) {
+                    // An unpaired high surrogate at the end of the input.
+                    encode(chars[0]);
+                }
+                return limit > 0;
+            }
+            int end = offset + read;
+            if (end > 0 && Character.isHighSurrogate(chars[end - 1])) {
+                pendingHighSurrogate = chars[--end];
+            }
+            for (int i = 0; i < end; i++) {
+                char c = chars[i];
+                if (Character.isHighSurrogate(c) && i + 1 < end
+                        && Character.isLowSurrogate(chars[i + 1])) {
+                    encode(Character.toCodePoint(c, chars[++i]));
+                } else {
+                    encode(c);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void encode(int codePoint) {
+        if (codePoint < 0x80) {
+            bytes[limit++] = (byte) codePoint;
+        } else if (codePoint < 0x800) {
+            bytes[limit++] = (byte) (0xC0 | codePoint >> 6);
+            bytes[limit++] = (byte) (0x80 | codePoint & 0x3F);
+        } else if (codePoint < 0x10000) {
+            bytes[limit++] = (byte) (0xE0 | codePoint >> 12);
+            bytes[limit++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+            bytes[limit++] = (byte) (0x80 | codePoint & 0x3F);
+        } else {
+            bytes[limit++] = (byte) (0xF0 | codePoint >> 18);
+            bytes[limit++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+            bytes[limit++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+            bytes[limit++] = (byte) (0x80 | codePoint & 0x3F);
+        }
+    }
+}
@@ -0,0 +1,1382 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * An {@link XmlStreamReader} that tokenizes UTF-8 encoded bytes itself instead of going through a
+ * pull parser. Element names, attributes and text are recorded as offsets into a reusable byte
+ * buffer, and are only decoded into Strings when they are asked for. Documents in other encodings
+ * are transcoded to UTF-8 first, which is considerably slower.
+ * <p/>
+ * Like the pull parser backed reader, this reader does not process namespaces. Document type
+ * declarations are skipped, so only the predefined entities and character references are
+ * recognized.
+ *
+ * @since 1.3
+ */
+final class Utf8XmlStreamReader extends XmlStreamReader {
+
+    private static final Charset UTF_8 = EncodingDetector.UTF_8;
+
+    private static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+    /**
+     * Buffers that grew beyond this size to hold a single large token are not kept for the next
+     * document.
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+    private static final int END_OF_INPUT = -1;
+
+    // Each attribute occupies this many slots in the attributes array: name start, name end,
+    // value start, value end and whether the value has to be decoded character by character.
+    private static final int ATTRIBUTE_SLOTS = 5;
+    private static final int NAME_START = 0;
+    private static final int NAME_END = 1;
+    private static final int VALUE_START = 2;
+    private static final int VALUE_END = 3;
+    private static final int VALUE_IS_COMPLEX = 4;
+
+    private InputStream in;
+    private byte[] ownBuffer = new byte[DEFAULT_BUFFER_SIZE];
+    // Either ownBuffer, or the caller's array when tokenizing it in place.
+    private byte[] buffer = ownBuffer;
+    private boolean directInput;
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    private long discardedBytes;
+
+    private int eventType;
+    private int depth;
+    private boolean rootClosed;
+    private boolean emptyElement;
+
+    // The position of the '<' that opens the tag of the current start or end element.
+    private int tagStart;
+    private int nameStart;
+    private int nameEnd;
+
+    private int attributeCount;
+    private int[] attributes = new int[8 * ATTRIBUTE_SLOTS];
+
+    private int textStart;
+    private int textEnd;
+    private boolean textScanned;
+    private boolean textIsComplex;
+    private boolean textIsWhitespace;
+    // Set while the current text is being read by readText(), which discards it as it goes.
+    private boolean textStreaming;
+    private boolean textStreamingInCdata;
+    // The second half of a surrogate pair that did not fit into the last chunk, or 0.
+    private char pendingLowSurrogate;
+
+    // Names of the open elements, used to match end tags against their start tags.
+    private byte[] openNames = new byte[256];
+    private int[] openNameEnds = new int[16];
+    private int openNameCount;
+
+    private char[] chars = new char[256];
+    private final AsciiCharacters attributeCharacters = new AsciiCharacters();
+
+    private Charset encoding;
+    // Only used for documents that are not encoded in UTF-8.
+    private DecodingReader decodingReader;
+
+    @Override
+    protected void setInput(InputStream in, Charset charset)
+            throws ParseException {
+        if (ownBuffer.length > MAX_RETAINED_BUFFER_SIZE) {
+            ownBuffer = new byte[DEFAULT_BUFFER_SIZE];
+        }
+        buffer = ownBuffer;
+        directInput = false;
+        reset(in);
+        if (in == null) {
+            return;
+        }
+
+        encoding = detectEncoding(charset);
+        if (!EncodingDetector.isUtf8Compatible(encoding)) {
+            // Re-encode the document as UTF-8, starting with the bytes read for detection.
+            InputStream detectedBytes = new ByteArrayInputStream(Arrays.copyOf(buffer, limit));
+            transcode(new SequenceInputStream(detectedBytes, in));
+        }
+    }
+
+    /**
+     * Tokenizes {@code bytes} in place if they are UTF-8 encoded. The array is only read, and is
+     * referenced until the next call to one of the {@code setInput} methods.
+     */
+    @Override
+    protected void setInput(byte[] bytes, int offset, int length, Charset charset)
+            throws ParseException {
+        buffer = ownBuffer;
+        directInput = false;
+        reset(null);
+        encoding = charset != null
+                           && EncodingDetector.getByteOrderMarkLength(bytes, offset, length) == 0
+                   ? charset
+                   : EncodingDetector.detect(bytes, offset, length);
+        if (!EncodingDetector.isUtf8Compatible(encoding)) {
+            transcode(new ByteArrayInputStream(bytes, offset, length));
+            return;
+        }
+        buffer = bytes;
+        directInput = true;
+        position = offset;
+        limit = offset + length;
+        // Report error offsets relative to the start of the document.
+        discardedBytes = -offset;
+    }
+
+    @Override
+    protected void setInput(CharSequence text)
+            throws ParseException {
+        byte[] bytes = text.toString().getBytes(UTF_8);
+        setInput(bytes, 0, bytes.length, UTF_8);
+    }
+
+    private void reset(InputStream in) {
+        this.in = in;
+        position = 0;
+        limit = 0;
+        endOfInput = in == null;
+        discardedBytes = 0;
+        eventType = START_DOCUMENT;
+        depth = 0;
+        rootClosed = false;
+        emptyElement = false;
+        attributeCount = 0;
+        textScanned = true;
+        textStreaming = false;
+        pendingLowSurrogate = 0;
+        openNameCount = 0;
+        encoding = null;
+    }
+
+    private void transcode(InputStream in)
+            throws ParseException {
+        if (decodingReader == null) {
+            decodingReader = new DecodingReader();
+        }
+        decodingReader.setInput(in, encoding);
+        buffer = ownBuffer;
+        directInput = false;
+        this.in = new Utf8EncodingInputStream(decodingReader);
+        endOfInput = false;
+        position = 0;
+        limit = 0;
+    }
+
+    private Charset detectEncoding(Charset declaredCharset)
+            throws ParseException {
+        int maximum = declaredCharset == null ? EncodingDetector.DETECTION_LIMIT : 3;
+        int scanned = 0;
+        while (limit < maximum && fill()) {
+            for (; scanned < limit; scanned++) {
+                if (buffer[scanned] == '>') {
+                    maximum = 0;
+                    break;
+                }
+            }
+        }
+        if (declaredCharset == null
+                || EncodingDetector.getByteOrderMarkLength(buffer, 0, limit) > 0) {
+            return EncodingDetector.detect(buffer, 0, limit);
+        }
+        return declaredCharset;
+    }
+
+    @Override
+    public int next()
+            throws ParseException {
+        if (emptyElement) {
+            emptyElement = false;
+            closeElement();
+            return eventType = END_ELEMENT;
+        }
+
+        switch (eventType) {
+            case START_DOCUMENT:
+                skipByteOrderMark();
+                break;
+            case CHARACTERS:
+                if (textStreaming) {
+                    throw error("The text must be read to its end before moving on");
+                }
+                if (!textScanned) {
+                    scanText();
+                }
+                position = textEnd;
+                break;
+            case END_DOCUMENT:
+                throw error("Already reached the end of the document");
+            default:
+                break;
+        }
+        discardConsumedInput();
+
+        while (true) {
+            int b = peek(position);
+            if (b == END_OF_INPUT) {
+                if (depth > 0 || !rootClosed) {
+                    throw error("Unexpected end of document");
+                }
+                return eventType = END_DOCUMENT;
+            }
+            if (b != '<') {
+                if (depth > 0) {
+                    return startText();
+                }
+                if (!isWhitespace(b)) {
+                    throw error("Content is not allowed outside of the root element");
+                }
+                position++;
+                continue;
+            }
+
+            int c = peek(position + 1);
+            if (c == '/') {
+                parseEndTag();
+                return eventType = END_ELEMENT;
+            } else if (c == '?') {
+                position = skipProcessingInstruction(position);
+            } else if (c == '!') {
+                if (matches(position + 2, "--")) {
+                    position = skipComment(position);
+                } else if (matches(position + 2, "[CDATA[")) {
+                    if (depth == 0) {
+                        throw error("CDATA is not allowed outside of the root element");
+                    }
+                    return startText();
+                } else if (depth == 0 && !rootClosed && matches(position + 2, "DOCTYPE")) {
+                    position = skipDoctype(position);
+                } else {
+                    throw error("Unexpected markup");
+                }
+            } else {
+                parseStartTag();
+                return eventType = START_ELEMENT;
+            }
+        }
+    }
+
+    @Override
+    public int nextTag()
+            throws ParseException {
+        int event = next();
+        if (event == CHARACTERS && isWhiteSpace()) {
+            event = next();
+        }
+        if (event != START_ELEMENT && event != END_ELEMENT) {
+            throw error("Expected a start or end tag");
+        }
+        return event;
+    }
+
+    /**
+     * Finds the end of the current element by scanning the bytes for tags, without recording
+     * names, attributes or text. Comments, CDATA sections, processing instructions and quoted
+     * attribute values are recognized, so any markup they contain is not mistaken for tags. The
+     * element's own end tag is still checked against its start tag, but the tags in between are
+     * only counted.
+     */
+    @Override
+    public int skipElement()
+            throws ParseException {
+        if (eventType != START_ELEMENT) {
+            throw error("Expected to be at a start element");
+        }
+        if (emptyElement) {
+            emptyElement = false;
+            closeElement();
+            eventType = END_ELEMENT;
+            return 1;
+        }
+
+        int elementDepth = 1;
+        int count = 1;
+        int p = position;
+        while (true) {
+            // Search for the next tag directly in the buffer, which is by far the hottest loop.
+            byte[] bytes = buffer;
+            int end = limit;
+            while (p < end && bytes[p] != '<') {
+                p++;
+            }
+            if (p == end) {
+                position = p;
+                discardConsumedInput();
+                p = position;
+                if (!fill()) {
+                    throw error("Unexpected end of document", p);
+                }
+                continue;
+            }
+
+            int c = peek(p + 1);
+            if (c == '/') {
+                if (--elementDepth == 0) {
+                    position = p;
+                    parseEndTag();
+                    return eventType = END_ELEMENT;
+                }
+                p = skipTag(p + 2);
+            } else if (c == '!') {
+                if (matches(p + 2, "--")) {
+                    p = skipComment(p);
+                } else if (matches(p + 2, "[CDATA[")) {
+                    p = indexOf(p + 9, "]]>") + 3;
+                } else {
+                    throw error("Unexpected markup", p);
+                }
+            } else if (c == '?') {
+                p = skipProcessingInstruction(p);
+            } else {
+                count++;
+                p = skipTag(p + 1);
+                if (buffer[p - 2] != '/') {
+                    elementDepth++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The position after the {@code '>'} that ends the tag containing {@code p}.
+     */
+    private int skipTag(int p)
+            throws ParseException {
+        int quote = 0;
+        while (true) {
+            int b = peek(p);
+            if (b == END_OF_INPUT) {
+                throw error("Unexpected end of document in tag", p);
+            }
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return p + 1;
+            }
+            p++;
+        }
+    }
+
+    @Override
+    public int getEventType() {
+        return eventType;
+    }
+
+    @Override
+    public boolean isStartElement() {
+        return eventType == START_ELEMENT;
+    }
+
+    @Override
+    public boolean isEndElement() {
+        return eventType == END_ELEMENT;
+    }
+
+    @Override
+    public boolean isCharacters() {
+        return eventType == CHARACTERS;
+    }
+
+    @Override
+    public boolean isWhiteSpace()
+            throws ParseException {
+        if (eventType != CHARACTERS) {
+            return false;
+        }
+        checkNotStreamingText();
+        if (!textScanned) {
+            scanText();
+        }
+        if (textIsWhitespace || !textIsComplex) {
+            return textIsWhitespace;
+        }
+        // References and CDATA sections might still resolve to whitespace.
+        String text = getText();
+        for (int i = 0; i < text.length(); i++) {
+            if (!isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String getText()
+            throws ParseException {
+        if (eventType != CHARACTERS) {
+            return null;
+        }
+        checkNotStreamingText();
+        if (!textScanned) {
+            scanText();
+        }
+        return textIsComplex
+               ? decode(textStart, textEnd, false)
+               : new String(buffer, textStart, textEnd - textStart, UTF_8);
+    }
+
+    /**
+     * Decodes the text straight from the input and discards the input behind it as it goes, so
+     * text of any length is read with a buffer of bounded size. Once text is being read this way,
+     * {@link #getText()} and {@link #isWhiteSpace()} can no longer be used for it.
+     */
+    @Override
+    public int readText(char[] destination, int offset, int length)
+            throws ParseException {
+        if (eventType != CHARACTERS) {
+            return -1;
+        }
+        if (!textStreaming) {
+            textStreaming = true;
+            textStreamingInCdata = false;
+            position = textStart;
+        }
+        int count = 0;
+        if (pendingLowSurrogate != 0 && length > 0) {
+            destination[offset + count++] = pendingLowSurrogate;
+            pendingLowSurrogate = 0;
+        }
+        while (count < length) {
+            discardConsumedInput();
+            int b = peek(position);
+            if (textStreamingInCdata) {
+                if (b == ']' && matches(position, "]]>")) {
+                    textStreamingInCdata = false;
+                    position += 3;
+                    continue;
+                } else if (b == END_OF_INPUT) {
+                    throw error("Unexpected end of document, expected ']]>'");
+                }
+            } else if (b == '<') {
+                if (matches(position + 1, "![CDATA[")) {
+                    textStreamingInCdata = true;
+                    position += 9;
+                    continue;
+                } else if (matches(position + 1, "!--")) {
+                    position = skipComment(position);
+                    continue;
+                } else if (peek(position + 1) == '?') {
+                    position = skipProcessingInstruction(position);
+                    continue;
+                }
+                return endStreamedText(count);
+            } else if (b == END_OF_INPUT) {
+                return endStreamedText(count);
+            } else if (b == '&') {
+                position = decodeReference(position, findReferenceEnd(position), 0);
+                count = putDecoded(destination, offset, count, length);
+                continue;
+            }
+
+            if (b == '\r') {
+                destination[offset + count++] = '\n';
+                position++;
+                if (peek(position) == '\n') {
+                    position++;
+                }
+            } else if (b < 0x80) {
+                destination[offset + count++] = (char) b;
+                position++;
+            } else {
+                // Makes sure the whole sequence is in the buffer.
+                peek(position + 3);
+                position = decodeUtf8(position, limit, 0);
+                count = putDecoded(destination, offset, count, length);
+            }
+        }
+        return count;
+    }
+
+    private void checkNotStreamingText() {
+        if (textStreaming) {
+            throw new IllegalStateException("The text is being read with readText()");
+        }
+    }
+
+    /**
+     * Checks that the reference starting at {@code p} can be decoded, so that decoding the text or
+     * attribute value that contains it later cannot fail.
+     *
+     * @return The position after the reference.
+     */
+    private int checkReference(int p)
+            throws ParseException {
+        int end = findReferenceEnd(p);
+        decodeReference(p, end, 0);
+        return end;
+    }
+
+    /**
+     * Checks that the UTF-8 sequence starting at {@code p} is valid.
+     *
+     * @return The position after the sequence.
+     */
+    private int checkUtf8(int p)
+            throws ParseException {
+        // Makes sure the whole sequence is in the buffer.
+        peek(p + 3);
+        return decodeUtf8(p, limit, 0);
+    }
+
+    private void checkUtf8(int start, int end)
+            throws ParseException {
+        int p = start;
+        while (p < end) {
+            p = buffer[p] < 0 ? decodeUtf8(p, end, 0) : p + 1;
+        }
+    }
+
+    /**
+     * @return The position after the {@code ';'} that ends the reference starting at {@code p}.
+     */
+    private int findReferenceEnd(int p)
+            throws ParseException {
+        int end = p + 1;
+        while (true) {
+            int b = peek(end);
+            if (b == ';') {
+                return end + 1;
+            } else if (b == END_OF_INPUT || b == '<' || isWhitespace(b)) {
+                throw error("Unterminated entity reference", p);
+            }
+            end++;
+        }
+    }
+
+    /**
+     * Copies the code point that was decoded into the start of {@code chars} to {@code
+     * destination}, holding back the second half of a surrogate pair that does not fit.
+     *
+     * @return The new number of chars in {@code destination}.
+     */
+    private int putDecoded(char[] destination, int offset, int count, int length) {
+        destination[offset + count++] = chars[0];
+        if (charCount(chars, 0) == 2) {
+            if (count < length) {
+                destination[offset + count++] = chars[1];
+            } else {
+                pendingLowSurrogate = chars[1];
+            }
+        }
+        return count;
+    }
+
+    private int endStreamedText(int count)
+            throws ParseException {
+        textStreaming = false;
+        textEnd = position;
+        textScanned = true;
+        next();
+        return count > 0 ? count : -1;
+    }
+
+    @Override
+    public String getEncoding() {
+        return encoding != null ? encoding.name() : null;
+    }
+
+    /**
+     * @return The encoding of the current document, or null if there is no input.
+     */
+    Charset getCharset() {
+        return encoding;
+    }
+
+    /**
+     * @return The offset in the document of the {@code '<'} that opens the current start or end
+     * tag, which for the end of an empty element is its start tag. Only valid at a start or end
+     * element. Offsets of documents that are not UTF-8 encoded refer to their re-encoding as UTF-8.
+     */
+    long getTagOffset() {
+        return discardedBytes + tagStart;
+    }
+
+    /**
+     * @return The offset in the document of the byte following the current start or end tag.
+     */
+    long getEndOffset() {
+        return discardedBytes + position;
+    }
+
+    @Override
+    public String getName() {
+        return getLocalName();
+    }
+
+    @Override
+    public String getLocalName() {
+        if (eventType != START_ELEMENT && eventType != END_ELEMENT) {
+            return null;
+        }
+        return getSymbolTable().intern(buffer, nameStart, nameEnd);
+    }
+
+    @Override
+    public String getPrefix() {
+        return null;
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return eventType == START_ELEMENT ? attributeCount : -1;
+    }
+
+    @Override
+    public String getAttributeName(int index) {
+        return getAttributeLocalName(index);
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+        int slot = attributeSlot(index);
+        int start = attributes[slot + NAME_START];
+        return getSymbolTable().intern(buffer, start, attributes[slot + NAME_END]);
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+        attributeSlot(index);
+        return "";
+    }
+
+    @Override
+    public String getAttributePrefix(int index) {
+        attributeSlot(index);
+        return null;
+    }
+
+    @Override
+    public String getAttributeType(int index) {
+        attributeSlot(index);
+        return "CDATA";
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        int slot = attributeSlot(index);
+        int start = attributes[slot + VALUE_START];
+        int end = attributes[slot + VALUE_END];
+        if (attributes[slot + VALUE_IS_COMPLEX] == 0) {
+            return new String(buffer, start, end - start, UTF_8);
+        }
+        try {
+            return decode(start, end, true);
+        } catch (ParseException e) {
+            // References and UTF-8 sequences were checked by parseAttribute().
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public CharSequence getAttributeValueCharacters(int index) {
+        int slot = attributeSlot(index);
+        int start = attributes[slot + VALUE_START];
+        int end = attributes[slot + VALUE_END];
+        if (attributes[slot + VALUE_IS_COMPLEX] != 0) {
+            return getAttributeValue(index);
+        }
+        for (int p = start; p < end; p++) {
+            if (buffer[p] < 0) {
+                return getAttributeValue(index);
+            }
+        }
+        attributeCharacters.set(buffer, start, end);
+        return attributeCharacters;
+    }
+
+    @Override
+    public String getAttributeValue(String namespaceURI, String localName) {
+        if (eventType != START_ELEMENT) {
+            return null;
+        }
+        for (int i = 0; i < attributeCount; i++) {
+            int slot = i * ATTRIBUTE_SLOTS;
+            if (bytesEqual(attributes[slot + NAME_START], attributes[slot + NAME_END], localName)) {
+                return getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    private int attributeSlot(int index) {
+        if (eventType != START_ELEMENT || index < 0 || index >= attributeCount) {
+            throw new IndexOutOfBoundsException("No attribute at index " + index);
+        }
+        return index * ATTRIBUTE_SLOTS;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Tokenizing
+    // ---------------------------------------------------------------------------------------------
+
+    private void parseStartTag()
+            throws ParseException {
+        if (rootClosed) {
+            throw error("Only one root element is allowed");
+        }
+        tagStart = position;
+        int p = position + 1;
+        nameStart = p;
+        p = scanName(p);
+        nameEnd = p;
+        if (nameEnd == nameStart) {
+            throw error("Expected an element name", p);
+        }
+
+        attributeCount = 0;
+        while (true) {
+            p = skipWhitespace(p);
+            int b = peek(p);
+            if (b == '>') {
+                p++;
+                break;
+            } else if (b == '/') {
+                if (peek(p + 1) != '>') {
+                    throw error("Expected '>' after '/'", p + 1);
+                }
+                p += 2;
+                emptyElement = true;
+                break;
+            } else if (b == END_OF_INPUT) {
+                throw error("Unexpected end of document in start tag", p);
+            }
+            p = parseAttribute(p);
+        }
+        position = p;
+
+        if (!emptyElement) {
+            pushOpenName(nameStart, nameEnd);
+        }
+        depth++;
+    }
+
+    private int parseAttribute(int p)
+            throws ParseException {
+        int attributeNameStart = p;
+        p = scanName(p);
+        int attributeNameEnd = p;
+        if (attributeNameEnd == attributeNameStart) {
+            throw error("Unexpected character in start tag", p);
+        }
+        p = skipWhitespace(p);
+        if (peek(p) != '=') {
+            throw error("Expected '=' after attribute name", p);
+        }
+        p = skipWhitespace(p + 1);
+        int quote = peek(p);
+        if (quote != '"' && quote != '\'') {
+            throw error("Expected a quoted attribute value", p);
+        }
+        int valueStart = ++p;
+        boolean complex = false;
+        while (true) {
+            int b = peek(p);
+            if (b == quote) {
+                break;
+            } else if (b == '&') {
+                complex = true;
+                p = checkReference(p);
+                continue;
+            } else if (b >= 0x80) {
+                p = checkUtf8(p);
+                continue;
+            } else if (b == '\t' || b == '\n' || b == '\r') {
+                complex = true;
+            } else if (b == '<') {
+                throw error("'<' is not allowed in attribute values", p);
+            } else if (b == END_OF_INPUT) {
+                throw error("Unexpected end of document in attribute value", p);
+            }
+            p++;
+        }
+
+        int slot = attributeCount * ATTRIBUTE_SLOTS;
+        if (slot + ATTRIBUTE_SLOTS > attributes.length) {
+            attributes = Arrays.copyOf(attributes, attributes.length * 2);
+        }
+        attributes[slot + NAME_START] = attributeNameStart;
+        attributes[slot + NAME_END] = attributeNameEnd;
+        attributes[slot + VALUE_START] = valueStart;
+        attributes[slot + VALUE_END] = p;
+        attributes[slot + VALUE_IS_COMPLEX] = complex ? 1 : 0;
+        attributeCount++;
+        return p + 1;
+    }
+
+    private void parseEndTag()
+            throws ParseException {
+        tagStart = position;
+        int p = position + 2;
+        nameStart = p;
+        p = scanName(p);
+        nameEnd = p;
+        p = skipWhitespace(p);
+        if (peek(p) != '>') {
+            throw error("Expected '>' at the end of the end tag", p);
+        }
+        position = p + 1;
+        popOpenName(nameStart, nameEnd);
+        closeElement();
+    }
+
+    private void closeElement() {
+        attributeCount = 0;
+        depth--;
+        if (depth == 0) {
+            rootClosed = true;
+        }
+    }
+
+    private int startText() {
+        textStart = position;
+        textScanned = false;
+        return eventType = CHARACTERS;
+    }
+
+    /**
+     * Finds the end of the current text event. Character data, CDATA sections and references are
+     * coalesced into a single event; comments and processing instructions inside the text are
+     * dropped.
+     */
+    private void scanText()
+            throws ParseException {
+        int p = textStart;
+        boolean complex = false;
+        boolean whitespace = true;
+        while (true) {
+            int b = peek(p);
+            if (b == '<') {
+                int c = peek(p + 1);
+                if (c == '!' && matches(p + 2, "[CDATA[")) {
+                    int contentStart = p + 9;
+                    int contentEnd = indexOf(contentStart, "]]>");
+                    checkUtf8(contentStart, contentEnd);
+                    whitespace = whitespace && isAllWhitespace(contentStart, contentEnd);
+                    complex = true;
+                    p = contentEnd + 3;
+                    continue;
+                } else if (c == '!' && matches(p + 2, "--")) {
+                    complex = true;
+                    p = skipComment(p);
+                    continue;
+                } else if (c == '?') {
+                    complex = true;
+                    p = skipProcessingInstruction(p);
+                    continue;
+                }
+                break;
+            } else if (b == END_OF_INPUT) {
+                break;
+            } else if (b == '&') {
+                complex = true;
+                whitespace = false;
+                p = checkReference(p);
+                continue;
+            } else if (b >= 0x80) {
+                whitespace = false;
+                p = checkUtf8(p);
+                continue;
+            } else if (b == '\r') {
+                complex = true;
+                whitespace = false;
+            } else if (whitespace && !isWhitespace(b)) {
+                whitespace = false;
+            }
+            p++;
+        }
+        textEnd = p;
+        textIsComplex = complex;
+        textIsWhitespace = whitespace;
+        textScanned = true;
+    }
+
+    private int scanName(int p)
+            throws ParseException {
+        while (true) {
+            int b = peek(p);
+            if (b == END_OF_INPUT || isWhitespace(b) || b == '>' || b == '/' || b == '='
+                    || b == '<' || b == '"' || b == '\'') {
+                return p;
+            }
+            p++;
+        }
+    }
+
+    private int skipWhitespace(int p)
+            throws ParseException {
+        while (isWhitespace(peek(p))) {
+            p++;
+        }
+        return p;
+    }
+
+    private int skipComment(int p)
+            throws ParseException {
+        return indexOf(p + 4, "-->") + 3;
+    }
+
+    private int skipProcessingInstruction(int p)
+            throws ParseException {
+        return indexOf(p + 2, "?>") + 2;
+    }
+
+    private int skipDoctype(int p)
+            throws ParseException {
+        int bracketDepth = 0;
+        int quote = 0;
+        p += 9;
+        while (true) {
+            int b = peek(p);
+            if (b == END_OF_INPUT) {
+                throw error("Unexpected end of document in document type declaration", p);
+            }
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '[') {
+                bracketDepth++;
+            } else if (b == ']') {
+                bracketDepth--;
+            } else if (b == '>' && bracketDepth == 0) {
+                return p + 1;
+            }
+            p++;
+        }
+    }
+
+    private void skipByteOrderMark()
+            throws ParseException {
+        if (peek(position) == 0xEF && peek(position + 1) == 0xBB && peek(position + 2) == 0xBF) {
+            position += 3;
+        }
+    }
+
+    private void pushOpenName(int start, int end) {
+        int length = end - start;
+        int offset = openNameCount == 0 ? 0 : openNameEnds[openNameCount - 1];
+        if (offset + length > openNames.length) {
+            openNames = Arrays.copyOf(openNames, Math.max(openNames.length * 2, offset + length));
+        }
+        if (openNameCount == openNameEnds.length) {
+            openNameEnds = Arrays.copyOf(openNameEnds, openNameEnds.length * 2);
+        }
+        System.arraycopy(buffer, start, openNames, offset, length);
+        openNameEnds[openNameCount++] = offset + length;
+    }
+
+    private void popOpenName(int start, int end)
+            throws ParseException {
+        if (openNameCount == 0) {
+            throw error("Unexpected end tag");
+        }
+        int openEnd = openNameEnds[--openNameCount];
+        int openStart = openNameCount == 0 ? 0 : openNameEnds[openNameCount - 1];
+        boolean matches = openEnd - openStart == end - start;
+        for (int i = 0; matches && i < end - start; i++) {
+            matches = openNames[openStart + i] == buffer[start + i];
+        }
+        if (!matches) {
+            throw error(String.format(Locale.US,
+                                      "End tag </%s> does not match start tag <%s>",
+                                      new String(buffer, start, end - start, UTF_8),
+                                      new String(openNames, openStart, openEnd - openStart,
+                                                 UTF_8)));
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Decoding
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Decodes the bytes from {@code start} to {@code end}, resolving references and normalizing
+     * line endings. In attribute values, whitespace characters are replaced with spaces. In text,
+     * CDATA sections are unwrapped and comments and processing instructions are dropped.
+     */
+    private String decode(int start, int end, boolean attributeValue)
+            throws ParseException {
+        int length = 0;
+        int p = start;
+        while (p < end) {
+            if (length + 2 > chars.length) {
+                chars = Arrays.copyOf(chars, chars.length * 2);
+            }
+            int b = buffer[p] & 0xFF;
+            if (b == '<') {
+                if (matches(p + 1, "![CDATA[")) {
+                    int contentEnd = indexOf(p + 9, "]]>");
+                    length = decodeCdata(p + 9, contentEnd, length);
+                    p = contentEnd + 3;
+                } else if (matches(p + 1, "!--")) {
+                    p = skipComment(p);
+                } else {
+                    p = skipProcessingInstruction(p);
+                }
+            } else if (b == '&') {
+                p = decodeReference(p, end, length);
+                length += charCount(chars, length);
+            } else if (b == '\r') {
+                chars[length++] = attributeValue ? ' ' : '\n';
+                p++;
+                if (p < end && buffer[p] == '\n') {
+                    p++;
+                }
+            } else if (attributeValue && (b == '\t' || b == '\n')) {
+                chars[length++] = ' ';
+                p++;
+            } else if (b < 0x80) {
+                chars[length++] = (char) b;
+                p++;
+            } else {
+                p = decodeUtf8(p, end, length);
+                length += charCount(chars, length);
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    private int decodeCdata(int start, int end, int length)
+            throws ParseException {
+        int p = start;
+        while (p < end) {
+            if (length + 2 > chars.length) {
+                chars = Arrays.copyOf(chars, chars.length * 2);
+            }
+            int b = buffer[p] & 0xFF;
+            if (b == '\r') {
+                chars[length++] = '\n';
+                p++;
+                if (p < end && buffer[p] == '\n') {
+                    p++;
+                }
+            } else if (b < 0x80) {
+                chars[length++] = (char) b;
+                p++;
+            } else {
+                p = decodeUtf8(p, end, length);
+                length += charCount(chars, length);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Decodes the reference starting at {@code p} into {@code chars} at {@code offset}.
+     *
+     * @return The position after the reference.
+     */
+    private int decodeReference(int p, int end, int offset)
+            throws ParseException {
+        int semicolon = p + 1;
+        while (semicolon < end && buffer[semicolon] != ';') {
+            semicolon++;
+        }
+        if (semicolon == end) {
+            throw error("Unterminated entity reference", p);
+        }
+        int nameStart = p + 1;
+        int codePoint;
+        if (buffer[nameStart] == '#') {
+            codePoint = parseCharacterReference(p, nameStart + 1, semicolon);
+        } else if (bytesEqual(nameStart, semicolon, "lt")) {
+            codePoint = '<';
+        } else if (bytesEqual(nameStart, semicolon, "gt")) {
+            codePoint = '>';
+        } else if (bytesEqual(nameStart, semicolon, "amp")) {
+            codePoint = '&';
+        } else if (bytesEqual(nameStart, semicolon, "apos")) {
+            codePoint = '\'';
+        } else if (bytesEqual(nameStart, semicolon, "quot")) {
+            codePoint = '"';
+        } else {
+            throw error("Unknown entity reference &"
+                                + new String(buffer, nameStart, semicolon - nameStart, UTF_8)
+                                + ";", p);
+        }
+        putCodePoint(codePoint, offset);
+        return semicolon + 1;
+    }
+
+    /**
+     * Parses the digits of the character reference starting at {@code reference} between {@code
+     * start} and {@code end}.
+     */
+    private int parseCharacterReference(int reference, int start, int end)
+            throws ParseException {
+        int radix = 10;
+        if (start < end && buffer[start] == 'x') {
+            radix = 16;
+            start++;
+        }
+        if (start == end) {
+            throw error("Empty character reference", reference);
+        }
+        int codePoint = 0;
+        for (int p = start; p < end; p++) {
+            int digit = Character.digit(buffer[p], radix);
+            if (digit < 0 || codePoint > Character.MAX_CODE_POINT) {
+                throw error("Invalid character reference", reference);
+            }
+            codePoint = codePoint * radix + digit;
+        }
+        if (!isXmlChar(codePoint)) {
+            throw error("Character reference to an invalid XML character", reference);
+        }
+        return codePoint;
+    }
+
+    /**
+     * @return Whether {@code codePoint} matches the Char production of the XML specification, which
+     * leaves out most control characters, surrogates, U+FFFE and U+FFFF.
+     */
+    private static boolean isXmlChar(int codePoint) {
+        return codePoint >= 0x20 && codePoint < Character.MIN_SURROGATE
+                || codePoint == '\t' || codePoint == '\n' || codePoint == '\r'
+                || codePoint > Character.MAX_SURROGATE && codePoint <= 0xFFFD
+                || codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT
+                && codePoint <= Character.MAX_CODE_POINT;
+    }
+
+    private int decodeUtf8(int p, int end, int offset)
+            throws ParseException {
+        int b = buffer[p] & 0xFF;
+        int codePoint;
+        int length;
+        if ((b & 0xE0) == 0xC0) {
+            codePoint = b & 0x1F;
+            length = 2;
+        } else if ((b & 0xF0) == 0xE0) {
+            codePoint = b & 0x0F;
+            length = 3;
+        } else if ((b & 0xF8) == 0xF0) {
+            codePoint = b & 0x07;
+            length = 4;
+        } else {
+            throw error("Invalid UTF-8 sequence", p);
+        }
+        if (p + length > end) {
+            throw error("Truncated UTF-8 sequence", p);
+        }
+        for (int i = 1; i < length; i++) {
+            int continuation = buffer[p + i] & 0xFF;
+            if ((continuation & 0xC0) != 0x80) {
+                throw error("Invalid UTF-8 sequence", p + i);
+            }
+            codePoint = (codePoint << 6) | (continuation & 0x3F);
+        }
+        int minimum = length == 2 ? 0x80 : length == 3 ? 0x800 : 0x10000;
+        if (codePoint < minimum) {
+            throw error("Overlong UTF-8 sequence", p);
+        } else if (codePoint > Character.MAX_CODE_POINT) {
+            throw error("UTF-8 sequence above U+10FFFF", p);
+        } else if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+            throw error("UTF-8 sequence of a surrogate", p);
+        }
+        putCodePoint(codePoint, offset);
+        return p + length;
+    }
+
+    /**
+     * Writes {@code codePoint} into {@code chars} at {@code offset}. Supplementary code points take
+     * two chars; in that case the slot after the pair is not touched, and {@link #charCount} tells
+     * the two cases apart.
+     */
+    private void putCodePoint(int codePoint, int offset) {
+        if (offset + 2 > chars.length) {
+            chars = Arrays.copyOf(chars, chars.length * 2);
+        }
+        Character.toChars(codePoint, chars, offset);
+    }
+
+    private static int charCount(char[] chars, int offset) {
+        return Character.isHighSurrogate(chars[offset]) ? 2 : 1;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Buffer management
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return The unsigned byte at {@code index}, or {@link #END_OF_INPUT} if the input ends
+     * before it. Reading more input never moves bytes that are already in the buffer, so offsets
+     * recorded for the current event stay valid.
+     */
+    private int peek(int index)
+            throws ParseException {
+        while (index >= limit) {
+            if (!fill()) {
+                return END_OF_INPUT;
+            }
+        }
+        return buffer[index] & 0xFF;
+    }
+
+    private boolean fill()
+            throws ParseException {
+        if (endOfInput) {
+            return false;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            ownBuffer = buffer;
+        }
+        try {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                endOfInput = true;
+                return false;
+            }
+            limit += read;
+            return true;
+        } catch (IOException e) {
+            throw new ParseException(e);
+        }
+    }
+
+    /**
+     * Moves unconsumed input to the front of the buffer once more than half of the buffer has
+     * been consumed. Only called between events and while text is read by {@link #readText}, when
+     * no offsets need to be preserved.
+     */
+    private void discardConsumedInput() {
+        if (directInput) {
+            // Never modify the caller's array.
+            return;
+        } else if (position == limit) {
+            discardedBytes += position;
+            position = 0;
+            limit = 0;
+        } else if (position > buffer.length >> 1) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            discardedBytes += position;
+            limit -= position;
+            position = 0;
+        }
+    }
+
+    private boolean matches(int p, String expected)
+            throws ParseException {
+        for (int i = 0; i < expected.length(); i++) {
+            if (peek(p + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(int p, String terminator)
+            throws ParseException {
+        while (!matches(p, terminator)) {
+            if (peek(p) == END_OF_INPUT) {
+                throw error("Unexpected end of document, expected '" + terminator + "'", p);
+            }
+            p++;
+        }
+        return p;
+    }
+
+    private boolean bytesEqual(int start, int end, String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            char c = expected.charAt(i);
+            if (c >= 0x80) {
+                return new String(buffer, start, end - start, UTF_8).equals(expected);
+            }
+            if (buffer[start + i] != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isAllWhitespace(int start, int end) {
+        for (int p = start; p < end; p++) {
+            if (!isWhitespace(buffer[p])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+    }
+
+    private ParseException error(String message) {
+        return error(message, position);
+    }
+
+    /**
+     * @param p The position in the buffer of the byte the error was found at.
+     */
+    private ParseException error(String message, int p) {
+        return new ParseException(String.format(Locale.US, "%s at byte offset %d.", message,
+                                                discardedBytes + p));
+    }
+
+    /**
+     * A view onto a range of ASCII bytes, which lets numeric attributes be parsed without decoding
+     * them into a String first.
+     */
+    private static final class AsciiCharacters implements CharSequence {
+
+        private byte[] bytes;
+        private int start;
+        private int end;
+
+        void set(byte[] bytes, int start, int end) {
+            this.bytes = bytes;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("index: " + index);
+            }
+            return (char) bytes[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, start, end - start, UTF_8);
+        }
+    }
+}
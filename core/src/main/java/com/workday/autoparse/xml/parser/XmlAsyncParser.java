@@ -0,0 +1,614 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import com.workday.autoparse.xml.context.XmlParserContext;
+import com.workday.autoparse.xml.utils.Preconditions;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses a document that arrives in chunks, such as the body of a network response read from a
+ * non-blocking channel, without ever waiting for input. One thread can therefore drive any number
+ * of these at once.
+ * <p/>
+ * The chunks passed to {@link #feed(ByteBuffer)} are scanned for tags as they arrive, and each
+ * child of the root element is parsed as soon as its last byte has been fed, with a reader that is
+ * only borrowed from the parser's pool for that moment. Between chunks, only the bytes of the
+ * current child and the children parsed so far are kept. Once the root element ends, it is parsed
+ * by its own {@link XmlElementParser} with the children it already has, so the result is the same
+ * as that of {@link XmlStreamParser#parseStream(InputStream)}.
+ * <p/>
+ * Documents that are not UTF-8 encoded are instead collected in memory and parsed at {@link
+ * #endOfInput()}, as are all documents fed to the parsers created by the default implementation of
+ * {@link XmlStreamParser#newAsyncParser()}.
+ * <p/>
+ * Instances parse a single document and are not thread safe, but may be fed from different
+ * threads one after another. A parser that has thrown cannot be fed any further.
+ *
+ * @see XmlStreamParser#newAsyncParser()
+ * @since 1.3
+ */
+public final class XmlAsyncParser implements Closeable {
+
+    private static final Charset UTF_8 = EncodingDetector.UTF_8;
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    // Waiting for enough bytes to determine the encoding.
+    private static final int STATE_DETECTING = 0;
+    // Collecting a document that is not UTF-8 encoded.
+    private static final int STATE_COLLECTING = 1;
+    private static final int STATE_CONTENT = 2;
+    // At a '<' that has not been classified yet.
+    private static final int STATE_MARKUP = 3;
+    private static final int STATE_START_TAG = 4;
+    private static final int STATE_END_TAG = 5;
+    private static final int STATE_COMMENT = 6;
+    private static final int STATE_CDATA = 7;
+    private static final int STATE_PROCESSING_INSTRUCTION = 8;
+    private static final int STATE_DOCTYPE = 9;
+    private static final int STATE_FAILED = 10;
+    private static final int STATE_CLOSED = 11;
+
+    private final XmlStreamParser parser;
+    private final XmlParserContext context;
+    private final XmlStreamReaderPool readerPool;
+    private final Projection projection;
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int limit;
+    private int position;
+    // The number of bytes dropped from the front of the buffer, for error offsets.
+    private long discardedBytes;
+    private int state = STATE_DETECTING;
+
+    private int depth;
+    private int markupStart;
+    private int quote;
+    private int doctypeBrackets;
+    // The offset of the root start tag while the root's leading text is still being collected.
+    private int rootStart = -1;
+    private String rootName;
+    // The root's start tag and leading text, once the first child or the root end tag is seen.
+    private byte[] rootHeader;
+    // The offset of the child of the root being collected, or -1.
+    private int childStart = -1;
+    // Whether the root element is outside the projection, so its children are not parsed either.
+    private boolean skippingRoot;
+    private Projection.Node rootNode;
+    private final List<String> childNames = new ArrayList<>();
+    private final List<Object> children = new ArrayList<>();
+
+    private boolean complete;
+    private Object result;
+
+    XmlAsyncParser(StandardXmlStreamParser parser,
+                   XmlParserContext context,
+                   XmlStreamReaderPool readerPool) {
+        this.parser = parser;
+        this.context = context;
+        this.readerPool = readerPool;
+        projection = context.getSettings().getProjection();
+    }
+
+    /**
+     * Creates a parser that collects the whole document and parses it with {@code parser} at
+     * {@link #endOfInput()}.
+     */
+    XmlAsyncParser(XmlStreamParser parser) {
+        this.parser = parser;
+        context = null;
+        readerPool = null;
+        projection = null;
+        state = STATE_COLLECTING;
+    }
+
+    /**
+     * Consumes the remaining bytes of {@code chunk}, parsing whatever they complete.
+     *
+     * @return Whether the root element is complete, in which case {@link #getResult()} returns
+     * the object it was parsed into. Only comments, processing instructions and whitespace may be
+     * fed after that.
+     *
+     * @throws ParseException If the content is malformed.
+     * @throws UnknownElementException See {@link XmlStreamParser#parseStream(InputStream)}.
+     * @throws UnexpectedChildException See {@link XmlStreamParser#parseStream(InputStream)}.
+     */
+    public boolean feed(ByteBuffer chunk)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        int length = chunk.remaining();
+        ensureCapacity(length);
+        chunk.get(buffer, limit, length);
+        limit += length;
+        return process(false);
+    }
+
+    /**
+     * Like {@link #feed(ByteBuffer)}, for the {@code length} bytes at {@code offset} in {@code
+     * bytes}. The array is not referenced after this returns.
+     */
+    public boolean feed(byte[] bytes, int offset, int length)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        Preconditions.checkArgument(offset >= 0 && length >= 0 && length <= bytes.length - offset,
+                                    "Invalid range: offset " + offset + ", length " + length);
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, limit, length);
+        limit += length;
+        return process(false);
+    }
+
+    /**
+     * Signals that the whole document has been fed.
+     *
+     * @return The object corresponding to the root element of the document.
+     *
+     * @throws ParseException If the document is incomplete or malformed.
+     * @throws UnknownElementException See {@link XmlStreamParser#parseStream(InputStream)}.
+     * @throws UnexpectedChildException See {@link XmlStreamParser#parseStream(InputStream)}.
+     */
+    public Object endOfInput()
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        process(true);
+        if (state == STATE_COLLECTING) {
+            try {
+                result = parser.parse(buffer, 0, limit);
+                complete = true;
+            } catch (ParseException | UnknownElementException | UnexpectedChildException
+                    | RuntimeException e) {
+                state = STATE_FAILED;
+                throw e;
+            }
+        } else if (!complete || state != STATE_CONTENT) {
+            state = STATE_FAILED;
+            throw error("Unexpected end of document");
+        }
+        close();
+        return result;
+    }
+
+    /**
+     * @return Whether the root element is complete.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return The object corresponding to the root element of the document.
+     *
+     * @throws IllegalStateException If the root element is not complete yet.
+     */
+    public Object getResult() {
+        Preconditions.checkState(complete, "The document is not complete yet.");
+        return result;
+    }
+
+    /**
+     * Releases the buffered input. Parsers that are abandoned before the end of their document
+     * need not be closed, but closing them lets their memory be reclaimed earlier.
+     */
+    @Override
+    public void close() {
+        if (state != STATE_FAILED) {
+            state = STATE_CLOSED;
+        }
+        buffer = new byte[0];
+        limit = 0;
+        position = 0;
+        childNames.clear();
+        children.clear();
+    }
+
+    private boolean process(boolean endOfInput)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        Preconditions.checkState(state != STATE_CLOSED, "The parser has been closed.");
+        Preconditions.checkState(state != STATE_FAILED, "The parser has already failed.");
+        try {
+            if (state == STATE_DETECTING) {
+                detectEncoding(endOfInput);
+            }
+            if (state != STATE_DETECTING && state != STATE_COLLECTING) {
+                scan();
+                discardConsumedInput();
+            }
+        } catch (ParseException | UnknownElementException | UnexpectedChildException
+                | RuntimeException e) {
+            state = STATE_FAILED;
+            throw e;
+        }
+        return complete;
+    }
+
+    private void detectEncoding(boolean endOfInput)
+            throws ParseException {
+        boolean found = endOfInput || limit >= EncodingDetector.DETECTION_LIMIT;
+        for (int i = 0; i < limit && !found; i++) {
+            found = buffer[i] == '>';
+        }
+        if (!found) {
+            return;
+        }
+        Charset declaredCharset = context.getSettings().getCharset();
+        int byteOrderMarkLength = EncodingDetector.getByteOrderMarkLength(buffer, 0, limit);
+        Charset charset = declaredCharset != null && byteOrderMarkLength == 0
+                          ? declaredCharset
+                          : EncodingDetector.detect(buffer, 0, limit);
+        if (EncodingDetector.isUtf8Compatible(charset)) {
+            position = byteOrderMarkLength;
+            state = STATE_CONTENT;
+        } else {
+            state = STATE_COLLECTING;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Scanning
+    // ---------------------------------------------------------------------------------------------
+
+    private void scan()
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        byte[] bytes = buffer;
+        int p = position;
+        int end = limit;
+        while (p < end) {
+            switch (state) {
+                case STATE_CONTENT: {
+                    // Text is only allowed as the root element's leading text and inside its
+                    // children, apart from whitespace.
+                    boolean textAllowed = depth > 1 || depth == 1 && rootHeader == null;
+                    while (p < end && bytes[p] != '<') {
+                        if (!textAllowed && !isWhitespace(bytes[p])) {
+                            position = p;
+                            throw error(depth == 0
+                                        ? "Content is not allowed outside of the root element"
+                                        : "Unexpected text between elements");
+                        }
+                        p++;
+                    }
+                    if (p < end) {
+                        markupStart = p;
+                        state = STATE_MARKUP;
+                    }
+                    break;
+                }
+                case STATE_MARKUP: {
+                    position = p;
+                    int next = classifyMarkup();
+                    if (next < 0) {
+                        // Not enough input to tell yet.
+                        return;
+                    }
+                    p = next;
+                    break;
+                }
+                case STATE_START_TAG: {
+                    while (p < end) {
+                        byte b = bytes[p++];
+                        if (quote != 0) {
+                            if (b == quote) {
+                                quote = 0;
+                            }
+                        } else if (b == '"' || b == '\'') {
+                            quote = b;
+                        } else if (b == '>') {
+                            position = p;
+                            state = STATE_CONTENT;
+                            onStartTag(bytes[p - 2] == '/');
+                            break;
+                        }
+                    }
+                    break;
+                }
+                case STATE_END_TAG: {
+                    while (p < end && bytes[p] != '>') {
+                        p++;
+                    }
+                    if (p < end) {
+                        position = ++p;
+                        state = STATE_CONTENT;
+                        onEndTag();
+                    }
+                    break;
+                }
+                case STATE_COMMENT:
+                    p = findTerminator(p, markupStart + 4, "--");
+                    break;
+                case STATE_CDATA:
+                    p = findTerminator(p, markupStart + 9, "]]");
+                    break;
+                case STATE_PROCESSING_INSTRUCTION:
+                    p = findTerminator(p, markupStart + 2, "?");
+                    break;
+                case STATE_DOCTYPE: {
+                    while (p < end) {
+                        byte b = bytes[p++];
+                        if (quote != 0) {
+                            if (b == quote) {
+                                quote = 0;
+                            }
+                        } else if (b == '"' || b == '\'') {
+                            quote = b;
+                        } else if (b == '[') {
+                            doctypeBrackets++;
+                        } else if (b == ']') {
+                            doctypeBrackets--;
+                        } else if (b == '>' && doctypeBrackets == 0) {
+                            state = STATE_CONTENT;
+                            break;
+                        }
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unexpected state " + state);
+            }
+        }
+        position = p;
+    }
+
+    /**
+     * Finds the {@code '>'} that ends a comment, CDATA section or processing instruction.
+     *
+     * @param contentStart The position after the opening delimiter, which the terminator must not
+     * overlap.
+     * @param terminator The characters that precede the {@code '>'}, such as {@code "--"}.
+     *
+     * @return The position after the {@code '>'}, or {@link #limit} if it has not been fed yet.
+     */
+    private int findTerminator(int p, int contentStart, String terminator) {
+        int length = terminator.length();
+        while (p < limit) {
+            if (buffer[p++] == '>' && p - 1 - length >= contentStart
+                    && matches(p - 1 - length, terminator)) {
+                state = STATE_CONTENT;
+                return p;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Determines the kind of markup that starts at {@link #markupStart}.
+     *
+     * @return The position to continue scanning from, or -1 if more input is needed to tell.
+     */
+    private int classifyMarkup()
+            throws ParseException {
+        int available = limit - markupStart;
+        if (available < 2) {
+            return -1;
+        }
+        byte c = buffer[markupStart + 1];
+        if (c == '/') {
+            state = STATE_END_TAG;
+            return markupStart + 2;
+        } else if (c == '?') {
+            state = STATE_PROCESSING_INSTRUCTION;
+            return markupStart + 2;
+        } else if (c != '!') {
+            state = STATE_START_TAG;
+            quote = 0;
+            return markupStart + 1;
+        }
+
+        if (startsWith("<!--")) {
+            state = STATE_COMMENT;
+            return markupStart + 4;
+        } else if (depth > 0 && startsWith("<![CDATA[")) {
+            state = STATE_CDATA;
+            return markupStart + 9;
+        } else if (depth == 0 && rootName == null && startsWith("<!DOCTYPE")) {
+            state = STATE_DOCTYPE;
+            quote = 0;
+            doctypeBrackets = 0;
+            return markupStart + 9;
+        } else if (available < 9) {
+            return -1;
+        }
+        throw error("Unexpected markup");
+    }
+
+    private boolean startsWith(String prefix) {
+        return matches(markupStart, prefix);
+    }
+
+    private boolean matches(int p, String expected) {
+        if (limit - p < expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (buffer[p + i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void onStartTag(boolean empty)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        if (depth == 0) {
+            if (rootName != null) {
+                throw error("Only one root element is allowed");
+            }
+            startRoot();
+            if (empty) {
+                rootHeader = Arrays.copyOfRange(buffer, markupStart, position);
+                finishRoot(rootHeader);
+            } else {
+                depth = 1;
+            }
+        } else if (depth == 1) {
+            if (rootHeader == null) {
+                rootHeader = Arrays.copyOfRange(buffer, rootStart, markupStart);
+                rootStart = -1;
+            }
+            childStart = markupStart;
+            if (empty) {
+                parseChild();
+            } else {
+                depth = 2;
+            }
+        } else if (!empty) {
+            depth++;
+        }
+    }
+
+    private void onEndTag()
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        if (depth == 0) {
+            throw error("Unexpected end tag");
+        }
+        depth--;
+        if (depth == 1) {
+            parseChild();
+        } else if (depth == 0) {
+            if (rootHeader == null) {
+                rootHeader = Arrays.copyOfRange(buffer, rootStart, markupStart);
+                rootStart = -1;
+            }
+            byte[] endTag = ("</" + rootName + ">").getBytes(UTF_8);
+            byte[] rootDocument = Arrays.copyOf(rootHeader, rootHeader.length + endTag.length);
+            System.arraycopy(endTag, 0, rootDocument, rootHeader.length, endTag.length);
+            finishRoot(rootDocument);
+        }
+    }
+
+    private void startRoot() {
+        rootStart = markupStart;
+        int nameEnd = markupStart + 1;
+        while (nameEnd < position && !isWhitespace(buffer[nameEnd]) && buffer[nameEnd] != '/'
+                && buffer[nameEnd] != '>') {
+            nameEnd++;
+        }
+        rootName = new String(buffer, markupStart + 1, nameEnd - markupStart - 1, UTF_8);
+        if (projection != null) {
+            rootNode = projection.getNode(null, rootName, context.getParserMap().get(rootName));
+            skippingRoot = rootNode == null;
+        }
+    }
+
+    /**
+     * Parses the child of the root element that ends at {@link #position}.
+     */
+    private void parseChild()
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        int start = childStart;
+        childStart = -1;
+        if (skippingRoot) {
+            return;
+        }
+        XmlStreamReader reader = readerPool.acquire();
+        if (projection != null) {
+            reader.getProjectionState().start();
+        }
+        try {
+            reader.setInput(buffer, start, position - start, UTF_8);
+            reader.next();
+            childNames.add(reader.getName());
+            if (projection != null) {
+                reader.getProjectionState().node = rootNode;
+            }
+            children.add(ParserUtils.parseCurrentElement(reader, context));
+        } finally {
+            if (projection != null) {
+                reader.getProjectionState().finish(projection, 0);
+            }
+            readerPool.release(reader);
+        }
+    }
+
+    private void finishRoot(byte[] rootDocument)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        if (skippingRoot) {
+            projection.getStatistics().add(1, 0, 1);
+            result = null;
+        } else {
+            result = ReplayingXmlStreamReader.parseRoot(context, readerPool, rootDocument,
+                                                        new ParsedChildren());
+        }
+        complete = true;
+        rootHeader = null;
+        childNames.clear();
+        children.clear();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Buffering
+    // ---------------------------------------------------------------------------------------------
+
+    private void ensureCapacity(int length) {
+        Preconditions.checkState(state != STATE_CLOSED, "The parser has been closed.");
+        Preconditions.checkState(state != STATE_FAILED, "The parser has already failed.");
+        if (limit + length > buffer.length) {
+            int capacity = Math.max(buffer.length * 2, limit + length);
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, INITIAL_BUFFER_SIZE));
+        }
+    }
+
+    /**
+     * Drops the bytes that are no longer needed from the front of the buffer.
+     */
+    private void discardConsumedInput() {
+        int keep = position;
+        if (rootStart >= 0) {
+            keep = rootStart;
+        } else if (childStart >= 0) {
+            keep = childStart;
+        } else if (state != STATE_CONTENT) {
+            keep = markupStart;
+        }
+        if (keep == 0) {
+            return;
+        }
+        System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+        limit -= keep;
+        position -= keep;
+        markupStart -= keep;
+        if (rootStart >= 0) {
+            rootStart -= keep;
+        }
+        if (childStart >= 0) {
+            childStart -= keep;
+        }
+        discardedBytes += keep;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+    }
+
+    private ParseException error(String message) {
+        return new ParseException(String.format(Locale.US, "%s at byte offset %d.", message,
+                                                discardedBytes + position));
+    }
+
+    private final class ParsedChildren implements ReplayingXmlStreamReader.Children {
+
+        @Override
+        public int size() {
+            return children.size();
+        }
+
+        @Override
+        public String getName(int index) {
+            return childNames.get(index);
+        }
+
+        @Override
+        public Object get(int index) {
+            return children.get(index);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A point in a document between two elements that are being streamed, from which a parse can be
+ * resumed without reading the document up to it again. It consists of the byte offset of the tag
+ * that follows the last element returned, the names of the elements that are open at that point,
+ * and the number of elements that had been returned before it.
+ * <p/>
+ * Checkpoints are serializable, and their parts can be stored separately and put back together
+ * with {@link #XmlCheckpoint(long, String[], long)}, so that they survive the process that took
+ * them.
+ *
+ * @see XmlElementIterator#getCheckpoint()
+ * @see XmlElementStreamParser#resume(InputStream, String, Class, XmlCheckpoint)
+ * @since 1.3
+ */
+public final class XmlCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 4127635308361932085L;
+
+    private final long offset;
+    private final String[] openElements;
+    private final long elementCount;
+
+    /**
+     * @param offset The offset in bytes from the start of the document.
+     * @param openElements The names of the elements that are open at the offset, starting with the
+     * root element.
+     * @param elementCount The number of elements returned before the offset.
+     */
+    public XmlCheckpoint(long offset, String[] openElements, long elementCount) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must not be negative but was " + offset);
+        }
+        if (elementCount < 0) {
+            throw new IllegalArgumentException(
+                    "elementCount must not be negative but was " + elementCount);
+        }
+        this.offset = offset;
+        this.openElements = openElements.clone();
+        this.elementCount = elementCount;
+    }
+
+    /**
+     * @return The offset in bytes from the start of the document.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return The names of the elements that are open at the offset, starting with the root
+     * element.
+     */
+    public String[] getOpenElements() {
+        return openElements.clone();
+    }
+
+    /**
+     * @return The number of elements returned before the offset, including those returned before
+     * the parse was resumed.
+     */
+    public long getElementCount() {
+        return elementCount;
+    }
+
+    boolean hasOpenElements(String[] names) {
+        return Arrays.equals(openElements, names);
+    }
+
+    @Override
+    public String toString() {
+        return "XmlCheckpoint{offset=" + offset
+                + ", openElements=" + Arrays.toString(openElements)
+                + ", elementCount=" + elementCount + "}";
+    }
+}
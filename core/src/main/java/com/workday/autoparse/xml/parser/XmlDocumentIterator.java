@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Parses a sequence of independent documents concurrently, and returns the objects their root
+ * elements were parsed into in the order of the documents.
+ * <p/>
+ * At most a fixed number of documents are in flight at any time, counting both those that are
+ * being parsed and those that have been parsed but not yet taken from this iterator. Documents are
+ * only taken from their source when there is room for them, so a consumer that falls behind slows
+ * down the parsing and the reading of the source rather than letting results pile up in memory.
+ * <p/>
+ * A document that could not be parsed is reported by {@link #next()} as an {@link
+ * UncheckedParseException}. The iterator may still be advanced past it to the following documents.
+ * Every stream taken from the source is closed once it has been parsed, or when this iterator is
+ * {@link #close() closed} before its parse started.
+ * <p/>
+ * Instances are not thread safe.
+ *
+ * @see XmlStreamParser#parseAll(Iterable, Executor, int)
+ * @since 1.3
+ */
+public final class XmlDocumentIterator implements Iterator<Object>, Closeable {
+
+    private final XmlStreamParser parser;
+    private final Iterator<? extends InputStream> inputs;
+    private final Executor executor;
+    private final int maxInFlight;
+    private final Queue<ParseTask> inFlight;
+    private boolean closed;
+
+    XmlDocumentIterator(XmlStreamParser parser,
+                        Iterator<? extends InputStream> inputs,
+                        Executor executor,
+                        int maxInFlight) {
+        this.parser = parser;
+        this.inputs = inputs;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        inFlight = new ArrayDeque<>(maxInFlight);
+    }
+
+    @Override
+    public boolean hasNext() {
+        submitDocuments();
+        return !inFlight.isEmpty();
+    }
+
+    /**
+     * Waits for the next document to be parsed.
+     *
+     * @return The object the root element of the next document was parsed into.
+     *
+     * @throws UncheckedParseException If the document could not be parsed, or the calling thread
+     * was interrupted while waiting for it.
+     */
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        // The document stays in flight until it has been parsed, and only then makes room for the
+        // one after the window.
+        ParseTask task = inFlight.peek();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedParseException(new ParseException(e));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new UncheckedParseException((Exception) cause);
+        } finally {
+            inFlight.remove();
+            submitDocuments();
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops taking documents from the source. Parses that have not started yet are cancelled and
+     * their streams closed; those that have started run to completion, but their results are
+     * dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (ParseTask task : inFlight) {
+            if (task.cancel(false)) {
+                closeQuietly(task.in);
+            }
+        }
+        inFlight.clear();
+    }
+
+    /**
+     * @throws RejectedExecutionException If the executor rejects a document, whose stream is then
+     * closed. The document is skipped.
+     */
+    private void submitDocuments() {
+        while (!closed && inFlight.size() < maxInFlight && inputs.hasNext()) {
+            ParseTask task = new ParseTask(inputs.next());
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                closeQuietly(task.in);
+                throw e;
+            }
+            inFlight.add(task);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private final class ParseTask extends FutureTask<Object> {
+
+        final InputStream in;
+
+        ParseTask(final InputStream in) {
+            super(new Callable<Object>() {
+                @Override
+                public Object call()
+                        throws ParseException, UnknownElementException, UnexpectedChildException {
+                    if (parser instanceof StandardXmlStreamParser) {
+                        return ((StandardXmlStreamParser) parser).parseIndependently(in);
+                    }
+                    return parser.parseStream(in);
+                }
+            });
+            this.in = in;
+        }
+    }
+}
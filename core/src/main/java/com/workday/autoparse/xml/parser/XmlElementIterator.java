@@ -0,0 +1,280 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import com.workday.autoparse.xml.context.XmlParserContext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily parses the elements at a path in a document, one at a time. Elements that are not on the
+ * path are skipped without being parsed, so memory use does not depend on the size of the
+ * document, only on the size of the largest element at the path.
+ * <p/>
+ * Errors are thrown from {@link #hasNext()} and {@link #next()} as {@link
+ * UncheckedParseException}s. The underlying stream is closed, and the reader returned to its pool,
+ * when the iterator is exhausted, when it throws, or when {@link #close()} is called, whichever
+ * comes first. An iterator that might be abandoned early should therefore always be closed.
+ * <p/>
+ * With the {@link com.workday.autoparse.xml.context.XmlParserSettings.ReaderBackend#BUILT_IN
+ * BUILT_IN} reader backend and a UTF-8 encoded document, the iterator keeps track of a {@link
+ * #getCheckpoint() checkpoint} after the last element it returned, from which the parse can later
+ * be {@link XmlElementStreamParser#resume(InputStream, String, Class, XmlCheckpoint)
+ * resumed}.
+ * <p/>
+ * Instances are not thread safe, but since the context is passed to the generated parsers
+ * explicitly, they may be handed from one thread to another between calls.
+ *
+ * @param <T> The type of the objects the elements at the path are parsed into.
+ *
+ * @see XmlElementStreamParser#stream(InputStream, String, Class)
+ * @since 1.3
+ */
+public final class XmlElementIterator<T> implements Iterator<T>, Closeable {
+
+    private final XmlParserContext context;
+    private final XmlStreamReaderPool readerPool;
+    private final String[] path;
+    // The names of the elements that are open between the elements at the path.
+    private final String[] parentPath;
+    private final Class<T> type;
+    private final Projection projection;
+    // The node of the projection for the parents of the elements at the path.
+    private final Projection.Node parentNode;
+    private XmlStreamReader reader;
+    private InputStream in;
+    // The reader, if it can tell the byte offsets of tags.
+    private final Utf8XmlStreamReader offsetReader;
+    // The offset in the document of the start of the reader's input.
+    private final long offsetBase;
+    private long elementCount;
+    private XmlCheckpoint checkpoint;
+    // The checkpoint after the next element, which becomes current once it is returned.
+    private XmlCheckpoint nextCheckpoint;
+
+    // The number of elements of the path that the ancestors of the current event match.
+    private int depth;
+    // Whether the reader is already at the event to process next, as it is after an element has
+    // been parsed or skipped.
+    private boolean atNextEvent;
+    private T next;
+
+    XmlElementIterator(XmlParserContext context,
+                       XmlStreamReaderPool readerPool,
+                       XmlStreamReader reader,
+                       InputStream in,
+                       String[] path,
+                       Class<T> type,
+                       XmlCheckpoint resumedFrom,
+                       int resumedPrefixLength) {
+        this.context = context;
+        this.readerPool = readerPool;
+        this.reader = reader;
+        this.in = in;
+        this.path = path;
+        parentPath = Arrays.copyOf(path, path.length - 1);
+        this.type = type;
+        if (reader instanceof Utf8XmlStreamReader
+                && EncodingDetector.isUtf8Compatible(((Utf8XmlStreamReader) reader).getCharset())) {
+            offsetReader = (Utf8XmlStreamReader) reader;
+        } else {
+            offsetReader = null;
+        }
+        if (resumedFrom != null) {
+            offsetBase = resumedFrom.getOffset() - resumedPrefixLength;
+            elementCount = resumedFrom.getElementCount();
+            checkpoint = resumedFrom;
+        } else {
+            offsetBase = 0;
+        }
+        projection = context.getSettings().getProjection();
+        parentNode = projection != null ? projection.getParentNode(path) : null;
+        if (projection != null) {
+            reader.getProjectionState().start();
+        }
+    }
+
+    /**
+     * Builds the start tags of the elements that are open at a checkpoint, which stand in for the
+     * document up to the checkpoint when the parse is resumed.
+     */
+    static byte[] getResumedPrefix(XmlCheckpoint checkpoint) {
+        StringBuilder builder = new StringBuilder();
+        for (String name : checkpoint.getOpenElements()) {
+            builder.append('<').append(name).append('>');
+        }
+        return builder.toString().getBytes(EncodingDetector.UTF_8);
+    }
+
+    /**
+     * Splits a path such as {@code "feed/record"} or {@code "/feed/record"} into element names.
+     */
+    static String[] splitPath(String path) {
+        String trimmed = path.startsWith("/") ? path.substring(1) : path;
+        String[] names = trimmed.split("/", -1);
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].isEmpty()) {
+                throw new IllegalArgumentException("Invalid path: \"" + path + "\"");
+            }
+            // Element names from the readers are interned too.
+            names[i] = names[i].intern();
+        }
+        return names;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && reader != null) {
+            try {
+                next = advance();
+            } catch (ParseException | UnknownElementException | UnexpectedChildException e) {
+                close();
+                throw new UncheckedParseException(e);
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+            if (next == null) {
+                close();
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T result = next;
+        next = null;
+        elementCount++;
+        if (nextCheckpoint != null) {
+            checkpoint = nextCheckpoint;
+            nextCheckpoint = null;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a checkpoint just after the last element returned by {@link #next()}. A parse that
+     * is resumed from it continues with the element that would have been returned next.
+     * <p/>
+     * There is no checkpoint before the first element is returned, unless the parse was resumed
+     * from one. Checkpoints are only taken with the {@link
+     * com.workday.autoparse.xml.context.XmlParserSettings.ReaderBackend#BUILT_IN BUILT_IN} reader
+     * backend and UTF-8 encoded documents, and only where an element is followed by a tag rather
+     * than by text. Otherwise, the last checkpoint that could be taken is returned, so a resumed
+     * parse may repeat some elements, but never misses any.
+     *
+     * @return The last checkpoint, or null if there is none.
+     */
+    public XmlCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops parsing, closes the underlying stream and releases the reader. Does nothing if the
+     * iterator has already been closed.
+     */
+    @Override
+    public void close() {
+        if (reader == null) {
+            return;
+        }
+        if (projection != null) {
+            reader.getProjectionState().finish(projection);
+        }
+        readerPool.release(reader);
+        reader = null;
+        try {
+            in.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        in = null;
+    }
+
+    /**
+     * @return The next element at the path, or null if there are no more.
+     */
+    private T advance()
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        while (true) {
+            if (atNextEvent) {
+                atNextEvent = false;
+            } else if (reader.hasNext()) {
+                reader.next();
+            } else {
+                return null;
+            }
+
+            if (reader.isStartElement()) {
+                if (!reader.getName().equals(path[depth])) {
+                    int skipped = ParserUtils.skip(reader);
+                    if (projection != null) {
+                        reader.getProjectionState().skippedElements += skipped;
+                    }
+                    atNextEvent = true;
+                } else if (depth + 1 < path.length) {
+                    depth++;
+                } else {
+                    if (projection != null) {
+                        reader.getProjectionState().node = parentNode;
+                    }
+                    Object object = ParserUtils.parseCurrentElement(reader, context);
+                    atNextEvent = true;
+                    if (object != null) {
+                        nextCheckpoint = takeCheckpoint();
+                        return cast(object);
+                    }
+                }
+            } else if (reader.isEndElement()) {
+                if (--depth == 0) {
+                    // The end of the root element, so nothing else can match.
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return A checkpoint at the current tag, which follows the element that was just parsed, or
+     * null if the offset of the current event is not known.
+     */
+    private XmlCheckpoint takeCheckpoint()
+            throws ParseException {
+        if (offsetReader == null || (!reader.isStartElement() && !reader.isEndElement())) {
+            return null;
+        }
+        return new XmlCheckpoint(offsetBase + offsetReader.getTagOffset(),
+                                 parentPath,
+                                 elementCount + 1);
+    }
+
+    private T cast(Object object)
+            throws ParseException {
+        if (!type.isInstance(object)) {
+            throw new ParseException(String.format("Expected a %s at %s but found a %s",
+                                                   type.getName(),
+                                                   Arrays.toString(path),
+                                                   object.getClass().getName()));
+        }
+        return type.cast(object);
+    }
+}
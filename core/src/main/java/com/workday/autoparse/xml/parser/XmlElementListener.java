@@ -0,0 +1,29 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import com.workday.autoparse.xml.context.XmlParserSettingsBuilder;
+
+/**
+ * Receives elements as soon as they have been parsed, before they are added to their parents.
+ * Listeners are invoked on the thread that runs the parse, in document order of the elements' end
+ * tags, so children are reported before their parents, and the root element is reported last.
+ *
+ * @param <T> The type of the elements this listener receives.
+ *
+ * @see XmlParserSettingsBuilder#withElementListener(Class, XmlElementListener)
+ * @see XmlParserSettingsBuilder#withElementListener(String, XmlElementListener)
+ * @since 1.3
+ */
+public interface XmlElementListener<T> {
+
+    /**
+     * @param element The fully inflated object for the element that was just parsed.
+     */
+    void onElement(T element);
+}
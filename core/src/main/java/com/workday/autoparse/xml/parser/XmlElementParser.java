@@ -8,6 +8,8 @@
 package com.workday.autoparse.xml.parser;
 
 import com.workday.autoparse.xml.annotations.XmlElement;
+import com.workday.autoparse.xml.context.XmlContextHolder;
+import com.workday.autoparse.xml.context.XmlParserContext;
 
 /**
  * A autoparse corresponding to a single class annotated with {@link XmlElement}. All
@@ -34,4 +36,36 @@ public interface XmlElementParser<T> {
      */
     T parseElement(XmlStreamReader reader)
             throws UnknownElementException, UnexpectedChildException, ParseException;
+
+    /**
+     * Like {@link #parseElement(XmlStreamReader)}, but with the context passed explicitly rather
+     * than looked up in {@link XmlContextHolder}. Generated parsers implement this directly and
+     * pass the context on to the parsers of child elements, so that a parse does not depend on
+     * thread local state.
+     * <p/>
+     * The default implementation, for parsers that only implement {@link
+     * #parseElement(XmlStreamReader)}, makes {@code context} the current context while it runs.
+     *
+     * @param reader The XMLStreamReader on which to operate.
+     * @param context The context of the parse.
+     *
+     * @return The fully inflated object.
+     */
+    default T parseElement(XmlStreamReader reader, XmlParserContext context)
+            throws UnknownElementException, UnexpectedChildException, ParseException {
+        XmlParserContext previousContext = XmlContextHolder.getContext();
+        if (previousContext == context) {
+            return parseElement(reader);
+        }
+        XmlContextHolder.setContext(context);
+        try {
+            return parseElement(reader);
+        } finally {
+            if (previousContext != null) {
+                XmlContextHolder.setContext(previousContext);
+            } else {
+                XmlContextHolder.removeContext();
+            }
+        }
+    }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the elements at a path in a document, parsed one at a time, as they are requested by
+ * its subscriber. Elements are parsed on an executor, and only while there is outstanding demand:
+ * when the subscriber has received everything it asked for, the document is no longer read until
+ * it asks for more, so a slow subscriber never causes parsed elements to be queued up.
+ * <p/>
+ * The document can only be read once, so a publisher accepts a single subscriber. Any further
+ * subscribers are failed with an {@link IllegalStateException}. Errors while parsing are passed
+ * to {@link Flow.Subscriber#onError(Throwable)} as the {@link ParseException}, {@link
+ * UnknownElementException} or {@link UnexpectedChildException} that was thrown. The underlying
+ * stream is opened on subscription, and closed when the last element has been delivered, on an
+ * error, or once the subscription has been cancelled.
+ *
+ * @param <T> The type of the objects the elements at the path are parsed into.
+ *
+ * @see XmlElementStreamParser#publish(InputStream, String, Class, Executor)
+ * @since 1.3
+ */
+public final class XmlElementPublisher<T> implements Flow.Publisher<T> {
+
+    private final XmlElementStreamParser parser;
+    private final InputStream in;
+    private final String path;
+    private final Class<T> type;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    XmlElementPublisher(XmlElementStreamParser parser,
+                        InputStream in,
+                        String path,
+                        Class<T> type,
+                        Executor executor) {
+        this.parser = parser;
+        this.in = in;
+        this.path = path;
+        this.type = type;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new ElementSubscription<T>(subscriber, null, executor));
+            subscriber.onError(new IllegalStateException(
+                    "The document has already been subscribed to"));
+            return;
+        }
+
+        // The stream is only opened now, so a publisher that is never subscribed to holds no
+        // reader.
+        XmlElementIterator<T> iterator;
+        try {
+            iterator = parser.stream(in, path, type);
+        } catch (ParseException | RuntimeException e) {
+            subscriber.onSubscribe(new ElementSubscription<T>(subscriber, null, executor));
+            subscriber.onError(e);
+            return;
+        }
+        subscriber.onSubscribe(new ElementSubscription<>(subscriber, iterator, executor));
+    }
+
+    /**
+     * Delivers the elements to one subscriber. All work on the iterator and all calls to the
+     * subscriber happen in {@link #run()}, which is only ever running on one thread at a time.
+     */
+    private static final class ElementSubscription<T> implements Flow.Subscription, Runnable {
+
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Executor executor;
+        private final AtomicLong demand = new AtomicLong();
+        // The number of times run() has been asked to run again while it was already running.
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+
+        // Only accessed from run().
+        private XmlElementIterator<T> iterator;
+
+        /**
+         * @param iterator The elements to deliver, or null if the subscriber has already been
+         * failed and nothing is left to deliver.
+         */
+        ElementSubscription(Flow.Subscriber<? super T> subscriber,
+                            XmlElementIterator<T> iterator,
+                            Executor executor) {
+            this.subscriber = subscriber;
+            this.iterator = iterator;
+            this.executor = executor;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException(
+                        "The number of requested elements must be positive but was " + n);
+            } else {
+                long current;
+                long updated;
+                do {
+                    current = demand.get();
+                    updated = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!demand.compareAndSet(current, updated));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            // Closing the iterator is left to run(), since it may be in use.
+            schedule();
+        }
+
+        private void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                deliver();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver() {
+            while (iterator != null) {
+                if (cancelled) {
+                    finish();
+                    return;
+                }
+                if (invalidRequest != null) {
+                    finish();
+                    subscriber.onError(invalidRequest);
+                    return;
+                }
+                long current = demand.get();
+                if (current == 0) {
+                    return;
+                }
+
+                T element;
+                try {
+                    element = iterator.hasNext() ? iterator.next() : null;
+                } catch (UncheckedParseException e) {
+                    finish();
+                    subscriber.onError(e.getCause());
+                    return;
+                } catch (RuntimeException e) {
+                    finish();
+                    subscriber.onError(e);
+                    return;
+                }
+                if (element == null) {
+                    finish();
+                    subscriber.onComplete();
+                    return;
+                }
+                if (current != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                subscriber.onNext(element);
+            }
+        }
+
+        /**
+         * Releases the iterator, after which nothing more is delivered.
+         */
+        private void finish() {
+            iterator.close();
+            iterator = null;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import com.workday.autoparse.xml.annotations.XmlElement;
+import com.workday.autoparse.xml.context.XmlParserSettings;
+import com.workday.autoparse.xml.utils.Preconditions;
+
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+
+/**
+ * An {@link XmlStreamParser} that can also parse the elements at a path of a document one at a
+ * time, rather than the whole document at once.
+ *
+ * @see XmlStreamParserFactory#newXmlElementStreamParser(XmlParserSettings)
+ * @since 1.3
+ */
+public interface XmlElementStreamParser extends XmlStreamParser {
+
+    /**
+     * Lazily parses the elements at {@code path} in a stream, one at a time, into objects annotated
+     * with {@link XmlElement}. Elements that are not on the path are skipped without being parsed.
+     * This is meant for large documents made up of many similar records, such as {@code
+     * <feed><record/><record/>...</feed>}, which could not be parsed into memory as a whole.
+     * <p/>
+     * Unknown elements at the path are handled according to the {@link XmlParserSettings}; if they
+     * are ignored, they are skipped by the iterator as well.
+     *
+     * @param in The input stream. It is closed once the iterator is exhausted or closed.
+     * @param path The names of the elements from the root element down to the elements to parse,
+     * separated by slashes, such as {@code "feed/record"}.
+     * @param type The type of the objects the elements at the path are parsed into.
+     *
+     * @return An iterator over the parsed elements, in document order.
+     *
+     * @throws ParseException If the stream could not be opened.
+     */
+    <T> XmlElementIterator<T> stream(InputStream in, String path, Class<T> type)
+            throws ParseException;
+
+    /**
+     * Resumes a parse started with {@link #stream(InputStream, String, Class)} from a checkpoint
+     * taken by its iterator, typically after the process that was parsing the document failed.
+     * The document up to the checkpoint is skipped with {@link InputStream#skip(long)}, which a
+     * {@link java.io.FileInputStream FileInputStream} does without reading it, and is not parsed
+     * again. The first element returned is the one that followed the last element returned before
+     * the checkpoint, and the returned iterator keeps taking checkpoints relative to the start of
+     * the document.
+     *
+     * @param in The whole document, from its start. It is closed once the iterator is exhausted or
+     * closed.
+     * @param path The path the checkpoint was taken at.
+     * @param type The type of the objects the elements at the path are parsed into.
+     * @param checkpoint A checkpoint returned by {@link XmlElementIterator#getCheckpoint()}.
+     *
+     * @return An iterator over the parsed elements that follow the checkpoint, in document order.
+     *
+     * @throws ParseException If the stream could not be opened, or ends before the checkpoint. Not
+     * all streams can tell when they are skipped past their end, in which case the iterator throws
+     * instead.
+     */
+    <T> XmlElementIterator<T> resume(InputStream in,
+                                     String path,
+                                     Class<T> type,
+                                     XmlCheckpoint checkpoint)
+            throws ParseException;
+
+    /**
+     * Publishes the elements at {@code path} in a stream, parsed one at a time as they are
+     * requested, to a single subscriber. This is {@link #stream(InputStream, String, Class)} for
+     * reactive pipelines: the stream is only read while the subscriber has outstanding demand, so
+     * a slow subscriber holds back the parsing rather than letting parsed elements pile up.
+     *
+     * @param in The input stream. It is opened on subscription, and closed once all elements have
+     * been delivered, on an error, or when the subscription is cancelled.
+     * @param path The names of the elements from the root element down to the elements to parse,
+     * separated by slashes, such as {@code "feed/record"}.
+     * @param type The type of the objects the elements at the path are parsed into.
+     * @param executor Parses the elements and delivers them to the subscriber.
+     *
+     * @return A publisher of the parsed elements, in document order.
+     */
+    default <T> XmlElementPublisher<T> publish(InputStream in,
+                                               String path,
+                                               Class<T> type,
+                                               Executor executor) {
+        Preconditions.checkNotNull(in, "in");
+        Preconditions.checkNotNull(type, "type");
+        Preconditions.checkNotNull(executor, "executor");
+        // Fail on an invalid path now rather than on subscription.
+        XmlElementIterator.splitPath(path);
+        return new XmlElementPublisher<>(this, in, path, type, executor);
+    }
+}
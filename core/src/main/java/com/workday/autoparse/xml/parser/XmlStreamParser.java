@@ -10,10 +10,25 @@ package com.workday.autoparse.xml.parser;
 import com.workday.autoparse.xml.annotations.XmlElement;
 import com.workday.autoparse.xml.context.XmlParserSettings;
 import com.workday.autoparse.xml.context.XmlParserSettingsBuilder;
+import com.workday.autoparse.xml.utils.CharSequenceReader;
+import com.workday.autoparse.xml.utils.Preconditions;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 /**
+ * Only {@link #parseStream(InputStream)} must be implemented. The other entry points have default
+ * implementations built on it, which the parsers returned by {@link XmlStreamParserFactory}
+ * replace with faster ones. Parsing the elements at a path one at a time is offered by {@link
+ * XmlElementStreamParser}.
+ *
  * @author nathan.taylor
  * @since 2013-10-4
  */
@@ -35,4 +50,214 @@ public interface XmlStreamParser {
      */
     Object parseStream(InputStream in)
             throws ParseException, UnknownElementException, UnexpectedChildException;
+
+    /**
+     * Parses a file into objects annotated with {@link XmlElement}. The file is memory-mapped
+     * rather than read through a stream, which avoids copying it through intermediate buffers.
+     * The default implementation reads it with {@link #parseStream(InputStream)} instead.
+     *
+     * @param file The file to parse.
+     *
+     * @return The fully inflated object corresponding to the root element of the file.
+     *
+     * @throws ParseException If the file could not be read, or if the content is malformed.
+     * @throws UnknownElementException See {@link #parseStream(InputStream)}.
+     * @throws UnexpectedChildException See {@link #parseStream(InputStream)}.
+     */
+    default Object parseFile(File file)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        InputStream in;
+        try {
+            in = new FileInputStream(file);
+        } catch (IOException e) {
+            throw new ParseException(e);
+        }
+        return parseStream(in);
+    }
+
+    /**
+     * Parses the contents of a file channel, from its current position to the end of the file,
+     * into objects annotated with {@link XmlElement}. The file is memory-mapped one window at a
+     * time, so files larger than 2 GB are supported. The channel is neither closed nor moved.
+     *
+     * @param channel The channel to parse.
+     *
+     * @return The fully inflated object corresponding to the root element of the file.
+     *
+     * @throws ParseException If the file could not be read, or if the content is malformed.
+     * @throws UnknownElementException See {@link #parseStream(InputStream)}.
+     * @throws UnexpectedChildException See {@link #parseStream(InputStream)}.
+     */
+    default Object parse(FileChannel channel)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        InputStream in;
+        try {
+            in = new MappedFileInputStream(channel);
+        } catch (IOException e) {
+            throw new ParseException(e);
+        }
+        return parseStream(in);
+    }
+
+    /**
+     * Parses a document that is already in memory into objects annotated with {@link XmlElement}.
+     * With the {@link XmlParserSettings.ReaderBackend#BUILT_IN} backend, UTF-8 documents are
+     * tokenized in place without copying the array. The default implementation parses the array
+     * with {@link #parseStream(InputStream)}.
+     *
+     * @param bytes Contains the encoded document. It must not be modified while it is parsed.
+     * @param offset The index of the first byte of the document.
+     * @param length The length of the document in bytes.
+     *
+     * @return The fully inflated object corresponding to the root element of the document.
+     *
+     * @throws ParseException If the content is malformed.
+     * @throws UnknownElementException See {@link #parseStream(InputStream)}.
+     * @throws UnexpectedChildException See {@link #parseStream(InputStream)}.
+     */
+    default Object parse(byte[] bytes, int offset, int length)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        return parseStream(new ByteArrayInputStream(bytes, offset, length));
+    }
+
+    /**
+     * Parses the remaining bytes of a buffer into objects annotated with {@link XmlElement}.
+     * Buffers backed by an accessible array are parsed like {@link #parse(byte[], int, int)}. The
+     * position of the buffer is not changed.
+     *
+     * @param buffer Contains the encoded document. It must not be modified while it is parsed.
+     *
+     * @return The fully inflated object corresponding to the root element of the document.
+     *
+     * @throws ParseException If the content is malformed.
+     * @throws UnknownElementException See {@link #parseStream(InputStream)}.
+     * @throws UnexpectedChildException See {@link #parseStream(InputStream)}.
+     */
+    default Object parse(ByteBuffer buffer)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        if (buffer.hasArray()) {
+            return parse(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                         buffer.remaining());
+        }
+        return parseStream(new ByteBufferInputStream(buffer.duplicate()));
+    }
+
+    /**
+     * Parses a document that has already been decoded into objects annotated with {@link
+     * XmlElement}. The pull parser backend reads the characters directly; any encoding declared in
+     * the document is ignored. The default implementation encodes the text as UTF-8 and parses it
+     * with {@link #parseStream(InputStream)}, so it must not declare a different encoding.
+     *
+     * @param text The document. It must not be modified while it is parsed.
+     *
+     * @return The fully inflated object corresponding to the root element of the document.
+     *
+     * @throws ParseException If the content is malformed.
+     * @throws UnknownElementException See {@link #parseStream(InputStream)}.
+     * @throws UnexpectedChildException See {@link #parseStream(InputStream)}.
+     */
+    default Object parse(CharSequence text)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        return parseStream(new Utf8EncodingInputStream(new CharSequenceReader(text)));
+    }
+
+    /**
+     * Like {@link #parse(byte[], int, int)}, but parses the children of the root element in
+     * parallel. This is meant for large documents made up of many independent records, such as
+     * {@code <feed><record/><record/>...</feed>}.
+     * <p/>
+     * The document is first scanned for the boundaries of the root's children, which only looks
+     * for tags and is much faster than parsing. The children are then parsed in batches on {@code
+     * executor}, each as a document of its own, while the calling thread parses the root element
+     * and adds the children to it in document order, so the result is the same as that of a
+     * sequential parse. Documents that cannot be split, because they are not UTF-8 encoded, their
+     * root element has text between its children, or they are too small to benefit, are parsed
+     * sequentially on the calling thread.
+     * <p/>
+     * The {@link XmlElementListener}s of the children are called on the threads of {@code
+     * executor}, concurrently and not necessarily in document order.
+     * <p/>
+     * The default implementation parses the document sequentially on the calling thread.
+     *
+     * @param bytes Contains the encoded document. It must not be modified while it is parsed.
+     * @param offset The index of the first byte of the document.
+     * @param length The length of the document in bytes.
+     * @param executor Parses the children, such as a {@link java.util.concurrent.ForkJoinPool}.
+     *
+     * @return The fully inflated object corresponding to the root element of the document.
+     *
+     * @throws ParseException If the content is malformed, or the calling thread was interrupted.
+     * @throws UnknownElementException See {@link #parseStream(InputStream)}.
+     * @throws UnexpectedChildException See {@link #parseStream(InputStream)}.
+     */
+    default Object parseParallel(byte[] bytes, int offset, int length, ExecutorService executor)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        return parse(bytes, offset, length);
+    }
+
+    /**
+     * Like {@link #parse(FileChannel)}, but parses the children of the root element in parallel
+     * as described in {@link #parseParallel(byte[], int, int, ExecutorService)}. The file is
+     * scanned through a memory mapping, and each batch of children is read into memory only while
+     * it is parsed, so files larger than 2 GB can be split as well. The default implementation
+     * parses the file sequentially on the calling thread.
+     *
+     * @param channel The channel to parse. It is neither closed nor moved.
+     * @param executor Parses the children, such as a {@link java.util.concurrent.ForkJoinPool}.
+     *
+     * @return The fully inflated object corresponding to the root element of the file.
+     *
+     * @throws ParseException If the file could not be read, or if the content is malformed.
+     * @throws UnknownElementException See {@link #parseStream(InputStream)}.
+     * @throws UnexpectedChildException See {@link #parseStream(InputStream)}.
+     */
+    default Object parseParallel(FileChannel channel, ExecutorService executor)
+            throws ParseException, UnknownElementException, UnexpectedChildException {
+        return parse(channel);
+    }
+
+    /**
+     * Parses many independent documents concurrently, sharing this parser's context and its pool
+     * of readers between them. This is cheaper than parsing each document on its own, and unlike
+     * {@link #parseStream(InputStream)}, it does not make the context available through {@link
+     * com.workday.autoparse.xml.context.XmlContextHolder XmlContextHolder}, so it works well with
+     * an executor that starts a virtual thread for every task.
+     * <p/>
+     * At most {@code maxInFlight} documents are parsed or waiting to be taken from the returned
+     * iterator at any time; further documents are only taken from {@code inputs} as the iterator
+     * is advanced. The reader pool should be at least that large, see {@link
+     * XmlParserSettingsBuilder#withReaderPoolSize(int)}.
+     * <p/>
+     * The default implementation parses each document with {@link #parseStream(InputStream)} on
+     * {@code executor}.
+     *
+     * @param inputs The documents. Each stream is closed once it has been parsed.
+     * @param executor Parses the documents.
+     * @param maxInFlight The maximum number of documents in flight.
+     *
+     * @return An iterator over the objects corresponding to the root elements of the documents, in
+     * the order of {@code inputs}.
+     */
+    default XmlDocumentIterator parseAll(Iterable<? extends InputStream> inputs,
+                                         Executor executor,
+                                         int maxInFlight) {
+        Preconditions.checkNotNull(inputs, "inputs");
+        Preconditions.checkNotNull(executor, "executor");
+        Preconditions.checkArgument(maxInFlight > 0,
+                                    "maxInFlight must be positive but was " + maxInFlight);
+        return new XmlDocumentIterator(this, inputs.iterator(), executor, maxInFlight);
+    }
+
+    /**
+     * Creates a parser for a single document that is fed to it in chunks as they arrive, rather
+     * than read from a stream, so that no thread has to wait for the input. It shares this
+     * parser's context and pool of readers. The parser returned by the default implementation
+     * collects the whole document and parses it with {@link #parse(byte[], int, int)} at {@link
+     * XmlAsyncParser#endOfInput()}.
+     *
+     * @return A new parser, waiting for the first chunk of the document.
+     */
+    default XmlAsyncParser newAsyncParser() {
+        return new XmlAsyncParser(this);
+    }
 }
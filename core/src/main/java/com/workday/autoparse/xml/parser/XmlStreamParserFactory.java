@@ -33,12 +33,24 @@ public class XmlStreamParserFactory {
     }
 
     public static XmlStreamParser newXmlStreamParser(XmlParserSettings settings) {
+        return newXmlElementStreamParser(settings);
+    }
+
+    public static XmlStreamParser newXmlStreamParser() {
+        return newXmlStreamParser(DEFAULT_SETTINGS);
+    }
+
+    /**
+     * Like {@link #newXmlStreamParser(XmlParserSettings)}, for a parser that can also parse the
+     * elements at a path of a document one at a time.
+     */
+    public static XmlElementStreamParser newXmlElementStreamParser(XmlParserSettings settings) {
         XmlParserContext context = new XmlParserContext(settings);
 
         return new StandardXmlStreamParser(context);
     }
 
-    public static XmlStreamParser newXmlStreamParser() {
-        return newXmlStreamParser(DEFAULT_SETTINGS);
+    public static XmlElementStreamParser newXmlElementStreamParser() {
+        return newXmlElementStreamParser(DEFAULT_SETTINGS);
     }
 }
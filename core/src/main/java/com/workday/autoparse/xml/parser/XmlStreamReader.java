@@ -7,24 +7,109 @@
 
 package com.workday.autoparse.xml.parser;
 
-import com.workday.autoparse.xml.utils.StringUtils;
-
-import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
-
-import java.io.IOException;
+import com.workday.autoparse.xml.utils.CharSequenceReader;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 
 /**
+ * A forward-only cursor over the events of an XML document. This is the interface through which
+ * the generated {@link XmlElementParser}s read a document. Namespaces are not processed, so
+ * prefixes are reported as part of element and attribute names.
+ * <p/>
+ * Implementations are created by an {@link XmlStreamReaderProvider}.
+ *
  * @author nathan.taylor
  * @since 2013-10-3
  */
-public class XmlStreamReader {
+public abstract class XmlStreamReader {
+
+    public static final int START_DOCUMENT = 0;
+    public static final int END_DOCUMENT = 1;
+    public static final int START_ELEMENT = 2;
+    public static final int END_ELEMENT = 3;
+    public static final int CHARACTERS = 4;
+
+    private final SymbolTable symbolTable = new SymbolTable();
+    private Attributes attributesView;
+    private Projection.State projectionState;
+    // The text being read by the default readText(), or null if it is not in the middle of text.
+    private String pendingText;
+    private int pendingTextOffset;
+
+    protected XmlStreamReader() {
+    }
+
+    /**
+     * @return The table this reader interns element and attribute names in. It lives as long as
+     * the reader, so names are shared across all the documents the reader is used for.
+     */
+    protected SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * Points this reader at a new document, discarding all state from the previous one. Passing
+     * {@code null} detaches the reader from its current input. Readers are reused for several
+     * documents, so implementations should keep any buffers they can.
+     *
+     * @param in The document.
+     * @param charset The encoding of the document if it was declared up front, or null to detect
+     * it from the byte order mark or the XML declaration.
+     *
+     * @see XmlStreamReaderProvider
+     */
+    protected abstract void setInput(InputStream in, Charset charset)
+            throws ParseException;
+
+    /**
+     * Points this reader at a document that is already in memory. Implementations that can read
+     * the array in place should override this; by default, it is read as a stream.
+     *
+     * @param bytes Contains the document. It must not be modified until the next call to one of
+     * the {@code setInput} methods.
+     * @param offset The index of the first byte of the document.
+     * @param length The length of the document in bytes.
+     * @param charset The encoding of the document if it was declared up front, or null to detect
+     * it.
+     */
+    protected void setInput(byte[] bytes, int offset, int length, Charset charset)
+            throws ParseException {
+        setInput(new ByteArrayInputStream(bytes, offset, length), charset);
+    }
+
+    /**
+     * Points this reader at a document that has already been decoded. Implementations that read
+     * characters should override this; by default, the text is encoded as UTF-8 and read as a
+     * stream.
+     *
+     * @param text The document. It must not be modified until the next call to one of the {@code
+     * setInput} methods.
+     */
+    protected void setInput(CharSequence text)
+            throws ParseException {
+        setInput(new Utf8EncodingInputStream(new CharSequenceReader(text)), EncodingDetector.UTF_8);
+    }
 
-    private XmlPullParser pullParser;
+    /**
+     * @return The {@link Attributes} view this reader hands out for every element.
+     */
+    Attributes getAttributesView() {
+        if (attributesView == null) {
+            attributesView = Attributes.newView(this);
+        }
+        return attributesView;
+    }
 
-    XmlStreamReader(XmlPullParser pullParser) {
-        this.pullParser = pullParser;
+    /**
+     * @return The progress of the current document through the {@link Projection}, if any.
+     */
+    Projection.State getProjectionState() {
+        if (projectionState == null) {
+            projectionState = new Projection.State();
+        }
+        return projectionState;
     }
 
     public Object getProperty(String name)
@@ -32,16 +117,8 @@ public class XmlStreamReader {
         throw new UnsupportedOperationException();
     }
 
-    public int next()
-            throws ParseException {
-        try {
-            return pullParser.next();
-        } catch (XmlPullParserException e) {
-            throw new ParseException(e);
-        } catch (IOException e) {
-            throw new ParseException(e);
-        }
-    }
+    public abstract int next()
+            throws ParseException;
 
 
     public void require(int type, String namespaceURI, String localName) {
@@ -54,25 +131,37 @@ public class XmlStreamReader {
     }
 
 
-    public int nextTag()
+    public abstract int nextTag()
+            throws ParseException;
+
+    /**
+     * Skips the current element and all of its descendants. The reader must be at a {@link
+     * #START_ELEMENT}, and is at the matching {@link #END_ELEMENT} when this returns. Readers that
+     * can find the end of an element without tokenizing everything in between should override
+     * this; by default, it steps through all the events.
+     *
+     * @return The number of elements skipped, including the current one.
+     */
+    public int skipElement()
             throws ParseException {
-        try {
-            return pullParser.nextTag();
-        } catch (XmlPullParserException e) {
-            throw new ParseException(e);
-        } catch (IOException e) {
-            throw new ParseException(e);
+        int depth = 1;
+        int count = 1;
+        while (depth > 0) {
+            next();
+            if (isStartElement()) {
+                depth++;
+                count++;
+            } else if (isEndElement()) {
+                depth--;
+            }
         }
+        return count;
     }
 
 
     public boolean hasNext()
             throws ParseException {
-        try {
-            return pullParser.getEventType() != XmlPullParser.END_DOCUMENT;
-        } catch (XmlPullParserException e) {
-            throw new ParseException(e);
-        }
+        return getEventType() != END_DOCUMENT;
     }
 
 
@@ -83,83 +172,64 @@ public class XmlStreamReader {
 
     public boolean isStartElement()
             throws ParseException {
-        try {
-            return pullParser.getEventType() == XmlPullParser.START_TAG;
-        } catch (XmlPullParserException e) {
-            throw new ParseException(e);
-        }
+        return getEventType() == START_ELEMENT;
     }
 
 
     public boolean isEndElement()
             throws ParseException {
-        try {
-            return pullParser.getEventType() == XmlPullParser.END_TAG;
-        } catch (XmlPullParserException e) {
-            throw new ParseException(e);
-        }
+        return getEventType() == END_ELEMENT;
     }
 
 
     public boolean isCharacters()
             throws ParseException {
-        try {
-            return XmlPullParser.TEXT == pullParser.getEventType();
-        } catch (XmlPullParserException e) {
-            throw new ParseException(e);
-        }
+        return getEventType() == CHARACTERS;
     }
 
 
-    public boolean isWhiteSpace()
-            throws ParseException {
-        try {
-            return pullParser.isWhitespace();
-        } catch (XmlPullParserException e) {
-            throw new ParseException(e);
-        }
-    }
+    public abstract boolean isWhiteSpace()
+            throws ParseException;
 
 
-    public String getAttributeValue(String namespaceURI, String localName) {
-        return pullParser.getAttributeValue(namespaceURI, localName);
-    }
+    public abstract String getAttributeValue(String namespaceURI, String localName);
 
 
-    public int getAttributeCount() {
-        return pullParser.getAttributeCount();
-    }
+    public abstract int getAttributeCount();
 
 
+    /**
+     * @return The qualified name of the attribute. Equal names are always returned as the same
+     * instance.
+     */
     public String getAttributeName(int index) {
-        String prefix = getAttributePrefix(index);
-        String localName = getAttributeLocalName(index);
-        return (StringUtils.isNotEmpty(prefix)) ? prefix + ":" + localName : localName;
+        return symbolTable.getQualifiedName(getAttributePrefix(index),
+                                            getAttributeLocalName(index));
     }
 
 
-    public String getAttributeNamespace(int index) {
-        return pullParser.getAttributeNamespace(index);
-    }
+    public abstract String getAttributeNamespace(int index);
 
 
-    public String getAttributeLocalName(int index) {
-        return pullParser.getAttributeName(index);
-    }
+    public abstract String getAttributeLocalName(int index);
 
 
-    public String getAttributePrefix(int index) {
-        return pullParser.getAttributePrefix(index);
-    }
+    public abstract String getAttributePrefix(int index);
 
 
-    public String getAttributeType(int index) {
-        return pullParser.getAttributeType(index);
-    }
+    public abstract String getAttributeType(int index);
+
 
+    public abstract String getAttributeValue(int index);
 
-    public String getAttributeValue(int index) {
-        return pullParser.getAttributeValue(index);
+
+    /**
+     * Like {@link #getAttributeValue(int)}, but implementations may return a view onto their
+     * buffer rather than a new String. The view is only valid until the next call to this method
+     * or until the reader moves on, so call {@link CharSequence#toString()} on it to keep it.
+     */
+    public CharSequence getAttributeValueCharacters(int index) {
+        return getAttributeValue(index);
     }
 
 
@@ -167,33 +237,66 @@ public class XmlStreamReader {
         throw new UnsupportedOperationException();
     }
 
-    public int getEventType()
+    public abstract int getEventType()
+            throws ParseException;
+
+    public abstract String getText()
+            throws ParseException;
+
+    /**
+     * Reads the text at the current {@link #CHARACTERS} event in chunks, so that long text does
+     * not have to be held in memory all at once. Consecutive text events are read as one text.
+     * Once this has returned -1, the reader is at the event following the text; until then, no
+     * other methods may be called. If the reader is not at a text event, this returns -1 without
+     * moving.
+     * <p/>
+     * By default, each event is read with {@link #getText()}. Readers that can decode text as
+     * they go override this.
+     *
+     * @return The number of chars read into {@code chars}, which is only 0 if {@code length} is
+     * 0, or -1 at the end of the text.
+     */
+    public int readText(char[] chars, int offset, int length)
             throws ParseException {
-        try {
-            return pullParser.getEventType();
-        } catch (XmlPullParserException e) {
-            throw new ParseException(e);
+        if (pendingText == null) {
+            if (!isCharacters()) {
+                return -1;
+            }
+            startPendingText();
+        }
+        while (pendingTextOffset == pendingText.length()) {
+            if (next() != CHARACTERS) {
+                pendingText = null;
+                return -1;
+            }
+            startPendingText();
         }
+        int count = Math.min(length, pendingText.length() - pendingTextOffset);
+        pendingText.getChars(pendingTextOffset, pendingTextOffset + count, chars, offset);
+        pendingTextOffset += count;
+        return count;
     }
 
-    public String getText() {
-        return pullParser.getText();
+    private void startPendingText()
+            throws ParseException {
+        String text = getText();
+        pendingText = text != null ? text : "";
+        pendingTextOffset = 0;
     }
 
-    public String getEncoding() {
-        return pullParser.getInputEncoding();
-    }
+    public abstract String getEncoding();
 
+    /**
+     * @return The qualified name of the current element, or null if the reader is not at a start
+     * or end element. Equal names are always returned as the same instance, so callers may compare
+     * them by identity before falling back to {@link String#equals(Object)}.
+     */
     public String getName() {
-        String prefix = getPrefix();
-        String localName = getLocalName();
-        return (StringUtils.isNotEmpty(prefix)) ? prefix + ":" + localName : localName;
+        return symbolTable.getQualifiedName(getPrefix(), getLocalName());
     }
 
 
-    public String getLocalName() {
-        return pullParser.getName();
-    }
+    public abstract String getLocalName();
 
 
     public boolean hasName()
@@ -202,8 +305,6 @@ public class XmlStreamReader {
     }
 
 
-    public String getPrefix() {
-        return pullParser.getPrefix();
-    }
+    public abstract String getPrefix();
 
 }
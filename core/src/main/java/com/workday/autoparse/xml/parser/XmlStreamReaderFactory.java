@@ -7,12 +7,18 @@
 
 package com.workday.autoparse.xml.parser;
 
-import org.xmlpull.v1.XmlPullParser;
+import com.workday.autoparse.xml.context.XmlParserSettings;
+import com.workday.autoparse.xml.context.XmlParserSettings.ReaderBackend;
+
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 
 /**
  * @author nathan.taylor
@@ -20,18 +26,131 @@ import java.io.InputStreamReader;
  */
 class XmlStreamReaderFactory {
 
+    static final XmlStreamReaderProvider PULL_PARSER_PROVIDER = new XmlStreamReaderProvider() {
+        @Override
+        public XmlStreamReader newXmlStreamReader()
+                throws ParseException {
+            try {
+                return new PullParserXmlStreamReader(getPullParserFactory().newPullParser());
+            } catch (XmlPullParserException e) {
+                throw new ParseException(e);
+            }
+        }
+    };
+
+    static final XmlStreamReaderProvider BUILT_IN_PROVIDER = new XmlStreamReaderProvider() {
+        @Override
+        public XmlStreamReader newXmlStreamReader() {
+            return new Utf8XmlStreamReader();
+        }
+    };
+
+    private static volatile XmlPullParserFactory pullParserFactory;
+    private static volatile XmlStreamReaderProvider discoveredProvider;
+
     private XmlStreamReaderFactory() {
     }
 
     public static XmlStreamReader newXmlStreamReader(InputStream in)
             throws ParseException {
+        return newXmlStreamReader(in, null, PULL_PARSER_PROVIDER);
+    }
+
+    public static XmlStreamReader newXmlStreamReader(InputStream in,
+                                                     Charset charset,
+                                                     XmlStreamReaderProvider provider)
+            throws ParseException {
+        XmlStreamReader reader = provider.newXmlStreamReader();
+        reader.setInput(in, charset);
+        return reader;
+    }
+
+    /**
+     * @return The provider that readers should be created with according to {@code settings}.
+     */
+    public static XmlStreamReaderProvider getReaderProvider(XmlParserSettings settings) {
+        if (settings.getReaderProvider() != null) {
+            return settings.getReaderProvider();
+        }
+        ReaderBackend backend = settings.getReaderBackend();
+        switch (backend) {
+            case PULL_PARSER:
+                return PULL_PARSER_PROVIDER;
+            case BUILT_IN:
+                return BUILT_IN_PROVIDER;
+            case DISCOVERED:
+                return getDiscoveredProvider();
+            default:
+                throw new IllegalArgumentException("Unknown reader backend: " + backend);
+        }
+    }
+
+    /**
+     * Looks up the {@link XmlStreamReaderProvider} registered with {@link ServiceLoader}, or falls
+     * back to the pull parser if there is none. Like the pull parser factory, the result is looked
+     * up once and shared.
+     *
+     * @throws IllegalStateException if a registered provider cannot be loaded, or if several
+     * providers are registered, since picking one of them would depend on the order of the
+     * classpath.
+     */
+    private static XmlStreamReaderProvider getDiscoveredProvider() {
+        XmlStreamReaderProvider provider = discoveredProvider;
+        if (provider == null) {
+            synchronized (XmlStreamReaderFactory.class) {
+                provider = discoveredProvider;
+                if (provider == null) {
+                    provider = loadProvider();
+                    discoveredProvider = provider;
+                }
+            }
+        }
+        return provider;
+    }
+
+    private static XmlStreamReaderProvider loadProvider() {
+        List<XmlStreamReaderProvider> providers = new ArrayList<>();
         try {
-            XmlPullParser pullParser = XmlPullParserFactory.newInstance().newPullParser();
-            InputStreamReader inputStreamReader = new InputStreamReader(in);
-            pullParser.setInput(inputStreamReader);
-            return new XmlStreamReader(pullParser);
-        } catch (XmlPullParserException e) {
-            throw new ParseException(e);
+            for (XmlStreamReaderProvider provider
+                    : ServiceLoader.load(XmlStreamReaderProvider.class,
+                                         XmlStreamReaderProvider.class.getClassLoader())) {
+                providers.add(provider);
+            }
+        } catch (ServiceConfigurationError e) {
+            throw new IllegalStateException(
+                    "A registered XmlStreamReaderProvider could not be loaded. Remove it from the "
+                            + "classpath or choose a reader backend explicitly.", e);
+        }
+        if (providers.size() > 1) {
+            StringBuilder names = new StringBuilder();
+            for (XmlStreamReaderProvider provider : providers) {
+                if (names.length() > 0) {
+                    names.append(", ");
+                }
+                names.append(provider.getClass().getName());
+            }
+            throw new IllegalStateException(
+                    "Several XmlStreamReaderProviders are registered (" + names + "). Choose one "
+                            + "with XmlParserSettingsBuilder.withReaderProvider().");
+        }
+        return providers.isEmpty() ? PULL_PARSER_PROVIDER : providers.get(0);
+    }
+
+    /**
+     * {@link XmlPullParserFactory#newInstance()} performs service discovery on every call, so the
+     * factory is looked up once and shared. Creating parsers from a factory does not modify it.
+     */
+    private static XmlPullParserFactory getPullParserFactory() throws XmlPullParserException {
+        XmlPullParserFactory factory = pullParserFactory;
+        if (factory == null) {
+            synchronized (XmlStreamReaderFactory.class) {
+                factory = pullParserFactory;
+                if (factory == null) {
+                    factory = XmlPullParserFactory.newInstance();
+                    pullParserFactory = factory;
+                }
+            }
         }
+        return factory;
     }
 }
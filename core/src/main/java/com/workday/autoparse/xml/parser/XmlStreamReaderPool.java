@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import com.workday.autoparse.xml.context.XmlParserSettingsBuilder;
+import com.workday.autoparse.xml.utils.Preconditions;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of idle {@link XmlStreamReader}s. Readers are handed out by {@link #acquire()}
+ * and then pointed at the new input, which resets all of their parsing state while keeping their
+ * buffers. Readers that are released while the pool is full are simply dropped.
+ * <p/>
+ * The pool is safe to use from multiple threads.
+ *
+ * @see XmlParserSettingsBuilder#withReaderPoolSize(int)
+ * @since 1.3
+ */
+class XmlStreamReaderPool {
+
+    private final BlockingQueue<XmlStreamReader> idleReaders;
+    private final XmlStreamReaderProvider provider;
+
+    XmlStreamReaderPool(int maxIdleReaders, XmlStreamReaderProvider provider) {
+        this.provider = provider;
+        Preconditions.checkArgument(maxIdleReaders >= 0,
+                                    "Pool size must be nonnegative but was " + maxIdleReaders);
+        idleReaders = maxIdleReaders > 0
+                      ? new ArrayBlockingQueue<XmlStreamReader>(maxIdleReaders)
+                      : null;
+    }
+
+    /**
+     * @return An idle reader, or a new one if there is none. Either way, it still needs to be
+     * pointed at its input.
+     */
+    public XmlStreamReader acquire() throws ParseException {
+        XmlStreamReader reader = idleReaders != null ? idleReaders.poll() : null;
+        return reader != null ? reader : provider.newXmlStreamReader();
+    }
+
+    public void release(XmlStreamReader reader) {
+        if (idleReaders == null) {
+            return;
+        }
+        try {
+            // Do not hold on to the stream (and whatever it references) while idle.
+            reader.setInput(null, null);
+        } catch (ParseException e) {
+            return;
+        }
+        idleReaders.offer(reader);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import com.workday.autoparse.xml.context.XmlParserSettings;
+import com.workday.autoparse.xml.context.XmlParserSettingsBuilder;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Creates the {@link XmlStreamReader}s that an {@link XmlStreamParser} reads documents with. This
+ * allows the underlying XML parser to be replaced, for instance by a StAX implementation when
+ * running on the JVM.
+ * <p/>
+ * A provider can be set explicitly with {@link
+ * XmlParserSettingsBuilder#withReaderProvider(XmlStreamReaderProvider)}. Otherwise, with the
+ * default {@link XmlParserSettings.ReaderBackend#DISCOVERED} backend, providers are looked up with
+ * {@link java.util.ServiceLoader}; to register one, list its class name in a {@code
+ * META-INF/services/com.workday.autoparse.xml.parser.XmlStreamReaderProvider} resource and give it
+ * a public no-argument constructor.
+ *
+ * @since 1.3
+ */
+public interface XmlStreamReaderProvider {
+
+    /**
+     * Creates a new reader that is not yet attached to any input. The parser attaches it to each
+     * document with {@link XmlStreamReader#setInput(InputStream,
+     * Charset)}, and may reuse it for several
+     * documents, but never from more than one thread at a time. This method however may be called
+     * concurrently.
+     */
+    XmlStreamReader newXmlStreamReader()
+            throws ParseException;
+}
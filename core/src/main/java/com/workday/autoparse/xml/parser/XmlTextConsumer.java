@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.parser;
+
+import com.workday.autoparse.xml.annotations.XmlTextContent;
+import com.workday.autoparse.xml.utils.StringTransformer;
+
+/**
+ * Receives the text content of an element in chunks as it is read, so that long text never has to
+ * be held in memory as a whole. A field of this type annotated with {@link XmlTextContent} is
+ * passed the text content of its element instead of being assigned it; the field must be
+ * initialized by the model. {@link StringTransformer}s are not applied to text read this way.
+ * <p/>
+ * A consumer may be passed the text of several elements in turn, each followed by a call to
+ * {@link #onTextEnd()}. Elements without text content are not passed to it at all.
+ *
+ * @see Attributes#readContent(XmlTextConsumer)
+ * @see Base64TextDecoder
+ * @since 1.3
+ */
+public interface XmlTextConsumer {
+
+    /**
+     * Called with each chunk of the text. The array is reused for the next chunk, so the chars
+     * must be copied if they are needed after this returns.
+     */
+    void onText(char[] chars, int offset, int length)
+            throws ParseException;
+
+    /**
+     * Called after the last chunk of the text.
+     */
+    void onTextEnd()
+            throws ParseException;
+}
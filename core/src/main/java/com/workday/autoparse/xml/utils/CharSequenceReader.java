@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.utils;
+
+import java.io.Reader;
+
+/**
+ * A {@link Reader} over a {@link CharSequence}, which unlike {@link java.io.StringReader} does not
+ * require the text to be copied into a String first.
+ *
+ * @since 1.3
+ */
+public class CharSequenceReader extends Reader {
+
+    private CharSequence text;
+    private int position;
+
+    public CharSequenceReader(CharSequence text) {
+        Preconditions.checkNotNull(text, "text");
+        this.text = text;
+    }
+
+    @Override
+    public int read() {
+        if (text == null || position >= text.length()) {
+            return -1;
+        }
+        return text.charAt(position++);
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (text == null || position >= text.length()) {
+            return -1;
+        }
+        int count = Math.min(length, text.length() - position);
+        if (text instanceof String) {
+            ((String) text).getChars(position, position + count, chars, offset);
+        } else {
+            for (int i = 0; i < count; i++) {
+                chars[offset + i] = text.charAt(position + i);
+            }
+        }
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long count) {
+        if (text == null) {
+            return 0;
+        }
+        int skipped = (int) Math.min(Math.max(count, 0), text.length() - position);
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean ready() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        text = null;
+    }
+}
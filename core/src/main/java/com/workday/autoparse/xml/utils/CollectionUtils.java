@@ -41,7 +41,10 @@ public class CollectionUtils {
         return set;
     }
 
-    private static <E> HashSet<E> newHashSetWithExpectedSize(int expectedSize) {
+    /**
+     * @return A {@link HashSet} that can hold {@code expectedSize} elements without being resized.
+     */
+    public static <E> HashSet<E> newHashSetWithExpectedSize(int expectedSize) {
         return new HashSet<>(mapCapacity(expectedSize));
     }
 
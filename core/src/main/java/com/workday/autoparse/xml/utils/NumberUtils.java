@@ -0,0 +1,279 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.utils;
+
+import java.math.BigDecimal;
+
+/**
+ * Parses numbers from {@link CharSequence}s without first converting them to Strings. The methods
+ * accept exactly the same input as their counterparts in {@link Integer}, {@link Long}, {@link
+ * Double} and so on, and throw the same {@link NumberFormatException}s.
+ *
+ * @since 1.3
+ */
+public class NumberUtils {
+
+    private static final long MAX_EXACT_DOUBLE_MANTISSA = 1L << 53;
+    private static final long MAX_EXACT_FLOAT_MANTISSA = 1L << 24;
+    // The largest powers of ten that are exactly representable as a double and a float.
+    private static final int MAX_EXACT_DOUBLE_POWER = 22;
+    private static final int MAX_EXACT_FLOAT_POWER = 10;
+    // More digits than this might overflow the mantissa.
+    private static final int MAX_MANTISSA_DIGITS = 18;
+    private static final int MAX_EXPONENT_DIGITS = 4;
+
+    private static final double[] DOUBLE_POWERS_OF_TEN = new double[MAX_EXACT_DOUBLE_POWER + 1];
+    private static final float[] FLOAT_POWERS_OF_TEN = new float[MAX_EXACT_FLOAT_POWER + 1];
+
+    static {
+        DOUBLE_POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < DOUBLE_POWERS_OF_TEN.length; i++) {
+            DOUBLE_POWERS_OF_TEN[i] = DOUBLE_POWERS_OF_TEN[i - 1] * 10;
+        }
+        FLOAT_POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < FLOAT_POWERS_OF_TEN.length; i++) {
+            FLOAT_POWERS_OF_TEN[i] = FLOAT_POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private NumberUtils() {
+    }
+
+    /**
+     * @return The index of the first character of {@code chars} that {@link String#trim()} would
+     * keep.
+     */
+    public static int trimmedStart(CharSequence chars) {
+        int start = 0;
+        while (start < chars.length() && chars.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * @return The index after the last character of {@code chars} that {@link String#trim()} would
+     * keep.
+     */
+    public static int trimmedEnd(CharSequence chars) {
+        int end = chars.length();
+        while (end > 0 && chars.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    public static int parseInt(CharSequence chars, int start, int end)
+            throws NumberFormatException {
+        return (int) parseLong(chars, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public static short parseShort(CharSequence chars)
+            throws NumberFormatException {
+        int value = parseInt(chars, 0, chars.length());
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+            throw newOutOfRangeException(chars);
+        }
+        return (short) value;
+    }
+
+    public static byte parseByte(CharSequence chars)
+            throws NumberFormatException {
+        int value = parseInt(chars, 0, chars.length());
+        if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+            throw newOutOfRangeException(chars);
+        }
+        return (byte) value;
+    }
+
+    public static long parseLong(CharSequence chars)
+            throws NumberFormatException {
+        return parseLong(chars, 0, chars.length(), Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Parses a signed decimal integer between {@code start} (inclusive) and {@code end}
+     * (exclusive).
+     *
+     * @throws NumberFormatException if the characters are not a decimal integer, or the value is
+     * outside {@code [min, max]}.
+     */
+    public static long parseLong(CharSequence chars, int start, int end, long min, long max)
+            throws NumberFormatException {
+        if (start >= end) {
+            throw newNumberFormatException(chars, start, end);
+        }
+        boolean negative = false;
+        int i = start;
+        char first = chars.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++i == end) {
+                throw newNumberFormatException(chars, start, end);
+            }
+        }
+        // Accumulate negatively, since Long.MIN_VALUE has no positive counterpart.
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplicationLimit = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            char c = chars.charAt(i);
+            // Like Integer and Long, accept any Unicode digit, but look up only those past ASCII.
+            int digit = c >= '0' && c <= '9' ? c - '0' : Character.digit(c, 10);
+            if (digit < 0 || result < multiplicationLimit) {
+                throw newNumberFormatException(chars, start, end);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw newNumberFormatException(chars, start, end);
+            }
+            result -= digit;
+        }
+        long value = negative ? result : -result;
+        if (value < min || value > max) {
+            throw newNumberFormatException(chars, start, end);
+        }
+        return value;
+    }
+
+    public static double parseDouble(CharSequence chars)
+            throws NumberFormatException {
+        return parseDecimal(chars, false);
+    }
+
+    public static float parseFloat(CharSequence chars)
+            throws NumberFormatException {
+        return (float) parseDecimal(chars, true);
+    }
+
+    public static BigDecimal parseBigDecimal(CharSequence chars)
+            throws NumberFormatException {
+        if (chars instanceof String) {
+            return new BigDecimal((String) chars);
+        }
+        // BigDecimal(String) copies the String into a char array anyway.
+        char[] array = new char[chars.length()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = chars.charAt(i);
+        }
+        return new BigDecimal(array);
+    }
+
+    /**
+     * Parses plain decimal numbers whose value can be computed exactly with a single
+     * multiplication or division, which covers the vast majority of numbers in practice. Anything
+     * else is handed to {@link Double#parseDouble(String)} or {@link Float#parseFloat(String)}.
+     */
+    private static double parseDecimal(CharSequence chars, boolean isFloat) {
+        int length = chars.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+            negative = chars.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int mantissaDigits = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean inFraction = false;
+        for (; i < length; i++) {
+            char c = chars.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (inFraction) {
+                    fractionDigits++;
+                }
+                if (mantissa != 0 || c != '0') {
+                    if (++mantissaDigits > MAX_MANTISSA_DIGITS) {
+                        return parseSlowly(chars, isFloat);
+                    }
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+            } else if (c == '.' && !inFraction) {
+                inFraction = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return parseSlowly(chars, isFloat);
+        }
+
+        int exponent = 0;
+        if (i < length && (chars.charAt(i) == 'e' || chars.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < length && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+                negativeExponent = chars.charAt(i) == '-';
+                i++;
+            }
+            int exponentStart = i;
+            for (; i < length && chars.charAt(i) >= '0' && chars.charAt(i) <= '9'; i++) {
+                if (i - exponentStart >= MAX_EXPONENT_DIGITS) {
+                    return parseSlowly(chars, isFloat);
+                }
+                exponent = exponent * 10 + (chars.charAt(i) - '0');
+            }
+            if (i == exponentStart) {
+                return parseSlowly(chars, isFloat);
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        if (i != length) {
+            // Whitespace, a type suffix, NaN, Infinity or hexadecimal notation.
+            return parseSlowly(chars, isFloat);
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        exponent -= fractionDigits;
+        if (isFloat) {
+            if (mantissa > MAX_EXACT_FLOAT_MANTISSA
+                    || Math.abs(exponent) > MAX_EXACT_FLOAT_POWER) {
+                return parseSlowly(chars, true);
+            }
+            float value = exponent >= 0
+                          ? (float) mantissa * FLOAT_POWERS_OF_TEN[exponent]
+                          : (float) mantissa / FLOAT_POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+        if (mantissa > MAX_EXACT_DOUBLE_MANTISSA || Math.abs(exponent) > MAX_EXACT_DOUBLE_POWER) {
+            return parseSlowly(chars, false);
+        }
+        double value = exponent >= 0
+                       ? (double) mantissa * DOUBLE_POWERS_OF_TEN[exponent]
+                       : (double) mantissa / DOUBLE_POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    private static double parseSlowly(CharSequence chars, boolean isFloat) {
+        String string = chars.toString();
+        return isFloat ? Float.parseFloat(string) : Double.parseDouble(string);
+    }
+
+    /**
+     * @return The exception that {@link Byte#parseByte(String)} and {@link
+     * Short#parseShort(String)} throw for integers outside their range.
+     */
+    private static NumberFormatException newOutOfRangeException(CharSequence chars) {
+        return new NumberFormatException(
+                "Value out of range. Value:\"" + chars + "\" Radix:10");
+    }
+
+    private static NumberFormatException newNumberFormatException(CharSequence chars,
+                                                                  int start,
+                                                                  int end) {
+        return new NumberFormatException(
+                "For input string: \"" + chars.subSequence(start, end) + "\"");
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.demo;
+
+import com.workday.autoparse.xml.annotations.XmlAttribute;
+import com.workday.autoparse.xml.annotations.XmlElement;
+import com.workday.autoparse.xml.annotations.XmlRecyclable;
+import com.workday.autoparse.xml.annotations.XmlTextContent;
+
+/**
+ * @since 1.3
+ */
+@XmlRecyclable
+@XmlElement("Attachment_Model")
+public class AttachmentModel {
+
+    @XmlAttribute("name")
+    String name;
+
+    @XmlTextContent
+    byte[] data;
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.demo;
+
+import com.workday.autoparse.xml.annotations.XmlElement;
+import com.workday.autoparse.xml.annotations.XmlTextContent;
+import com.workday.autoparse.xml.parser.Base64TextDecoder;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * @since 1.3
+ */
+@XmlElement("Encoded_File_Model")
+public class EncodedFileModel {
+
+    final ByteArrayOutputStream contents = new ByteArrayOutputStream();
+
+    @XmlTextContent
+    final Base64TextDecoder decoder = new Base64TextDecoder(contents);
+}
@@ -0,0 +1,21 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.demo;
+
+import com.workday.autoparse.xml.annotations.XmlElement;
+import com.workday.autoparse.xml.annotations.XmlTextContent;
+
+/**
+ * @since 1.3
+ */
+@XmlElement("Note_Model")
+public class NoteModel {
+
+    @XmlTextContent
+    CharSequence text;
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.demo;
+
+import com.workday.autoparse.xml.annotations.XmlAttribute;
+import com.workday.autoparse.xml.annotations.XmlElement;
+import com.workday.autoparse.xml.annotations.XmlTextContent;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Keeps only the start of its text content, which it reads from the document as it goes.
+ *
+ * @since 1.3
+ */
+@XmlElement("Preview_Model")
+public class PreviewModel {
+
+    static final int PREVIEW_LENGTH = 20;
+
+    @XmlAttribute("id")
+    int id;
+
+    String preview;
+
+    @XmlTextContent
+    void setText(Reader reader) {
+        char[] chars = new char[PREVIEW_LENGTH];
+        int length = 0;
+        try {
+            int read;
+            while (length < chars.length
+                    && (read = reader.read(chars, length, chars.length - length)) >= 0) {
+                length += read;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        preview = new String(chars, 0, length);
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.demo;
+
+import com.workday.autoparse.xml.annotations.XmlAttribute;
+import com.workday.autoparse.xml.annotations.XmlElement;
+import com.workday.autoparse.xml.annotations.XmlRecyclable;
+
+/**
+ * @since 1.3
+ */
+@XmlRecyclable
+@XmlElement("Recyclable_Child_Model")
+public class RecyclableChildModel {
+
+    @XmlAttribute("My_String")
+    String myString = "none";
+
+    @XmlAttribute("My_Int")
+    int myInt = -1;
+}
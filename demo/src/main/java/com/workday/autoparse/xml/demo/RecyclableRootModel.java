@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.demo;
+
+import com.google.common.collect.Lists;
+import com.workday.autoparse.xml.annotations.XmlAttribute;
+import com.workday.autoparse.xml.annotations.XmlChildElement;
+import com.workday.autoparse.xml.annotations.XmlElement;
+import com.workday.autoparse.xml.annotations.XmlRecyclable;
+
+import java.util.List;
+
+/**
+ * @since 1.3
+ */
+@XmlRecyclable
+@XmlElement("Recyclable_Root_Model")
+public class RecyclableRootModel {
+
+    @XmlChildElement
+    List<RecyclableChildModel> children = Lists.newArrayList();
+
+    int count = -1;
+
+    @XmlAttribute("count")
+    public void setCount(int count) {
+        this.count = count;
+    }
+}
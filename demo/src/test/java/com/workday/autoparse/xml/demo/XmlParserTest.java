@@ -7,17 +7,39 @@
 
 package com.workday.autoparse.xml.demo;
 
+import com.workday.autoparse.xml.context.XmlContextHolder;
+import com.workday.autoparse.xml.context.XmlParserContext;
 import com.workday.autoparse.xml.context.XmlParserSettings;
 import com.workday.autoparse.xml.context.XmlParserSettingsBuilder;
 import com.workday.autoparse.xml.demo.duplicatepartition.DuplicatePartitionedModel;
 import com.workday.autoparse.xml.demo.partition.PartitionedModel;
+import com.workday.autoparse.xml.parser.Flow;
+import com.workday.autoparse.xml.parser.ModelPool;
 import com.workday.autoparse.xml.parser.ParseException;
+import com.workday.autoparse.xml.parser.ParserMap;
+import com.workday.autoparse.xml.parser.ProjectionStatistics;
+import com.workday.autoparse.xml.parser.SymbolTable;
+import com.workday.autoparse.xml.parser.UncheckedParseException;
 import com.workday.autoparse.xml.parser.UnexpectedChildException;
 import com.workday.autoparse.xml.parser.UnknownElementException;
+import com.workday.autoparse.xml.parser.XmlAsyncParser;
+import com.workday.autoparse.xml.parser.XmlCheckpoint;
+import com.workday.autoparse.xml.parser.XmlDocumentIterator;
+import com.workday.autoparse.xml.parser.XmlElementIterator;
+import com.workday.autoparse.xml.parser.XmlElementStreamParser;
+import com.workday.autoparse.xml.parser.XmlElementListener;
+import com.workday.autoparse.xml.parser.XmlElementPublisher;
+import com.workday.autoparse.xml.parser.XmlElementParser;
 import com.workday.autoparse.xml.parser.XmlStreamParser;
 import com.workday.autoparse.xml.parser.XmlStreamParserFactory;
+import com.workday.autoparse.xml.parser.XmlStreamReader;
+import com.workday.autoparse.xml.parser.XmlStreamReaderProvider;
+import com.workday.autoparse.xml.stax.StaxXmlStreamReaderProvider;
+import com.workday.autoparse.xml.utils.NumberUtils;
 import com.workday.autoparse.xml.utils.StringTransformer;
 
+import android.util.Base64;
+
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -25,13 +47,44 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -46,15 +99,569 @@ public class XmlParserTest {
     static final double DOUBLE_E = 1E-6;
     static final float FLOAT_E = (float) 1E-6;
 
+    /**
+     * The stax module is on the test classpath, where it would be discovered by default. Tests
+     * that do not choose a backend run on the pull parser, which is the default on Android.
+     */
+    private static XmlParserSettingsBuilder newSettingsBuilder() {
+        return new XmlParserSettingsBuilder()
+                .withReaderBackend(XmlParserSettings.ReaderBackend.PULL_PARSER);
+    }
+
+    private static XmlStreamParser newParser() {
+        return XmlStreamParserFactory.newXmlStreamParser(newSettingsBuilder().build());
+    }
+
+    private static XmlElementStreamParser newElementStreamParser() {
+        return XmlStreamParserFactory.newXmlElementStreamParser(newSettingsBuilder().build());
+    }
+
     @Test
     public void testParse()
             throws UnknownElementException, ParseException, UnexpectedChildException {
 
-        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser();
+        XmlStreamParser parser = newParser();
 
         InputStream in = getInputStreamOf("input.xml");
-        DemoModel model = (DemoModel) parser.parseStream(in);
+        assertDemoModel((DemoModel) parser.parseStream(in));
+    }
+
+    @Test
+    public void testParseWithBuiltInReader()
+            throws UnknownElementException, ParseException, UnexpectedChildException {
+        XmlParserSettings settings =
+                new XmlParserSettingsBuilder().withReaderBackend(XmlParserSettings.ReaderBackend.BUILT_IN)
+                                              .build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+        InputStream in = getInputStreamOf("input.xml");
+        assertDemoModel((DemoModel) parser.parseStream(in));
+    }
+
+    @Test
+    public void testBuiltInReaderDecodesMarkup()
+            throws UnknownElementException, ParseException, UnexpectedChildException {
+        XmlParserSettings settings =
+                new XmlParserSettingsBuilder().withReaderBackend(XmlParserSettings.ReaderBackend.BUILT_IN)
+                                              .build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+        RootModel root = (RootModel) parser.parseStream(getInputStreamOf("markup-input.xml"));
+        assertEquals(4, root.children.size());
+
+        RepeatedChildModel first = (RepeatedChildModel) root.children.get(0);
+        assertEquals("caf\u00e9 & cr\u00e8me", first.value);
+        assertEquals("Fish & chips <b>bold</b> \ud83d\ude00", first.textContent);
+
+        RepeatedChildModel second = (RepeatedChildModel) root.children.get(1);
+        assertEquals("single \"quoted\" <>", second.value);
+        assertNull(second.textContent);
+
+        RepeatedChildModel third = (RepeatedChildModel) root.children.get(2);
+        assertEquals("\u65e5\u672c\u8a9e", third.value);
+        assertEquals("na\u00efve", third.textContent);
+
+        RepeatedChildModel fourth = (RepeatedChildModel) root.children.get(3);
+        assertEquals("empty", fourth.value);
+        assertNull(fourth.textContent);
+    }
+
+    @Test
+    public void testStaxProviderParsesFixtures()
+            throws UnknownElementException, ParseException, UnexpectedChildException {
+        XmlParserSettings settings =
+                new XmlParserSettingsBuilder().withReaderProvider(new StaxXmlStreamReaderProvider())
+                                              .build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+        // Prefixed attribute names are kept as they are.
+        assertDemoModel((DemoModel) parser.parseStream(getInputStreamOf("input.xml")));
+
+        // Text around references, CDATA sections and comments is coalesced into one string.
+        RootModel root = (RootModel) parser.parseStream(getInputStreamOf("markup-input.xml"));
+        assertEquals(4, root.children.size());
+        RepeatedChildModel first = (RepeatedChildModel) root.children.get(0);
+        assertEquals("caf\u00e9 & cr\u00e8me", first.value);
+        assertEquals("Fish & chips <b>bold</b> \ud83d\ude00", first.textContent);
+        RepeatedChildModel second = (RepeatedChildModel) root.children.get(1);
+        assertEquals("single \"quoted\" <>", second.value);
+        assertNull(second.textContent);
+        RepeatedChildModel third = (RepeatedChildModel) root.children.get(2);
+        assertEquals("\u65e5\u672c\u8a9e", third.value);
+        assertEquals("na\u00efve", third.textContent);
+
+        for (String fileName : new String[]{"latin1-input.xml", "utf16-input.xml"}) {
+            root = (RootModel) parser.parseStream(getInputStreamOf(fileName));
+            RepeatedChildModel child = (RepeatedChildModel) root.children.get(0);
+            assertEquals(fileName, "caf\u00e9", child.value);
+            assertEquals(fileName, "cr\u00e8me br\u00fbl\u00e9e", child.textContent);
+        }
+
+        SetterModel setterModel = (SetterModel) parser.parseStream(getInputStreamOf("setter-input.xml"));
+        assertEquals(5, setterModel.anInt);
+        assertNotNull(setterModel.child);
+        assertEquals(2, setterModel.repeatedChildren.size());
+        assertEquals("Hello",
+                     StringUtils.trim(StringUtils.replace(setterModel.textContent, "\n", " ")));
+
+        try {
+            parser.parseStream(getInputStreamOf("mismatched-end-tag-input.xml"));
+            fail(String.format("Expected a %s.", ParseException.class.getSimpleName()));
+        } catch (ParseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBuiltInReaderRejectsMismatchedEndTag()
+            throws UnknownElementException, UnexpectedChildException {
+        XmlParserSettings settings =
+                new XmlParserSettingsBuilder().withReaderBackend(XmlParserSettings.ReaderBackend.BUILT_IN)
+                                              .build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+        try {
+            parser.parseStream(getInputStreamOf("mismatched-end-tag-input.xml"));
+            fail(String.format("Expected a %s.", ParseException.class.getSimpleName()));
+        } catch (ParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Repeated_Child_Model"));
+        }
+    }
+
+    @Test
+    public void testReaderProviderIsUsed()
+            throws UnknownElementException, UnexpectedChildException {
+        XmlParserSettings settings =
+                new XmlParserSettingsBuilder().withReaderProvider(new XmlStreamReaderProvider() {
+                    @Override
+                    public XmlStreamReader newXmlStreamReader()
+                            throws ParseException {
+                        throw new ParseException("Provider called");
+                    }
+                }).build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+        try {
+            parser.parseStream(getInputStreamOf("input.xml"));
+            fail(String.format("Expected a %s.", ParseException.class.getSimpleName()));
+        } catch (ParseException e) {
+            assertEquals("Provider called", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testEncodingIsDetected()
+            throws UnknownElementException, ParseException, UnexpectedChildException {
+        for (XmlParserSettings.ReaderBackend backend : new XmlParserSettings.ReaderBackend[]{
+                XmlParserSettings.ReaderBackend.PULL_PARSER,
+                XmlParserSettings.ReaderBackend.BUILT_IN}) {
+            XmlParserSettings settings = new XmlParserSettingsBuilder().withReaderBackend(backend)
+                                                                       .build();
+            XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+            for (String fileName : new String[]{"latin1-input.xml", "utf16-input.xml"}) {
+                RootModel root = (RootModel) parser.parseStream(getInputStreamOf(fileName));
+                RepeatedChildModel child = (RepeatedChildModel) root.children.get(0);
+                assertEquals(backend + " " + fileName, "caf\u00e9", child.value);
+                assertEquals(backend + " " + fileName, "cr\u00e8me br\u00fbl\u00e9e", child.textContent);
+            }
+        }
+    }
+
+    @Test
+    public void testSkippedElementsMayContainMarkup()
+            throws UnknownElementException, ParseException, UnexpectedChildException {
+        for (XmlParserSettings.ReaderBackend backend : new XmlParserSettings.ReaderBackend[]{
+                XmlParserSettings.ReaderBackend.PULL_PARSER,
+                XmlParserSettings.ReaderBackend.BUILT_IN}) {
+            XmlParserSettings settings =
+                    new XmlParserSettingsBuilder().withReaderBackend(backend)
+                                                  .withUnknownElementHandling(
+                                                          XmlParserSettings.UnknownElementHandling
+                                                                  .IGNORE)
+                                                  .build();
+            XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+            RootModel root =
+                    (RootModel) parser.parseStream(getInputStreamOf("skipped-markup-input.xml"));
+            assertEquals(backend.toString(), 1, root.children.size());
+            RepeatedChildModel child = (RepeatedChildModel) root.children.get(0);
+            assertEquals(backend.toString(), "after", child.value);
+        }
+    }
+
+    @Test
+    public void testLargeSkippedElement()
+            throws UnknownElementException, ParseException, UnexpectedChildException {
+        StringBuilder sb = new StringBuilder("<Root_Model><Unknown_Element>");
+        for (int i = 0; i < 20000; i++) {
+            sb.append("<Nested index=\"").append(i).append("\"><!-- > --><Leaf/>text</Nested>");
+        }
+        sb.append("</Unknown_Element><Repeated_Child_Model value=\"after\"/></Root_Model>");
+        byte[] bytes = sb.toString().getBytes(Charset.forName("UTF-8"));
+
+        XmlParserSettings settings =
+                new XmlParserSettingsBuilder().withReaderBackend(
+                        XmlParserSettings.ReaderBackend.BUILT_IN)
+                                              .withUnknownElementHandling(
+                                                      XmlParserSettings.UnknownElementHandling
+                                                              .IGNORE)
+                                              .build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+        RootModel root = (RootModel) parser.parseStream(new ByteArrayInputStream(bytes));
+        assertEquals(1, root.children.size());
+        assertEquals("after", ((RepeatedChildModel) root.children.get(0)).value);
+    }
+
+    @Test
+    public void testDeclaredCharsetIsUsed()
+            throws UnknownElementException, ParseException, UnexpectedChildException {
+        for (XmlParserSettings.ReaderBackend backend : new XmlParserSettings.ReaderBackend[]{
+                XmlParserSettings.ReaderBackend.PULL_PARSER,
+                XmlParserSettings.ReaderBackend.BUILT_IN}) {
+            XmlParserSettings settings = new XmlParserSettingsBuilder().withReaderBackend(backend)
+                                                                       .withCharset(Charset.forName("ISO-8859-1"))
+                                                                       .build();
+            XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+            RootModel root = (RootModel) parser.parseStream(getInputStreamOf("undeclared-latin1-input.xml"));
+            RepeatedChildModel child = (RepeatedChildModel) root.children.get(0);
+            assertEquals(backend.toString(), "caf\u00e9", child.value);
+        }
+    }
+
+    @Test
+    public void testParseFile()
+            throws UnknownElementException, ParseException, UnexpectedChildException, IOException {
+        File file = copyToTemporaryFile("input.xml");
+        try {
+            for (XmlParserSettings.ReaderBackend backend : XmlParserSettings.ReaderBackend.values()) {
+                XmlParserSettings settings = new XmlParserSettingsBuilder().withReaderBackend(backend)
+                                                                           .build();
+                XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+                assertDemoModel((DemoModel) parser.parseFile(file));
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testParseFileChannel()
+            throws UnknownElementException, ParseException, UnexpectedChildException, IOException {
+        File file = copyToTemporaryFile("input.xml");
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            XmlStreamParser parser = newParser();
+            assertDemoModel((DemoModel) parser.parse(channel));
+            assertTrue("Channel is still open.", channel.isOpen());
+            assertEquals(0, channel.position());
+        } finally {
+            randomAccessFile.close();
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testParseInMemoryInput()
+            throws UnknownElementException, ParseException, UnexpectedChildException, IOException {
+        byte[] document = readBytesOf("input.xml");
+        // Surround the document with bytes that must not be parsed.
+        byte[] bytes = new byte[document.length + 20];
+        Arrays.fill(bytes, (byte) '<');
+        System.arraycopy(document, 0, bytes, 10, document.length);
+        byte[] original = bytes.clone();
+
+        for (XmlParserSettings.ReaderBackend backend : XmlParserSettings.ReaderBackend.values()) {
+            XmlParserSettings settings = new XmlParserSettingsBuilder().withReaderBackend(backend)
+                                                                       .build();
+            XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+            assertDemoModel((DemoModel) parser.parse(bytes, 10, document.length));
+            assertTrue("The array is not modified.", Arrays.equals(original, bytes));
+
+            ByteBuffer heapBuffer = ByteBuffer.wrap(bytes, 10, document.length);
+            assertDemoModel((DemoModel) parser.parse(heapBuffer));
+            assertEquals(10, heapBuffer.position());
+
+            ByteBuffer directBuffer = ByteBuffer.allocateDirect(document.length);
+            directBuffer.put(document).flip();
+            assertDemoModel((DemoModel) parser.parse(directBuffer));
+            assertEquals(0, directBuffer.position());
+
+            String text = new String(document, "UTF-8");
+            assertDemoModel((DemoModel) parser.parse(text));
+            assertDemoModel((DemoModel) parser.parse(new StringBuilder(text)));
+        }
+    }
+
+    @Test
+    public void testDefaultEntryPointsParseStreams()
+            throws UnknownElementException, ParseException, UnexpectedChildException, IOException {
+        final XmlStreamParser delegate = newParser();
+        XmlStreamParser parser = new XmlStreamParser() {
+            @Override
+            public Object parseStream(InputStream in)
+                    throws ParseException, UnknownElementException, UnexpectedChildException {
+                return delegate.parseStream(in);
+            }
+        };
+        byte[] document = readBytesOf("input.xml");
+
+        assertDemoModel((DemoModel) parser.parse(document, 0, document.length));
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(document.length);
+        directBuffer.put(document).flip();
+        assertDemoModel((DemoModel) parser.parse(directBuffer));
+        assertEquals(0, directBuffer.position());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertDemoModel((DemoModel) parser.parseParallel(document, 0, document.length,
+                                                             executor));
+        } finally {
+            executor.shutdown();
+        }
+        assertDemoModel((DemoModel) parser.parse(new String(document, "UTF-8")));
+
+        XmlDocumentIterator iterator = parser.parseAll(
+                Arrays.asList(toInputStream("<Child_Model My_String=\"a\"/>"),
+                              toInputStream("<Child_Model My_String=\"b\"/>")),
+                DIRECT_EXECUTOR, 1);
+        assertEquals("a", ((ChildModel) iterator.next()).myString);
+        assertEquals("b", ((ChildModel) iterator.next()).myString);
+        assertFalse(iterator.hasNext());
+
+        XmlAsyncParser asyncParser = parser.newAsyncParser();
+        assertFalse(asyncParser.feed(document, 0, 10));
+        assertFalse(asyncParser.feed(document, 10, document.length - 10));
+        assertDemoModel((DemoModel) asyncParser.endOfInput());
+    }
+
+    @Test
+    public void testParseCharSequenceWithNonAsciiText()
+            throws UnknownElementException, ParseException, UnexpectedChildException, IOException {
+        String text = new String(readBytesOf("markup-input.xml"), "UTF-8");
+        for (XmlParserSettings.ReaderBackend backend : XmlParserSettings.ReaderBackend.values()) {
+            XmlParserSettings settings = new XmlParserSettingsBuilder().withReaderBackend(backend)
+                                                                       .build();
+            XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+            RootModel root = (RootModel) parser.parse(text);
+            RepeatedChildModel third = (RepeatedChildModel) root.children.get(2);
+            assertEquals(backend.toString(), "\u65e5\u672c\u8a9e", third.value);
+            assertEquals(backend.toString(), "na\u00efve", third.textContent);
+        }
+    }
+
+    @Test
+    public void testBadReferencesAreParseExceptions()
+            throws UnknownElementException, UnexpectedChildException {
+        String[] documents = {
+                "<Setter_Model>a&bogus;b</Setter_Model>",
+                "<Setter_Model>a&#xZZ;b</Setter_Model>",
+                "<Child_Model My_String=\"a&bogus;b\"/>",
+                // Attributes the model does not map are checked too.
+                "<Child_Model Unmapped=\"a&bogus;b\"/>"
+        };
+        for (XmlParserSettings.ReaderBackend backend : XmlParserSettings.ReaderBackend.values()) {
+            XmlParserSettings settings = new XmlParserSettingsBuilder().withReaderBackend(backend)
+                                                                       .build();
+            XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+            for (String document : documents) {
+                try {
+                    parser.parseStream(toInputStream(document));
+                    fail(backend + ": Expected a ParseException for " + document);
+                } catch (ParseException e) {
+                    // expected
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidUtf8AndCharactersAreParseExceptions()
+            throws UnknownElementException, UnexpectedChildException {
+        byte[][] sequences = {
+                // Above U+10FFFF.
+                {(byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80},
+                {(byte) 0xF5, (byte) 0x80, (byte) 0x80, (byte) 0x80},
+                // Overlong encodings of NUL and '/'.
+                {(byte) 0xC0, (byte) 0x80},
+                {(byte) 0xE0, (byte) 0x80, (byte) 0xAF},
+                // An encoded surrogate.
+                {(byte) 0xED, (byte) 0xA0, (byte) 0x80}
+        };
+        String[] references = {"&#0;", "&#xD800;", "&#xFFFE;", "&#x110000;"};
+        List<byte[]> documents = new ArrayList<>();
+        for (byte[] sequence : sequences) {
+            documents.add(concat("<Setter_Model>a", sequence, "b</Setter_Model>"));
+            documents.add(concat("<Child_Model My_String=\"a", sequence, "b\"/>"));
+            documents.add(concat("<Setter_Model><![CDATA[a", sequence, "b]]></Setter_Model>"));
+        }
+        for (String reference : references) {
+            documents.add(concat("<Setter_Model>a", reference.getBytes(), "b</Setter_Model>"));
+            documents.add(concat("<Child_Model My_String=\"a", reference.getBytes(), "b\"/>"));
+        }
+
+        XmlParserSettings settings =
+                new XmlParserSettingsBuilder()
+                        .withReaderBackend(XmlParserSettings.ReaderBackend.BUILT_IN)
+                        .build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+        for (byte[] document : documents) {
+            try {
+                parser.parse(document, 0, document.length);
+                fail("Expected a ParseException for " + Arrays.toString(document));
+            } catch (ParseException e) {
+                // expected
+            }
+        }
+    }
+
+    private static byte[] concat(String prefix, byte[] middle, String suffix) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] prefixBytes = prefix.getBytes(Charset.forName("UTF-8"));
+        byte[] suffixBytes = suffix.getBytes(Charset.forName("UTF-8"));
+        out.write(prefixBytes, 0, prefixBytes.length);
+        out.write(middle, 0, middle.length);
+        out.write(suffixBytes, 0, suffixBytes.length);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testParseExceptionsReportTheFailingByte()
+            throws UnknownElementException, UnexpectedChildException {
+        XmlParserSettings settings =
+                new XmlParserSettingsBuilder()
+                        .withReaderBackend(XmlParserSettings.ReaderBackend.BUILT_IN)
+                        .build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+        try {
+            parser.parseStream(toInputStream("<Child_Model My_String='a&b'/>"));
+            fail("Expected a ParseException");
+        } catch (ParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("at byte offset 25."));
+        }
+    }
 
+    @Test
+    public void testNumericAttributes()
+            throws UnknownElementException, ParseException, UnexpectedChildException {
+        for (XmlParserSettings.ReaderBackend backend : XmlParserSettings.ReaderBackend.values()) {
+            XmlParserSettings settings = new XmlParserSettingsBuilder().withReaderBackend(backend)
+                                                                       .build();
+            XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+            DemoModel model = (DemoModel) parser.parseStream(getInputStreamOf("numeric-input.xml"));
+
+            assertEquals(new BigDecimal("-12345678901234567890.0001"), model.myBigDecimal);
+            assertTrue(model.myPrimitiveBoolean);
+            assertFalse(model.myBoxedBoolean);
+            assertEquals(Byte.MIN_VALUE, model.myPrimitiveByte);
+            assertEquals(-1250.0, model.myPrimitiveDouble, 0);
+            assertEquals(0.30000000000000004, model.myBoxedDouble, 0);
+            assertEquals(Float.MAX_VALUE, model.myPrimitiveFloat, 0);
+            assertEquals(0f, model.myBoxedFloat, 0);
+            assertEquals(-42, model.myPrimitiveInt);
+            assertEquals(Integer.MAX_VALUE, (int) model.myBoxedInt);
+            assertEquals(Long.MIN_VALUE, model.myPrimitiveLong);
+            assertEquals(Short.MAX_VALUE, model.myPrimitiveShort);
+        }
+    }
+
+    @Test
+    public void testParserMapLookupByCharacters() {
+        ParserMap parserMap = new XmlParserContext(newSettingsBuilder().build())
+                .getParserMap();
+        assertTrue(parserMap.keySet().contains("Root_Model"));
+        for (String name : parserMap.keySet()) {
+            XmlElementParser<?> parser = parserMap.get(name);
+            assertNotNull(name, parser);
+            assertSame(name, parser, parserMap.get(new StringBuilder(name)));
+            char[] chars = ("<" + name + ">").toCharArray();
+            assertSame(name, parser, parserMap.get(chars, 1, name.length()));
+        }
+        assertNull(parserMap.get(new StringBuilder("Root_Modem")));
+        assertNull(parserMap.get("Root_Model".toCharArray(), 0, 9));
+        assertNull(parserMap.get(""));
+    }
+
+    @Test
+    public void testNumberUtilsMatchesTheJdk() {
+        String[] inputs = {"42", "-0", "+127", "-129", "32768", "\u0661\u0662", "-\uff19",
+                "\u0967\u0966\u0966", "2147483648", "9223372036854775808", "1a", "", "-"};
+        for (String input : inputs) {
+            assertEquals(input, parseWithJdk(input, 'b'), parseWithNumberUtils(input, 'b'));
+            assertEquals(input, parseWithJdk(input, 's'), parseWithNumberUtils(input, 's'));
+            assertEquals(input, parseWithJdk(input, 'i'), parseWithNumberUtils(input, 'i'));
+            assertEquals(input, parseWithJdk(input, 'l'), parseWithNumberUtils(input, 'l'));
+        }
+    }
+
+    /**
+     * @return The value parsed from {@code input}, or the message of the exception thrown for it.
+     */
+    private static Object parseWithJdk(String input, char type) {
+        try {
+            switch (type) {
+                case 'b':
+                    return Byte.parseByte(input);
+                case 's':
+                    return Short.parseShort(input);
+                case 'i':
+                    return Integer.parseInt(input);
+                default:
+                    return Long.parseLong(input);
+            }
+        } catch (NumberFormatException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static Object parseWithNumberUtils(String input, char type) {
+        CharSequence chars = new StringBuilder(input);
+        try {
+            switch (type) {
+                case 'b':
+                    return NumberUtils.parseByte(chars);
+                case 's':
+                    return NumberUtils.parseShort(chars);
+                case 'i':
+                    return NumberUtils.parseInt(chars, 0, chars.length());
+                default:
+                    return NumberUtils.parseLong(chars);
+            }
+        } catch (NumberFormatException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Test
+    public void testSymbolTableReturnsCanonicalNames() {
+        SymbolTable symbolTable = new SymbolTable();
+        String name = new String("Root_Model");
+        assertSame("Root_Model", symbolTable.intern(name));
+        assertSame("Root_Model", symbolTable.getQualifiedName(null, name));
+        assertSame("Root_Model", symbolTable.getQualifiedName("", new String(name)));
+        assertSame("my:Root_Model", symbolTable.getQualifiedName("my", name));
+        assertSame("my:Root_Model", symbolTable.getQualifiedName(new String("my"), name));
+        assertNull(symbolTable.getQualifiedName(null, null));
+    }
+
+    @Test
+    public void testFullSymbolTableReturnsNewNamesAsTheyAre() {
+        SymbolTable symbolTable = new SymbolTable();
+        assertSame("Root_Model", symbolTable.intern(new String("Root_Model")));
+        for (int i = 0; i < 5000; i++) {
+            symbolTable.intern("name" + i);
+        }
+        String newName = new String("Child_Model");
+        assertSame(newName, symbolTable.intern(newName));
+        // Names learned before the table filled up are still canonical.
+        assertSame("Root_Model", symbolTable.intern(new String("Root_Model")));
+    }
+
+    private void assertDemoModel(DemoModel model) {
         assertTrue(model.myBoxedBoolean);
         assertTrue(model.myPrimitiveBoolean);
         assertEquals(new BigDecimal(0.5), model.myBigDecimal);
@@ -93,7 +700,7 @@ public class XmlParserTest {
     @Test
     public void testAlternateAttributes()
             throws ParseException, UnexpectedChildException, UnknownElementException {
-        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser();
+        XmlStreamParser parser = newParser();
         InputStream in = getInputStreamOf("alternate-attribute-input.xml");
 
         RootModel root = (RootModel) parser.parseStream(in);
@@ -104,10 +711,23 @@ public class XmlParserTest {
         assertEquals(2, ((AlternateAttributeModel) root.children.get(3)).anInt);
     }
 
+    @Test
+    public void testLosingAlternateAttributesAreNotParsed()
+            throws ParseException, UnexpectedChildException, UnknownElementException {
+        XmlStreamParser parser = newParser();
+        InputStream in = getInputStreamOf("alternate-attribute-unparsed-input.xml");
+
+        // The values under int2 and int3 would throw a NumberFormatException if they were parsed.
+        RootModel root = (RootModel) parser.parseStream(in);
+        assertEquals(2, root.children.size());
+        assertEquals(1, ((AlternateAttributeModel) root.children.get(0)).anInt);
+        assertEquals(2, ((AlternateAttributeModel) root.children.get(1)).anInt);
+    }
+
     @Test
     public void testSetters()
             throws ParseException, UnexpectedChildException, UnknownElementException {
-        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser();
+        XmlStreamParser parser = newParser();
         InputStream in = getInputStreamOf("setter-input.xml");
 
         SetterModel setterModel = (SetterModel) parser.parseStream(in);
@@ -122,7 +742,7 @@ public class XmlParserTest {
     @Test
     public void testOtherPackage()
             throws ParseException, UnexpectedChildException, UnknownElementException {
-        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser();
+        XmlStreamParser parser = newParser();
         InputStream in = getInputStreamOf("other-package-input.xml");
 
         ThisPackageModel root = (ThisPackageModel) parser.parseStream(in);
@@ -132,7 +752,7 @@ public class XmlParserTest {
     @Test
     public void testPostParse()
             throws ParseException, UnexpectedChildException, UnknownElementException {
-        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser();
+        XmlStreamParser parser = newParser();
         InputStream in = getInputStreamOf("post-parse-input.xml");
 
         PostParseModel model = (PostParseModel) parser.parseStream(in);
@@ -143,9 +763,9 @@ public class XmlParserTest {
     public void testIgnoringUnknownElementsDoesNotThrowException()
             throws ParseException, UnexpectedChildException {
         XmlParserSettings settings =
-                new XmlParserSettingsBuilder().withUnknownElementHandling(XmlParserSettings
-                                                                                  .UnknownElementHandling.IGNORE)
-                                              .build();
+                newSettingsBuilder().withUnknownElementHandling(XmlParserSettings
+                                                                        .UnknownElementHandling.IGNORE)
+                                    .build();
         XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
         InputStream in = getInputStreamOf("unknown-elements-input.xml");
 
@@ -163,9 +783,9 @@ public class XmlParserTest {
     public void testUnknownElementThrowsException()
             throws ParseException, UnexpectedChildException {
         XmlParserSettings settings =
-                new XmlParserSettingsBuilder().withUnknownElementHandling(XmlParserSettings
-                                                                                  .UnknownElementHandling.ERROR)
-                                              .build();
+                newSettingsBuilder().withUnknownElementHandling(XmlParserSettings
+                                                                        .UnknownElementHandling.ERROR)
+                                    .build();
         XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
         InputStream in = getInputStreamOf("unknown-elements-input.xml");
 
@@ -181,7 +801,7 @@ public class XmlParserTest {
     public void testIgnoringUnexpectedChildDoesNotThrowException()
             throws ParseException, UnknownElementException {
         XmlParserSettings settings =
-                new XmlParserSettingsBuilder().ignoreUnexpectedChildren(true).build();
+                newSettingsBuilder().ignoreUnexpectedChildren(true).build();
         XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
         InputStream in = getInputStreamOf("unexpected-child-input.xml");
 
@@ -199,7 +819,7 @@ public class XmlParserTest {
     public void testUnexpectedChildThrowsException()
             throws UnknownElementException, ParseException {
         XmlParserSettings settings =
-                new XmlParserSettingsBuilder().ignoreUnexpectedChildren(false).build();
+                newSettingsBuilder().ignoreUnexpectedChildren(false).build();
         XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
         InputStream in = getInputStreamOf("unexpected-child-input.xml");
 
@@ -215,11 +835,11 @@ public class XmlParserTest {
     public void testUnknownElementCreatesUnknownModel()
             throws ParseException, UnexpectedChildException, UnknownElementException {
         XmlParserSettings settings =
-                new XmlParserSettingsBuilder().withUnknownElementHandling(XmlParserSettings
-                                                                                  .UnknownElementHandling.PARSE)
-                                              .withUnknownElementClass(UnknownModel.class)
-                                              .ignoreUnexpectedChildren(false)
-                                              .build();
+                newSettingsBuilder().withUnknownElementHandling(XmlParserSettings
+                                                                        .UnknownElementHandling.PARSE)
+                                    .withUnknownElementClass(UnknownModel.class)
+                                    .ignoreUnexpectedChildren(false)
+                                    .build();
         XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
         InputStream in = getInputStreamOf("unknown-elements-input.xml");
 
@@ -256,7 +876,7 @@ public class XmlParserTest {
             }
         };
         XmlParserSettings settings =
-                new XmlParserSettingsBuilder().addFilter(newLineFilter).addFilter(hFilter).build();
+                newSettingsBuilder().addFilter(newLineFilter).addFilter(hFilter).build();
         XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
         InputStream in = getInputStreamOf("unfiltered-input.xml");
 
@@ -269,7 +889,7 @@ public class XmlParserTest {
     @Test
     public void testMissingAttributesAreNotSet()
             throws ParseException, UnexpectedChildException, UnknownElementException {
-        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser();
+        XmlStreamParser parser = newParser();
         InputStream in = getInputStreamOf("missing-attributes.xml");
 
         DemoModel model = (DemoModel) parser.parseStream(in);
@@ -300,9 +920,9 @@ public class XmlParserTest {
     public void testPartitionedPackageModelNotFoundWhenNotIncluded()
             throws ParseException, UnexpectedChildException {
         XmlParserSettings settings =
-                new XmlParserSettingsBuilder().withUnknownElementHandling(XmlParserSettings
-                                                                                  .UnknownElementHandling.ERROR)
-                                              .build();
+                newSettingsBuilder().withUnknownElementHandling(XmlParserSettings
+                                                                        .UnknownElementHandling.ERROR)
+                                    .build();
         XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
         InputStream in = getInputStreamOf("partitioned-model.xml");
         boolean exceptionCaught = false;
@@ -319,11 +939,11 @@ public class XmlParserTest {
     public void testPartitionedPackageModelFoundWhenIncluded()
             throws ParseException, UnexpectedChildException, UnknownElementException {
         XmlParserSettings settings =
-                new XmlParserSettingsBuilder().withUnknownElementHandling(XmlParserSettings
-                                                                                  .UnknownElementHandling.ERROR)
-                                              .withPartitions(PartitionedModel.class.getPackage()
-                                                                                    .getName())
-                                              .build();
+                newSettingsBuilder().withUnknownElementHandling(XmlParserSettings
+                                                                        .UnknownElementHandling.ERROR)
+                                    .withPartitions(PartitionedModel.class.getPackage()
+                                                                          .getName())
+                                    .build();
         XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
         InputStream in = getInputStreamOf("partitioned-model.xml");
         PartitionedModel partitionedModel = (PartitionedModel) parser.parseStream(in);
@@ -335,11 +955,11 @@ public class XmlParserTest {
     public void testDefaultNotFoundWhenNotIncluded()
             throws ParseException, UnexpectedChildException {
         XmlParserSettings settings =
-                new XmlParserSettingsBuilder().withUnknownElementHandling(XmlParserSettings
-                                                                                  .UnknownElementHandling.ERROR)
-                                              .withPartitions(PartitionedModel.class.getPackage()
-                                                                                    .getName())
-                                              .build();
+                newSettingsBuilder().withUnknownElementHandling(XmlParserSettings
+                                                                        .UnknownElementHandling.ERROR)
+                                    .withPartitions(PartitionedModel.class.getPackage()
+                                                                          .getName())
+                                    .build();
         XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
         InputStream in = getInputStreamOf("input.xml");
         boolean exceptionCaught = false;
@@ -356,14 +976,14 @@ public class XmlParserTest {
     public void testMultiplePackages()
             throws ParseException, UnexpectedChildException, UnknownElementException {
         XmlParserSettings settings =
-                new XmlParserSettingsBuilder().withUnknownElementHandling(XmlParserSettings
-                                                                                  .UnknownElementHandling.PARSE)
-                                              .withUnknownElementClass(UnknownModel.class)
-                                              .withPartitions(PartitionedModel.class.getPackage()
-                                                                                    .getName(),
-                                                              XmlParserSettingsBuilder
-                                                                      .DEFAULT_PACKAGE)
-                                              .build();
+                newSettingsBuilder().withUnknownElementHandling(XmlParserSettings
+                                                                        .UnknownElementHandling.PARSE)
+                                    .withUnknownElementClass(UnknownModel.class)
+                                    .withPartitions(PartitionedModel.class.getPackage()
+                                                                          .getName(),
+                                                    XmlParserSettingsBuilder
+                                                            .DEFAULT_PACKAGE)
+                                    .build();
         XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
         InputStream in = getInputStreamOf("multiple-partitions.xml");
 
@@ -377,20 +997,1188 @@ public class XmlParserTest {
     }
 
     @Test
-    public void testDuplicateMappingInSeparateRootPackagesThrowsException() {
+    public void testElementListenersReceiveElementsWithoutRetainingThem()
+            throws ParseException, UnexpectedChildException, UnknownElementException {
+        final List<String> values = new ArrayList<>();
+        final List<Object> childModels = new ArrayList<>();
         XmlParserSettings settings =
-                new XmlParserSettingsBuilder().withPartitions(PartitionedModel.class.getPackage()
-                                                                                    .getName(),
-                                                              DuplicatePartitionedModel.class
-                                                                      .getPackage().getName())
-                                              .build();
-        boolean exceptionCaught = false;
+                newSettingsBuilder()
+                        .withElementListener(RepeatedChildModel.class,
+                                             new XmlElementListener<RepeatedChildModel>() {
+                                                 @Override
+                                                 public void onElement(
+                                                         RepeatedChildModel element) {
+                                                     values.add(element.value);
+                                                 }
+                                             })
+                        .withElementListener("Child_Model", new XmlElementListener<Object>() {
+                            @Override
+                            public void onElement(Object element) {
+                                childModels.add(element);
+                            }
+                        })
+                        .build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+        DemoModel model = (DemoModel) parser.parseStream(getInputStreamOf("input.xml"));
+
+        assertEquals(Arrays.asList("a", "b", "c"), values);
+        assertTrue(model.repeatedChildModels.isEmpty());
+        assertEquals(1, childModels.size());
+        assertNull(model.myChildModel);
+    }
+
+    @Test
+    public void testElementListenersWithRetainedElements()
+            throws ParseException, UnexpectedChildException, UnknownElementException {
+        final List<Object> elements = new ArrayList<>();
+        XmlParserSettings settings =
+                newSettingsBuilder()
+                        .withElementListener(Object.class, new XmlElementListener<Object>() {
+                            @Override
+                            public void onElement(Object element) {
+                                elements.add(element);
+                            }
+                        })
+                        .retainElementsWithListeners(true)
+                        .build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+        DemoModel model = (DemoModel) parser.parseStream(getInputStreamOf("input.xml"));
+
+        assertEquals(3, model.repeatedChildModels.size());
+        assertTrue(elements.containsAll(model.repeatedChildModels));
+        assertTrue(elements.contains(model.myChildModel));
+        // Children are reported before their parents, so the root comes last.
+        assertSame(model, elements.get(elements.size() - 1));
+    }
+
+    @Test
+    public void testElementListenersNeverDropTheRoot()
+            throws ParseException, UnexpectedChildException, UnknownElementException, IOException {
+        final List<Object> elements = new ArrayList<>();
+        XmlParserSettings settings =
+                newSettingsBuilder()
+                        .withElementListener(Object.class, new XmlElementListener<Object>() {
+                            @Override
+                            public void onElement(Object element) {
+                                elements.add(element);
+                            }
+                        })
+                        .build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+        DemoModel model = (DemoModel) parser.parseStream(getInputStreamOf("input.xml"));
+        assertNotNull(model);
+        assertTrue(model.repeatedChildModels.isEmpty());
+        assertNull(model.myChildModel);
+        assertSame(model, elements.get(elements.size() - 1));
+
+        byte[] bytes = readBytesOf("input.xml");
+        ForkJoinPool pool = new ForkJoinPool(2);
         try {
-            XmlStreamParserFactory.newXmlStreamParser(settings);
-        } catch (IllegalArgumentException e) {
-            exceptionCaught = true;
+            assertNotNull(parser.parseParallel(bytes, 0, bytes.length, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testProjectedPaths()
+            throws ParseException, UnexpectedChildException, UnknownElementException {
+        XmlParserSettings settings =
+                newSettingsBuilder().withProjectedPaths("wcl:Demo_Model/Child_Model")
+                                    .build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+        DemoModel model = (DemoModel) parser.parseStream(getInputStreamOf("input.xml"));
+
+        // The root is an ancestor of a projected path, so it is parsed with its attributes.
+        assertEquals("Bob", model.myString);
+        assertNotNull(model.myChildModel);
+        assertEquals(5, model.myChildModel.myInt);
+        assertTrue(model.repeatedChildModels.isEmpty());
+
+        ProjectionStatistics statistics = settings.getProjection().getStatistics();
+        assertEquals(1, statistics.getDocumentCount());
+        assertEquals(2, statistics.getParsedElementCount());
+        assertEquals(3, statistics.getSkippedElementCount());
+    }
+
+    @Test
+    public void testProjectedClasses()
+            throws ParseException, UnexpectedChildException, UnknownElementException {
+        final List<String> values = new ArrayList<>();
+        XmlParserSettings settings =
+                newSettingsBuilder()
+                        .withProjectedClasses(RepeatedChildModel.class)
+                        .withElementListener(RepeatedChildModel.class,
+                                             new XmlElementListener<RepeatedChildModel>() {
+                                                 @Override
+                                                 public void onElement(
+                                                         RepeatedChildModel element) {
+                                                     values.add(element.value);
+                                                 }
+                                             })
+                        .build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+        assertNull(parser.parseStream(getInputStreamOf("input.xml")));
+        assertEquals(Arrays.asList("a", "b", "c"), values);
+        ProjectionStatistics statistics = settings.getProjection().getStatistics();
+        assertEquals(3, statistics.getParsedElementCount());
+        assertEquals(2, statistics.getSkippedElementCount());
+    }
+
+    @Test
+    public void testStreamElementsAtPath() throws ParseException {
+        XmlElementStreamParser parser = newElementStreamParser();
+        Iterator<ChildModel> iterator = parser.stream(getInputStreamOf("streamed-records.xml"),
+                                                      "Root_Model/Child_Model",
+                                                      ChildModel.class);
+
+        List<String> strings = new ArrayList<>();
+        int sum = 0;
+        while (iterator.hasNext()) {
+            ChildModel child = iterator.next();
+            strings.add(child.myString);
+            sum += child.myInt;
+        }
+        assertEquals(Arrays.asList("first", "second", "third"), strings);
+        assertEquals(6, sum);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testStreamManyElements() throws ParseException {
+        int count = 20000;
+        StringBuilder sb = new StringBuilder("<feed>\n");
+        for (int i = 0; i < count; i++) {
+            sb.append("<Child_Model My_String=\"").append(i).append("\" wcl:My_Int=\"")
+              .append(i).append("\"/>\n");
+        }
+        sb.append("</feed>");
+        InputStream in = new ByteArrayInputStream(sb.toString().getBytes(Charset.forName("UTF-8")));
+
+        XmlElementStreamParser parser = newElementStreamParser();
+        XmlElementIterator<ChildModel> iterator =
+                parser.stream(in, "/feed/Child_Model", ChildModel.class);
+        int i = 0;
+        while (iterator.hasNext()) {
+            assertEquals(i, iterator.next().myInt);
+            i++;
+        }
+        assertEquals(count, i);
+    }
+
+    @Test
+    public void testStreamWithWrongTypeThrows() throws ParseException {
+        XmlElementStreamParser parser = newElementStreamParser();
+        XmlElementIterator<RootModel> iterator =
+                parser.stream(getInputStreamOf("streamed-records.xml"),
+                              "Root_Model/Child_Model",
+                              RootModel.class);
+        try {
+            iterator.next();
+            fail("Expected an UncheckedParseException");
+        } catch (UncheckedParseException e) {
+            assertTrue(e.getCause() instanceof ParseException);
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testStreamCanBeClosedEarly() throws ParseException {
+        final boolean[] closed = new boolean[1];
+        InputStream in = new FilterInputStream(getInputStreamOf("streamed-records.xml")) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        };
+
+        XmlElementStreamParser parser = newElementStreamParser();
+        XmlElementIterator<ChildModel> iterator =
+                parser.stream(in, "Root_Model/Child_Model", ChildModel.class);
+        assertEquals("first", iterator.next().myString);
+        iterator.close();
+        assertTrue(closed[0]);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testModelPoolRecyclesStreamedElements() throws ParseException {
+        int count = 1000;
+        StringBuilder sb = new StringBuilder("<feed>\n");
+        for (int i = 0; i < count; i++) {
+            sb.append("<Recyclable_Child_Model My_Int=\"").append(i).append('"');
+            if (i % 2 == 0) {
+                sb.append(" My_String=\"").append(i).append('"');
+            }
+            sb.append("/>\n");
+        }
+        sb.append("</feed>");
+
+        XmlParserSettings settings = newSettingsBuilder()
+                .withModelPool(2, RecyclableChildModel.class)
+                .build();
+        XmlElementStreamParser parser = XmlStreamParserFactory.newXmlElementStreamParser(settings);
+        ModelPool pool = settings.getModelPool();
+        XmlElementIterator<RecyclableChildModel> iterator =
+                parser.stream(toInputStream(sb.toString()), "feed/Recyclable_Child_Model",
+                              RecyclableChildModel.class);
+        Set<RecyclableChildModel> instances =
+                Collections.newSetFromMap(new IdentityHashMap<RecyclableChildModel, Boolean>());
+        int i = 0;
+        while (iterator.hasNext()) {
+            RecyclableChildModel child = iterator.next();
+            instances.add(child);
+            assertEquals(i, child.myInt);
+            // Attributes that are missing from this element are back to their initial value, not
+            // left over from the last.
+            assertEquals(i % 2 == 0 ? String.valueOf(i) : "none", child.myString);
+            pool.release(child);
+            i++;
+        }
+        assertEquals(count, i);
+        // The iterator parses an element ahead of the one that was released last.
+        assertTrue(String.valueOf(instances.size()), instances.size() <= 3);
+        assertEquals(1, pool.getIdleCount(RecyclableChildModel.class));
+    }
+
+    @Test
+    public void testModelPoolResetsToInitialValues()
+            throws ParseException, UnexpectedChildException, UnknownElementException {
+        XmlParserSettings settings = newSettingsBuilder()
+                .withModelPool(4, RecyclableRootModel.class, RecyclableChildModel.class)
+                .build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+        ModelPool pool = settings.getModelPool();
+
+        RecyclableRootModel root =
+                (RecyclableRootModel) parser.parseStream(getInputStreamOf("recyclable-input.xml"));
+        List<RecyclableChildModel> children = root.children;
+        assertEquals(2, root.count);
+        assertEquals(2, children.size());
+        RecyclableChildModel first = children.get(0);
+        assertEquals("first", first.myString);
+        assertEquals(1, first.myInt);
+        assertEquals("none", children.get(1).myString);
+
+        for (RecyclableChildModel child : children) {
+            pool.release(child);
+        }
+        assertEquals("none", first.myString);
+        assertEquals(-1, first.myInt);
+        pool.release(root);
+        assertTrue(children.isEmpty());
+        // Setters cannot be read back, so they are called with the default value of their type.
+        assertEquals(0, root.count);
+        assertEquals(1, pool.getIdleCount(RecyclableRootModel.class));
+        assertEquals(2, pool.getIdleCount(RecyclableChildModel.class));
+
+        RecyclableRootModel recycled = (RecyclableRootModel) parser.parseStream(toInputStream(
+                "<Recyclable_Root_Model><Recyclable_Child_Model My_Int=\"3\"/>"
+                        + "</Recyclable_Root_Model>"));
+        assertSame(root, recycled);
+        assertSame(children, recycled.children);
+        assertEquals(0, pool.getIdleCount(RecyclableRootModel.class));
+        assertEquals(1, children.size());
+        assertEquals("none", children.get(0).myString);
+        assertEquals(3, children.get(0).myInt);
+
+        try {
+            pool.release(new ChildModel());
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testModelPoolRequiresRecyclableClasses() {
+        try {
+            newSettingsBuilder().withModelPool(4, PostParseModel.class);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("XmlRecyclable"));
+        }
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws ParseException, IOException {
+        int count = 2000;
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<feed xmlns:wcl=\"urn:workday\">\n<records>\n");
+        for (int i = 0; i < count; i++) {
+            sb.append("<Child_Model My_String=\"caf\u00e9 ").append(i).append("\" wcl:My_Int=\"")
+              .append(i).append("\"/>\n");
+        }
+        sb.append("</records>\n</feed>");
+        final byte[] bytes = sb.toString().getBytes("UTF-8");
+
+        XmlParserSettings settings =
+                new XmlParserSettingsBuilder()
+                        .withReaderBackend(XmlParserSettings.ReaderBackend.BUILT_IN)
+                        .build();
+        XmlElementStreamParser parser = XmlStreamParserFactory.newXmlElementStreamParser(settings);
+        XmlElementIterator<ChildModel> iterator =
+                parser.stream(new ByteArrayInputStream(bytes), "feed/records/Child_Model",
+                              ChildModel.class);
+        assertNull(iterator.getCheckpoint());
+        for (int i = 0; i < 700; i++) {
+            iterator.next();
+        }
+        // The next element has already been looked at, but not returned yet.
+        assertTrue(iterator.hasNext());
+        XmlCheckpoint checkpoint = iterator.getCheckpoint();
+        iterator.close();
+        assertEquals(700, checkpoint.getElementCount());
+        assertEquals(Arrays.asList("feed", "records"), Arrays.asList(checkpoint.getOpenElements()));
+        assertEquals('<', bytes[(int) checkpoint.getOffset()]);
+
+        final int[] bytesRead = new int[1];
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                bytesRead[0] += Math.max(read, 0);
+                return read;
+            }
+        };
+        XmlElementIterator<ChildModel> resumed =
+                parser.resume(in, "feed/records/Child_Model", ChildModel.class, checkpoint);
+        assertSame(checkpoint, resumed.getCheckpoint());
+        int i = 700;
+        while (resumed.hasNext()) {
+            ChildModel child = resumed.next();
+            assertEquals(i, child.myInt);
+            assertEquals("caf\u00e9 " + i, child.myString);
+            i++;
+            if (i == 1500) {
+                // Checkpoints of a resumed parse are relative to the start of the document.
+                XmlCheckpoint later = resumed.getCheckpoint();
+                assertEquals(1500, later.getElementCount());
+                ChildModel next = parser.resume(new ByteArrayInputStream(bytes),
+                                                "feed/records/Child_Model",
+                                                ChildModel.class,
+                                                later).next();
+                assertEquals(1500, next.myInt);
+            }
+        }
+        assertEquals(count, i);
+        assertEquals(bytes.length - checkpoint.getOffset(), bytesRead[0]);
+        assertEquals(count, resumed.getCheckpoint().getElementCount());
+    }
+
+    @Test
+    public void testResumeFromCheckpointWithOtherElements() throws ParseException, IOException {
+        XmlParserSettings settings =
+                new XmlParserSettingsBuilder()
+                        .withReaderBackend(XmlParserSettings.ReaderBackend.BUILT_IN)
+                        .build();
+        XmlElementStreamParser parser = XmlStreamParserFactory.newXmlElementStreamParser(settings);
+        XmlElementIterator<ChildModel> iterator =
+                parser.stream(getInputStreamOf("streamed-records.xml"),
+                              "Root_Model/Child_Model",
+                              ChildModel.class);
+        assertEquals("first", iterator.next().myString);
+        XmlCheckpoint checkpoint = iterator.getCheckpoint();
+        iterator.close();
+
+        XmlElementIterator<ChildModel> resumed =
+                parser.resume(getInputStreamOf("streamed-records.xml"),
+                              "Root_Model/Child_Model",
+                              ChildModel.class,
+                              checkpoint);
+        assertEquals("second", resumed.next().myString);
+        assertEquals("third", resumed.next().myString);
+        assertFalse(resumed.hasNext());
+
+        try {
+            parser.resume(getInputStreamOf("streamed-records.xml"),
+                          "Root_Model/Other_Element/Child_Model",
+                          ChildModel.class,
+                          checkpoint);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        XmlCheckpoint beyondTheEnd = new XmlCheckpoint(1 << 20, new String[]{"Root_Model"}, 1);
+        try {
+            parser.resume(new ByteArrayInputStream(readBytesOf("streamed-records.xml")),
+                          "Root_Model/Child_Model",
+                          ChildModel.class,
+                          beyondTheEnd);
+            fail("Expected a ParseException");
+        } catch (ParseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNoCheckpointsWithoutByteOffsets() throws ParseException {
+        XmlParserSettings settings =
+                new XmlParserSettingsBuilder()
+                        .withReaderBackend(XmlParserSettings.ReaderBackend.PULL_PARSER)
+                        .build();
+        XmlElementStreamParser parser = XmlStreamParserFactory.newXmlElementStreamParser(settings);
+        XmlElementIterator<ChildModel> iterator =
+                parser.stream(getInputStreamOf("streamed-records.xml"),
+                              "Root_Model/Child_Model",
+                              ChildModel.class);
+        assertEquals("first", iterator.next().myString);
+        assertNull(iterator.getCheckpoint());
+        iterator.close();
+    }
+
+    @Test
+    public void testPublishReadsOnlyWhatIsRequested() throws IOException {
+        int count = 20000;
+        StringBuilder sb = new StringBuilder("<feed>\n");
+        for (int i = 0; i < count; i++) {
+            sb.append("<Child_Model My_String=\"").append(i).append("\" wcl:My_Int=\"")
+              .append(i).append("\"/>\n");
+        }
+        sb.append("</feed>");
+        byte[] bytes = sb.toString().getBytes("UTF-8");
+        final int[] bytesRead = new int[1];
+        final boolean[] closed = new boolean[1];
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                bytesRead[0] += Math.max(read, 0);
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        };
+
+        XmlElementStreamParser parser = newElementStreamParser();
+        RecordingSubscriber<ChildModel> subscriber = new RecordingSubscriber<>();
+        parser.publish(in, "feed/Child_Model", ChildModel.class, DIRECT_EXECUTOR)
+              .subscribe(subscriber);
+        assertTrue(subscriber.items.isEmpty());
+
+        subscriber.subscription.request(2);
+        assertEquals(2, subscriber.items.size());
+        assertEquals(1, subscriber.items.get(1).myInt);
+        assertTrue(bytesRead[0] < bytes.length / 10);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(count, subscriber.items.size());
+        assertEquals(count - 1, subscriber.items.get(count - 1).myInt);
+        assertTrue(subscriber.completed);
+        assertNull(subscriber.error);
+        assertTrue(closed[0]);
+    }
+
+    @Test
+    public void testPublishCanBeCancelled() {
+        final boolean[] closed = new boolean[1];
+        InputStream in = new FilterInputStream(getInputStreamOf("streamed-records.xml")) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        };
+
+        XmlElementStreamParser parser = newElementStreamParser();
+        RecordingSubscriber<ChildModel> subscriber = new RecordingSubscriber<ChildModel>() {
+            @Override
+            public void onNext(ChildModel item) {
+                super.onNext(item);
+                subscription.cancel();
+            }
+        };
+        parser.publish(in, "Root_Model/Child_Model", ChildModel.class, DIRECT_EXECUTOR)
+              .subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(1, subscriber.items.size());
+        assertEquals("first", subscriber.items.get(0).myString);
+        assertFalse(subscriber.completed);
+        assertTrue(closed[0]);
+    }
+
+    @Test
+    public void testPublishReportsErrors() {
+        XmlElementStreamParser parser = newElementStreamParser();
+        XmlElementPublisher<RootModel> publisher =
+                parser.publish(getInputStreamOf("streamed-records.xml"),
+                               "Root_Model/Child_Model",
+                               RootModel.class,
+                               DIRECT_EXECUTOR);
+        RecordingSubscriber<RootModel> subscriber = new RecordingSubscriber<>();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        assertTrue(subscriber.items.isEmpty());
+        assertTrue(subscriber.error instanceof ParseException);
+
+        // The document can only be read once.
+        RecordingSubscriber<RootModel> secondSubscriber = new RecordingSubscriber<>();
+        publisher.subscribe(secondSubscriber);
+        assertNotNull(secondSubscriber.subscription);
+        assertTrue(secondSubscriber.error instanceof IllegalStateException);
+
+        RecordingSubscriber<ChildModel> invalidSubscriber = new RecordingSubscriber<>();
+        parser.publish(getInputStreamOf("streamed-records.xml"),
+                       "Root_Model/Child_Model",
+                       ChildModel.class,
+                       DIRECT_EXECUTOR).subscribe(invalidSubscriber);
+        invalidSubscriber.subscription.request(0);
+        assertTrue(invalidSubscriber.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void testPublishOnAnotherThread() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final List<ChildModel> received = Collections.synchronizedList(new ArrayList<ChildModel>());
+            final CountDownLatch done = new CountDownLatch(1);
+            XmlElementStreamParser parser = newElementStreamParser();
+            parser.publish(getInputStreamOf("streamed-records.xml"),
+                           "Root_Model/Child_Model",
+                           ChildModel.class,
+                           executor).subscribe(new RecordingSubscriber<ChildModel>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    super.onSubscribe(subscription);
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(ChildModel item) {
+                    received.add(item);
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onComplete() {
+                    done.countDown();
+                }
+            });
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(3, received.size());
+            assertEquals("third", received.get(2).myString);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static class RecordingSubscriber<T> implements Flow.Subscriber<T> {
+
+        Flow.Subscription subscription;
+        final List<T> items = new ArrayList<>();
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    @Test
+    public void testParseParallel()
+            throws ParseException, UnexpectedChildException, UnknownElementException, IOException {
+        int count = 20000;
+        byte[] bytes = newLargeDemoDocument(count);
+        final Set<Thread> listenerThreads = Collections.synchronizedSet(new HashSet<Thread>());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (XmlParserSettings.ReaderBackend backend : XmlParserSettings.ReaderBackend.values()) {
+                XmlParserSettings settings =
+                        new XmlParserSettingsBuilder()
+                                .withReaderBackend(backend)
+                                .withElementListener(RepeatedChildModel.class,
+                                                     new XmlElementListener<RepeatedChildModel>() {
+                                                         @Override
+                                                         public void onElement(
+                                                                 RepeatedChildModel element) {
+                                                             listenerThreads.add(
+                                                                     Thread.currentThread());
+                                                         }
+                                                     })
+                                .retainElementsWithListeners(true)
+                                .build();
+                XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+                listenerThreads.clear();
+                assertLargeDemoModel((DemoModel) parser.parseParallel(bytes, 0, bytes.length, pool), count);
+                assertFalse("The children are parsed by the pool.",
+                            listenerThreads.contains(Thread.currentThread()));
+
+                // Too small to be split.
+                byte[] small = readBytesOf("input.xml");
+                assertDemoModel((DemoModel) parser.parseParallel(small, 0, small.length, pool));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParseFileChannelParallel()
+            throws ParseException, UnexpectedChildException, UnknownElementException, IOException {
+        int count = 20000;
+        File file = File.createTempFile("autoparse", ".xml");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(newLargeDemoDocument(count));
+        } finally {
+            out.close();
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            XmlStreamParser parser = newParser();
+            assertLargeDemoModel((DemoModel) parser.parseParallel(channel, pool), count);
+            assertTrue("Channel is still open.", channel.isOpen());
+            assertEquals(0, channel.position());
+        } finally {
+            pool.shutdown();
+            randomAccessFile.close();
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testParseParallelThrowsErrorsOfChildren()
+            throws ParseException, UnexpectedChildException, IOException {
+        int count = 20000;
+        String document = new String(newLargeDemoDocument(count), "UTF-8");
+        byte[] bytes = document.replace("value=\"15000\"", "value=\"15000\"><Unknown_Element/")
+                               .getBytes("UTF-8");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            XmlParserSettings settings =
+                    newSettingsBuilder().withUnknownElementHandling(
+                            XmlParserSettings.UnknownElementHandling.ERROR).build();
+            XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+            parser.parseParallel(bytes, 0, bytes.length, pool);
+            fail(String.format("Expected an %s.", UnknownElementException.class.getSimpleName()));
+        } catch (UnknownElementException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Unknown_Element"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static byte[] newLargeDemoDocument(int repeatedChildCount) {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<wcl:Demo_Model My_String=\"Bob\">\n");
+        for (int i = 0; i < repeatedChildCount; i++) {
+            sb.append("    <Repeated_Child_Model value=\"").append(i).append("\">Text ")
+              .append(i).append(" &amp; <![CDATA[<more>]]></Repeated_Child_Model>\n");
+            if (i == repeatedChildCount / 2) {
+                sb.append("    <!-- The only Child_Model. -->\n");
+                sb.append("    <Child_Model My_String=\"child\"/>\n");
+            }
+        }
+        sb.append("</wcl:Demo_Model>\n");
+        return sb.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    private static void assertLargeDemoModel(DemoModel model, int repeatedChildCount) {
+        assertEquals("Bob", model.myString);
+        assertEquals("child", model.myChildModel.myString);
+        assertEquals(repeatedChildCount, model.repeatedChildModels.size());
+        for (int i = 0; i < repeatedChildCount; i++) {
+            RepeatedChildModel child = model.repeatedChildModels.get(i);
+            assertEquals(String.valueOf(i), child.value);
+            assertEquals("Text " + i + " & <more>", child.textContent);
+        }
+    }
+
+    @Test
+    public void testParseAll() {
+        List<InputStream> inputs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String document = i == 50
+                              ? "<wcl:Demo_Model My_String=\"broken\">"
+                              : "<wcl:Demo_Model My_String=\"" + i + "\"/>";
+            inputs.add(new ByteArrayInputStream(document.getBytes(Charset.forName("UTF-8"))));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            XmlStreamParser parser = newParser();
+            XmlDocumentIterator iterator = parser.parseAll(inputs, executor, 8);
+            for (int i = 0; i < 100; i++) {
+                assertTrue(iterator.hasNext());
+                if (i == 50) {
+                    try {
+                        iterator.next();
+                        fail(String.format("Expected an %s.",
+                                           UncheckedParseException.class.getSimpleName()));
+                    } catch (UncheckedParseException e) {
+                        assertTrue(e.getCause() instanceof ParseException);
+                    }
+                } else {
+                    assertEquals(String.valueOf(i), ((DemoModel) iterator.next()).myString);
+                }
+            }
+            assertFalse(iterator.hasNext());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParseAllTakesDocumentsOnlyWhenThereIsRoom() {
+        final List<InputStream> taken = new ArrayList<>();
+        final boolean[] closed = new boolean[10];
+        Iterable<InputStream> inputs = new Iterable<InputStream>() {
+            @Override
+            public Iterator<InputStream> iterator() {
+                return new Iterator<InputStream>() {
+                    @Override
+                    public boolean hasNext() {
+                        return taken.size() < closed.length;
+                    }
+
+                    @Override
+                    public InputStream next() {
+                        final int index = taken.size();
+                        InputStream in = new ByteArrayInputStream(new byte[0]) {
+                            @Override
+                            public void close() {
+                                closed[index] = true;
+                            }
+                        };
+                        taken.add(in);
+                        return in;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+        // Never runs anything, like an executor that is busy with other work.
+        final List<Runnable> tasks = new ArrayList<>();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+
+        XmlStreamParser parser = newParser();
+        XmlDocumentIterator iterator = parser.parseAll(inputs, executor, 3);
+        assertTrue(iterator.hasNext());
+        assertEquals(3, taken.size());
+        assertEquals(3, tasks.size());
+
+        iterator.close();
+        assertTrue(closed[0] && closed[1] && closed[2]);
+        assertFalse(closed[3]);
+        assertFalse(iterator.hasNext());
+        assertEquals(3, taken.size());
+    }
+
+    @Test
+    public void testParseAllKeepsTheDocumentBeingWaitedForInFlight() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        List<InputStream> inputs = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            byte[] document = ("<wcl:Demo_Model My_String=\"" + i + "\"/>")
+                    .getBytes(Charset.forName("UTF-8"));
+            inputs.add(new FilterInputStream(new ByteArrayInputStream(document)) {
+                private boolean started;
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (!started) {
+                        started = true;
+                        int count = running.incrementAndGet();
+                        maxRunning.set(Math.max(maxRunning.get(), count));
+                        try {
+                            // Gives a document submitted too early the time to start as well.
+                            Thread.sleep(20);
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                    }
+                    return super.read(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (started) {
+                        running.decrementAndGet();
+                    }
+                    super.close();
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            XmlDocumentIterator iterator = newParser().parseAll(inputs, executor, 1);
+            for (int i = 0; i < 8; i++) {
+                assertEquals(String.valueOf(i), ((DemoModel) iterator.next()).myString);
+            }
+            assertFalse(iterator.hasNext());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void testParseAllClosesRejectedDocuments() {
+        final boolean[] closed = new boolean[1];
+        InputStream in = new ByteArrayInputStream(new byte[0]) {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        };
+
+        XmlDocumentIterator iterator =
+                newParser().parseAll(Collections.singletonList(in), executor, 2);
+        try {
+            iterator.hasNext();
+            fail("Expected a RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertTrue(closed[0]);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testAsyncParser()
+            throws ParseException, UnexpectedChildException, UnknownElementException, IOException {
+        for (XmlParserSettings.ReaderBackend backend : XmlParserSettings.ReaderBackend.values()) {
+            XmlParserSettings settings = new XmlParserSettingsBuilder().withReaderBackend(backend)
+                                                                       .build();
+            XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+            for (int chunkSize : new int[]{1, 7, 4096}) {
+                assertDemoModel((DemoModel) feedInChunks(parser, readBytesOf("input.xml"), chunkSize));
+
+                RootModel root = (RootModel) feedInChunks(parser, readBytesOf("markup-input.xml"), chunkSize);
+                assertEquals(4, root.children.size());
+                RepeatedChildModel first = (RepeatedChildModel) root.children.get(0);
+                assertEquals("caf\u00e9 & cr\u00e8me", first.value);
+                assertEquals("Fish & chips <b>bold</b> \ud83d\ude00", first.textContent);
+
+                // Collected and parsed at the end.
+                for (String fileName : new String[]{"latin1-input.xml", "utf16-input.xml"}) {
+                    root = (RootModel) feedInChunks(parser, readBytesOf(fileName), chunkSize);
+                    RepeatedChildModel child = (RepeatedChildModel) root.children.get(0);
+                    assertEquals(backend + " " + fileName, "caf\u00e9", child.value);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAsyncParserParsesChildrenAsTheyArrive()
+            throws ParseException, UnexpectedChildException, UnknownElementException {
+        final int[] parsedChildren = new int[1];
+        XmlParserSettings settings =
+                newSettingsBuilder()
+                        .withElementListener(RepeatedChildModel.class,
+                                             new XmlElementListener<RepeatedChildModel>() {
+                                                 @Override
+                                                 public void onElement(
+                                                         RepeatedChildModel element) {
+                                                     parsedChildren[0]++;
+                                                 }
+                                             })
+                        .retainElementsWithListeners(true)
+                        .build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+        int count = 1000;
+        byte[] bytes = newLargeDemoDocument(count);
+
+        XmlAsyncParser asyncParser = parser.newAsyncParser();
+        assertFalse(asyncParser.feed(ByteBuffer.wrap(bytes, 0, bytes.length / 2)));
+        assertTrue(parsedChildren[0] > 0);
+        assertFalse(asyncParser.isComplete());
+        assertTrue(asyncParser.feed(ByteBuffer.wrap(bytes, bytes.length / 2, bytes.length - bytes.length / 2)));
+        assertLargeDemoModel((DemoModel) asyncParser.getResult(), count);
+        assertLargeDemoModel((DemoModel) asyncParser.endOfInput(), count);
+        assertEquals(count, parsedChildren[0]);
+    }
+
+    @Test
+    public void testAsyncParserRejectsIncompleteDocument()
+            throws ParseException, UnexpectedChildException, UnknownElementException, IOException {
+        XmlAsyncParser asyncParser = newParser().newAsyncParser();
+        byte[] bytes = "<wcl:Demo_Model><Child_Model My_String=\"a\"/><Child".getBytes("UTF-8");
+        assertFalse(asyncParser.feed(bytes, 0, bytes.length));
+        try {
+            asyncParser.endOfInput();
+            fail(String.format("Expected a %s.", ParseException.class.getSimpleName()));
+        } catch (ParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Unexpected end of document"));
+        }
+    }
+
+    private static Object feedInChunks(XmlStreamParser parser, byte[] bytes, int chunkSize)
+            throws ParseException, UnexpectedChildException, UnknownElementException {
+        XmlAsyncParser asyncParser = parser.newAsyncParser();
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            asyncParser.feed(ByteBuffer.wrap(bytes, offset, Math.min(chunkSize, bytes.length - offset)));
+        }
+        return asyncParser.endOfInput();
+    }
+
+    @Test
+    public void testLegacyParserSeesExplicitContext()
+            throws ParseException, UnexpectedChildException, UnknownElementException {
+        XmlParserContext context = new XmlParserContext(newSettingsBuilder().build());
+        XmlElementParser<XmlParserContext> legacyParser =
+                new XmlElementParser<XmlParserContext>() {
+                    @Override
+                    public XmlParserContext parseElement(XmlStreamReader reader) {
+                        return XmlContextHolder.getContext();
+                    }
+                };
+
+        assertNull(XmlContextHolder.getContext());
+        assertSame(context, legacyParser.parseElement(null, context));
+        assertNull(XmlContextHolder.getContext());
+    }
+
+    @Test
+    public void testCompositeParserMapMatchesComponents() {
+        String partition = PartitionedModel.class.getPackage().getName();
+        String defaultPackage = XmlParserSettingsBuilder.DEFAULT_PACKAGE;
+        ParserMap composite = new XmlParserContext(
+                newSettingsBuilder().withPartitions(partition, defaultPackage).build())
+                .getParserMap();
+        ParserMap[] components = {
+                new XmlParserContext(
+                        newSettingsBuilder().withPartitions(partition).build())
+                        .getParserMap(),
+                new XmlParserContext(
+                        newSettingsBuilder().withPartitions(defaultPackage).build())
+                        .getParserMap()
+        };
+
+        int size = 0;
+        for (ParserMap component : components) {
+            size += component.keySet().size();
+            for (String name : component.keySet()) {
+                XmlElementParser<?> parser = component.get(name);
+                assertSame(name, parser, composite.get(name));
+                assertSame(name, parser, composite.get(new StringBuilder(name)));
+                assertSame(name, parser, composite.get(name.toCharArray(), 0, name.length()));
+            }
+        }
+        assertEquals(size, composite.keySet().size());
+        assertNull(composite.get("no_such_element"));
+        assertNull(composite.get(new StringBuilder("no_such_element")));
+    }
+
+    @Test
+    public void testDuplicateMappingInSeparateRootPackagesThrowsException() {
+        XmlParserSettings settings =
+                newSettingsBuilder().withPartitions(PartitionedModel.class.getPackage()
+                                                                          .getName(),
+                                                    DuplicatePartitionedModel.class
+                                                            .getPackage().getName())
+                                    .build();
+        boolean exceptionCaught = false;
+        try {
+            XmlStreamParserFactory.newXmlStreamParser(settings);
+        } catch (IllegalArgumentException e) {
+            exceptionCaught = true;
+        }
+        assertTrue("Exception caught.", exceptionCaught);
+    }
+
+    @Test
+    public void testPooledReaderIsResetBetweenParses()
+            throws ParseException, UnexpectedChildException, UnknownElementException {
+        XmlParserSettings settings =
+                newSettingsBuilder().withUnknownElementHandling(XmlParserSettings
+                                                                        .UnknownElementHandling.ERROR)
+                                    .withReaderPoolSize(1)
+                                    .build();
+        XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+        try {
+            parser.parseStream(getInputStreamOf("unknown-elements-input.xml"));
+            fail(String.format("Expected an %s.", UnknownElementException.class.getSimpleName()));
+        } catch (UnknownElementException ignored) {
+            // The reader is returned to the pool in the middle of the document.
+        }
+
+        for (int i = 0; i < 3; i++) {
+            DemoModel model = (DemoModel) parser.parseStream(getInputStreamOf("input.xml"));
+            assertEquals("Bob", model.myString);
+            assertEquals(3, model.repeatedChildModels.size());
+        }
+    }
+
+    @Test
+    public void testBase64TextContent()
+            throws UnknownElementException, ParseException, UnexpectedChildException {
+        byte[] bytes = new byte[100000];
+        new Random(42).nextBytes(bytes);
+        String encoded = Base64.encodeToString(bytes, Base64.DEFAULT);
+        // The text is split over a CDATA section and a character reference, and read as one.
+        String text = encoded.substring(0, 1000)
+                + "<![CDATA[" + encoded.substring(1000, 50000) + "]]>"
+                + "&#" + (int) encoded.charAt(50000) + ";"
+                + encoded.substring(50001);
+
+        for (XmlParserSettings.ReaderBackend backend : XmlParserSettings.ReaderBackend.values()) {
+            XmlParserSettings settings = new XmlParserSettingsBuilder().withReaderBackend(backend)
+                                                                       .build();
+            XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+            AttachmentModel attachment = (AttachmentModel) parser.parseStream(toInputStream(
+                    "<Attachment_Model name=\"data.bin\">" + text + "</Attachment_Model>"));
+            assertEquals(backend.toString(), "data.bin", attachment.name);
+            assertArrayEquals(backend.toString(), bytes, attachment.data);
+
+            EncodedFileModel file = (EncodedFileModel) parser.parseStream(toInputStream(
+                    "<Encoded_File_Model>" + text + "</Encoded_File_Model>"));
+            assertArrayEquals(backend.toString(), bytes, file.contents.toByteArray());
+
+            try {
+                parser.parseStream(toInputStream("<Attachment_Model>QUJD*</Attachment_Model>"));
+                fail(backend + ": Expected a ParseException");
+            } catch (ParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testCharSequenceTextContent()
+            throws UnknownElementException, ParseException, UnexpectedChildException {
+        StringBuilder xml = new StringBuilder("<Note_Model>");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            xml.append("line ").append(i).append(" caf\u00e9 \ud83d\ude00 &amp;\r\n");
+            expected.append("line ").append(i).append(" caf\u00e9 \ud83d\ude00 &\n");
+            if (i % 100 == 0) {
+                xml.append("<!-- comment --><![CDATA[<b>").append(i).append("</b>]]>");
+                expected.append("<b>").append(i).append("</b>");
+            }
+        }
+        xml.append("</Note_Model>");
+
+        for (XmlParserSettings.ReaderBackend backend : XmlParserSettings.ReaderBackend.values()) {
+            XmlParserSettings settings = new XmlParserSettingsBuilder().withReaderBackend(backend)
+                                                                       .build();
+            XmlStreamParser parser = XmlStreamParserFactory.newXmlStreamParser(settings);
+
+            NoteModel note = (NoteModel) parser.parseStream(toInputStream(xml.toString()));
+            assertEquals(backend.toString(), expected.toString(), note.text.toString());
+        }
+    }
+
+    @Test
+    public void testReaderTextContentSkipsUnreadText() throws ParseException {
+        StringBuilder xml = new StringBuilder("<feed>\n");
+        for (int i = 0; i < 50; i++) {
+            xml.append("<Preview_Model id=\"").append(i).append("\">");
+            for (int j = 0; j < i * 100; j++) {
+                xml.append(j).append(j % 10 == 0 ? "<![CDATA[ ]]>" : " ");
+            }
+            xml.append("</Preview_Model>\n");
+        }
+        xml.append("</feed>");
+
+        for (XmlParserSettings.ReaderBackend backend : XmlParserSettings.ReaderBackend.values()) {
+            XmlParserSettings settings = new XmlParserSettingsBuilder().withReaderBackend(backend)
+                                                                       .build();
+            XmlElementStreamParser parser = XmlStreamParserFactory.newXmlElementStreamParser(settings);
+            XmlElementIterator<PreviewModel> iterator =
+                    parser.stream(toInputStream(xml.toString()), "feed/Preview_Model", PreviewModel.class);
+
+            PreviewModel empty = iterator.next();
+            assertEquals(0, empty.id);
+            assertNull(backend.toString(), empty.preview);
+            for (int i = 1; i < 50; i++) {
+                PreviewModel model = iterator.next();
+                assertEquals(backend.toString(), i, model.id);
+                assertEquals(backend.toString(), "0 1 2 3 4 5 6 7 8 9 ", model.preview);
+            }
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    private static InputStream toInputStream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(Charset.forName("UTF-8")));
+    }
+
+    private File copyToTemporaryFile(String fileName) throws IOException {
+        File file = File.createTempFile("autoparse", ".xml");
+        InputStream in = getInputStreamOf(fileName);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+        return file;
+    }
+
+    private byte[] readBytesOf(String fileName) throws IOException {
+        InputStream in = getInputStreamOf(fileName);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
         }
-        assertTrue("Exception caught.", exceptionCaught);
     }
 
     private InputStream getInputStreamOf(String fileName) {
@@ -10,9 +10,11 @@ package com.workday.autoparse.xml.codegen;
 import com.workday.autoparse.xml.annotations.XmlAttribute;
 import com.workday.autoparse.xml.annotations.XmlChildElement;
 import com.workday.autoparse.xml.annotations.XmlTextContent;
+import com.workday.autoparse.xml.parser.XmlTextConsumer;
 import com.workday.autoparse.xml.utils.CollectionUtils;
 import com.workday.meta.MetaTypes;
 
+import java.io.Reader;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -24,7 +26,9 @@ import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.tools.Diagnostic;
 
@@ -34,6 +38,18 @@ import javax.tools.Diagnostic;
  */
 class AttributesAndElements {
 
+    /**
+     * The ways in which text content can be passed to the field or setter annotated with {@link
+     * XmlTextContent}, depending on its type.
+     */
+    enum TextContentKind {
+        STRING,
+        CHARACTERS,
+        BASE64,
+        READER,
+        CONSUMER
+    }
+
     private final ProcessingEnvironment processingEnv;
     private final TypeElement classElement;
     private Map<List<String>, Element> attributes = new HashMap<>();
@@ -42,6 +58,7 @@ class AttributesAndElements {
     private Collection<ExecutableElement> singletonSetterChildren = new HashSet<>();
     private Collection<ExecutableElement> collectionSetterChildren = new HashSet<>();
     private Element textContentElement;
+    private TextContentKind textContentKind;
     private MetaTypes metaTypes;
 
     public AttributesAndElements(ProcessingEnvironment processingEnv, TypeElement classElement) {
@@ -75,6 +92,14 @@ class AttributesAndElements {
         return textContentElement;
     }
 
+    /**
+     * @return How the text content is passed to {@link #getTextContentElement()}, or null if there
+     * is no such element.
+     */
+    public TextContentKind getTextContentKind() {
+        return textContentKind;
+    }
+
     private void findAttributesAndElements() {
 
         Map<String, Element> visitedAttributes = new HashMap<>();
@@ -154,14 +179,49 @@ class AttributesAndElements {
             type = e.asType();
         }
 
-        if (!metaTypes.isString(type)) {
-            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format(
-                    "A field or setter annotated with %s must take type java.lang.String",
-                    XmlTextContent.class.getSimpleName()));
+        TextContentKind kind = getTextContentKind(type);
+        String errorMessage = null;
+        if (kind == null) {
+            errorMessage = String.format(
+                    "A field or setter annotated with %s must take type java.lang.String, "
+                            + "java.lang.CharSequence, byte[] or java.io.Reader, or be a field of "
+                            + "a type that implements %s",
+                    XmlTextContent.class.getSimpleName(),
+                    XmlTextConsumer.class.getCanonicalName());
+        } else if (kind == TextContentKind.READER && !(e instanceof ExecutableElement)) {
+            errorMessage = String.format(
+                    "Only a setter annotated with %s can take type java.io.Reader",
+                    XmlTextContent.class.getSimpleName());
+        } else if (kind == TextContentKind.CONSUMER && e instanceof ExecutableElement) {
+            errorMessage = String.format(
+                    "Only a field annotated with %s can be of type %s",
+                    XmlTextContent.class.getSimpleName(),
+                    XmlTextConsumer.class.getSimpleName());
+        }
+        if (errorMessage != null) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, errorMessage, e);
             return;
         }
 
         textContentElement = e;
+        textContentKind = kind;
+    }
+
+    private TextContentKind getTextContentKind(TypeMirror type) {
+        if (metaTypes.isString(type)) {
+            return TextContentKind.STRING;
+        } else if (metaTypes.isSameType(type, CharSequence.class)) {
+            return TextContentKind.CHARACTERS;
+        } else if (type.getKind() == TypeKind.ARRAY
+                && ((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE) {
+            return TextContentKind.BASE64;
+        } else if (metaTypes.isSameType(type, Reader.class)) {
+            return TextContentKind.READER;
+        } else if (type.getKind() == TypeKind.DECLARED
+                && metaTypes.isAssignable(type, XmlTextConsumer.class)) {
+            return TextContentKind.CONSUMER;
+        }
+        return null;
     }
 
     private void assignAsElement(Element e, Map<TypeMirror, Element> visitedElements) {
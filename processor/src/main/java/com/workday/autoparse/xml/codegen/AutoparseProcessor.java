@@ -11,6 +11,7 @@ import com.workday.autoparse.xml.annotations.XmlAttribute;
 import com.workday.autoparse.xml.annotations.XmlChildElement;
 import com.workday.autoparse.xml.annotations.XmlElement;
 import com.workday.autoparse.xml.annotations.XmlPostParse;
+import com.workday.autoparse.xml.annotations.XmlRecyclable;
 import com.workday.autoparse.xml.annotations.XmlTextContent;
 import com.workday.autoparse.xml.annotations.XmlUnknownElement;
 import com.workday.autoparse.xml.utils.CollectionUtils;
@@ -59,6 +60,19 @@ public class AutoparseProcessor extends AbstractProcessor {
             }
         }
 
+        for (Element element : roundEnv.getElementsAnnotatedWith(XmlRecyclable.class)) {
+            if (element.getAnnotation(XmlElement.class) == null
+                    && element.getAnnotation(XmlUnknownElement.class) == null) {
+                String errorMessage = String.format(
+                        "Only classes annotated with @%s or @%s can be annotated with @%s",
+                        XmlElement.class.getSimpleName(),
+                        XmlUnknownElement.class.getSimpleName(),
+                        XmlRecyclable.class.getSimpleName());
+                processingEnv.getMessager()
+                             .printMessage(Diagnostic.Kind.ERROR, errorMessage, element);
+            }
+        }
+
         return true;
     }
 
@@ -69,7 +83,8 @@ public class AutoparseProcessor extends AbstractProcessor {
                                           XmlPostParse.class.getCanonicalName(),
                                           XmlChildElement.class.getCanonicalName(),
                                           XmlAttribute.class.getCanonicalName(),
-                                          XmlTextContent.class.getCanonicalName());
+                                          XmlTextContent.class.getCanonicalName(),
+                                          XmlRecyclable.class.getCanonicalName());
     }
 
     @Override
@@ -8,6 +8,9 @@
 package com.workday.autoparse.xml.codegen;
 
 import com.squareup.javawriter.JavaWriter;
+import com.workday.autoparse.xml.annotations.XmlTextContent;
+import com.workday.autoparse.xml.codegen.AttributesAndElements.TextContentKind;
+import com.workday.autoparse.xml.context.XmlParserContext;
 import com.workday.autoparse.xml.parser.ParseException;
 import com.workday.autoparse.xml.parser.XmlElementParser;
 import com.workday.autoparse.xml.parser.XmlStreamReader;
@@ -16,18 +19,22 @@ import com.workday.autoparse.xml.utils.StringUtils;
 import com.workday.meta.MetaTypes;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.TypeMirror;
@@ -62,65 +69,154 @@ class ParseAttributesMethodWriter {
         parameters.add("object");
         parameters.add(XmlStreamReader.class.getSimpleName());
         parameters.add("reader");
+        parameters.add(XmlParserContext.class.getSimpleName());
+        parameters.add("context");
 
         writer.beginMethod("void", "parseAttributes", EnumSet.of(Modifier.PRIVATE), parameters,
                            CollectionUtils.newArrayList(ParseException.class.getSimpleName()));
-        writer.emitStatement("Attributes attributes = new Attributes(reader)");
+        writer.emitStatement(
+                "Attributes attributes = Attributes.forCurrentElement(reader, context)");
 
-        for (Map.Entry<List<String>, Element> entry : attributesAndElements.getAttributes()
-                                                                           .entrySet()) {
-            List<String> names = entry.getKey();
-            Element attributeElement = entry.getValue();
-
-            writeAttributeAssignment(names, attributeElement, writer);
+        Map<List<String>, Element> attributes = attributesAndElements.getAttributes();
+        if (!attributes.isEmpty()) {
+            writeAttributeLoop(attributes, writer);
         }
 
+        writeTextContent(classElement, writer);
+        writer.endMethod();
+    }
+
+    /**
+     * Writes the statements that read the text content, which must always be read to move the
+     * reader past the start element, and pass it to the element annotated with {@link
+     * XmlTextContent} in the form that its type asks for.
+     */
+    private void writeTextContent(TypeElement classElement, JavaWriter writer)
+            throws IOException {
         Element textContent = attributesAndElements.getTextContentElement();
-        writer.emitField("String",
-                         "contentString",
+        TextContentKind kind = attributesAndElements.getTextContentKind();
+        if (kind == TextContentKind.CONSUMER) {
+            // Fail with the name of the field rather than somewhere inside the reader.
+            writer.emitStatement("Preconditions.checkNotNull(object.%1$s, \"%2$s.%1$s must be "
+                                         + "initialized to receive text content\")",
+                                 textContent.getSimpleName(),
+                                 classElement.getSimpleName());
+            writer.emitStatement("attributes.readContent(object.%s)", textContent.getSimpleName());
+            return;
+        }
+
+        String type;
+        String variable;
+        String method;
+        if (kind == TextContentKind.CHARACTERS) {
+            type = "CharSequence";
+            variable = "contentCharacters";
+            method = "readContentCharacters";
+        } else if (kind == TextContentKind.BASE64) {
+            type = "byte[]";
+            variable = "contentBytes";
+            method = "readContentBase64";
+        } else if (kind == TextContentKind.READER) {
+            type = Reader.class.getCanonicalName();
+            variable = "contentReader";
+            method = "readContentReader";
+        } else {
+            type = "String";
+            variable = "contentString";
+            method = "readContentString";
+        }
+        writer.emitField(type,
+                         variable,
                          EnumSet.noneOf(Modifier.class),
-                         "attributes.getContentString()");
-        writer.beginControlFlow("if (contentString != null)");
+                         String.format("attributes.%s()", method));
+        writer.beginControlFlow(String.format("if (%s != null)", variable));
         if (textContent instanceof ExecutableElement) {
-            writer.emitStatement("object.%s(contentString)", textContent.getSimpleName());
+            writer.emitStatement("object.%s(%s)", textContent.getSimpleName(), variable);
         } else if (textContent instanceof VariableElement) {
-            writer.emitStatement("object.%s = contentString", textContent.getSimpleName());
+            writer.emitStatement("object.%s = %s", textContent.getSimpleName(), variable);
+        }
+        if (kind == TextContentKind.READER) {
+            writer.emitStatement("attributes.skipRemainingContent()");
         }
         writer.endControlFlow();
-        writer.endMethod();
     }
 
-    private void writeAttributeAssignment(List<String> names,
-                                          Element attributeElement,
-                                          JavaWriter writer)
+    /**
+     * Writes a loop that visits each attribute of the element once and dispatches on its name with
+     * a switch. Attributes with a single name are assigned as they are found. For attributes with
+     * several names, the loop only records the index of the earliest name in the annotation that
+     * is present, which is then assigned after the loop, so the first match still wins and values
+     * under the other names are never parsed.
+     */
+    private void writeAttributeLoop(Map<List<String>, Element> attributes, JavaWriter writer)
             throws IOException {
-
-        String ifPattern = "if (attributes.hasAttribute(\"%s\"))";
-        String initializationPattern = getAttributeInitializationPattern(attributeElement);
-        String assignmentPattern;
-        if (attributeElement instanceof ExecutableElement) {
-            assignmentPattern = String.format(Locale.US,
-                                              "object.%s(%s)",
-                                              attributeElement.getSimpleName(),
-                                              initializationPattern);
-        } else {
-            assignmentPattern = String.format(Locale.US,
-                                              "object.%s = %s",
-                                              attributeElement.getSimpleName(),
-                                              initializationPattern);
+        for (Map.Entry<List<String>, Element> entry : attributes.entrySet()) {
+            if (entry.getKey().size() > 1) {
+                String prefix = entry.getValue().getSimpleName().toString();
+                writer.emitStatement("int %sIndex = -1", prefix);
+                writer.emitStatement("int %sPriority = %d", prefix, entry.getKey().size());
+            }
         }
 
-        String name = names.get(0);
-        writer.beginControlFlow(String.format(ifPattern, name));
-        writer.emitStatement(assignmentPattern, name);
+        writer.beginControlFlow("for (int i = 0; i < attributes.getAttributeCount(); i++)");
+        writer.beginControlFlow("switch (attributes.getAttributeName(i))");
+        for (Map.Entry<List<String>, Element> entry : attributes.entrySet()) {
+            List<String> names = entry.getKey();
+            Element attributeElement = entry.getValue();
+            String prefix = attributeElement.getSimpleName().toString();
+            Set<String> writtenNames = new HashSet<>();
+            for (int priority = 0; priority < names.size(); priority++) {
+                String name = names.get(priority);
+                if (!writtenNames.add(name)) {
+                    continue;
+                }
+                writer.beginControlFlow(String.format("case \"%s\":", name));
+                if (names.size() == 1) {
+                    writeAttributeAssignment(attributeElement, "i", writer);
+                } else if (priority == 0) {
+                    writer.emitStatement("%sIndex = i", prefix);
+                    writer.emitStatement("%sPriority = 0", prefix);
+                } else {
+                    writer.beginControlFlow(
+                            String.format(Locale.US, "if (%sPriority > %d)", prefix, priority));
+                    writer.emitStatement("%sIndex = i", prefix);
+                    writer.emitStatement("%sPriority = %d", prefix, priority);
+                    writer.endControlFlow();
+                }
+                writer.emitStatement("break");
+                writer.endControlFlow();
+            }
+        }
+        writer.beginControlFlow("default:");
+        writer.emitStatement("break");
+        writer.endControlFlow();
+        writer.endControlFlow();
+        writer.endControlFlow();
 
-        for (int i = 1; i < names.size(); i++) {
-            name = names.get(i);
-            writer.nextControlFlow(String.format("else " + ifPattern, name));
-            writer.emitStatement(assignmentPattern, name);
+        for (Map.Entry<List<String>, Element> entry : attributes.entrySet()) {
+            if (entry.getKey().size() > 1) {
+                String index = entry.getValue().getSimpleName() + "Index";
+                writer.beginControlFlow(String.format("if (%s >= 0)", index));
+                writeAttributeAssignment(entry.getValue(), index, writer);
+                writer.endControlFlow();
+            }
         }
+    }
 
-        writer.endControlFlow();
+    private void writeAttributeAssignment(Element attributeElement, String index, JavaWriter writer)
+            throws IOException {
+        String pattern = getAttributeInitializationPattern(attributeElement);
+        if (pattern == null) {
+            // An error has already been reported.
+            return;
+        }
+        String initialization = String.format(pattern, index);
+        Name name = attributeElement.getSimpleName();
+        if (attributeElement instanceof ExecutableElement) {
+            writer.emitStatement("object.%s(%s)", name, initialization);
+        } else {
+            writer.emitStatement("object.%s = %s", name, initialization);
+        }
     }
 
     private String getAttributeInitializationPattern(Element element) {
@@ -131,15 +227,16 @@ class ParseAttributesMethodWriter {
         } else {
             type = element.asType();
         }
-        String stringMethod = "attributes.getStringAttributeWithName(\"%s\")";
+        String stringMethod = "attributes.getStringAttributeAt(%s)";
 
         if (metaTypes.isBoxable(type)) {
             String primitiveName = StringUtils.capitalize(metaTypes.asPrimitive(type).toString());
-            method = "attributes.get" + primitiveName + "AttributeWithName(\"%s\")";
+            method = "attributes.get" + primitiveName + "AttributeAt(%s)";
         } else if (metaTypes.isString(type)) {
             method = stringMethod;
-        } else if (metaTypes.isSameType(type, BigDecimal.class)
-                || metaTypes.isSameType(type, BigInteger.class)) {
+        } else if (metaTypes.isSameType(type, BigDecimal.class)) {
+            method = "attributes.getBigDecimalAttributeAt(%s)";
+        } else if (metaTypes.isSameType(type, BigInteger.class)) {
             method = "new " + type.toString() + "(" + stringMethod + ")";
         } else {
             processingEnv.getMessager()
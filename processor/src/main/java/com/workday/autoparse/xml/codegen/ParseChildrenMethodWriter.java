@@ -8,6 +8,9 @@
 package com.workday.autoparse.xml.codegen;
 
 import com.squareup.javawriter.JavaWriter;
+import com.workday.autoparse.xml.annotations.XmlElement;
+import com.workday.autoparse.xml.context.XmlParserContext;
+import com.workday.autoparse.xml.parser.GeneratedClassNames;
 import com.workday.autoparse.xml.parser.ParseException;
 import com.workday.autoparse.xml.parser.UnexpectedChildException;
 import com.workday.autoparse.xml.parser.UnexpectedElementHandler;
@@ -15,6 +18,7 @@ import com.workday.autoparse.xml.parser.UnknownElementException;
 import com.workday.autoparse.xml.parser.XmlElementParser;
 import com.workday.autoparse.xml.parser.XmlStreamReader;
 import com.workday.autoparse.xml.utils.CollectionUtils;
+import com.workday.autoparse.xml.utils.StringUtils;
 import com.workday.meta.Initializers;
 import com.workday.meta.InvalidTypeException;
 import com.workday.meta.MetaTypes;
@@ -22,15 +26,19 @@ import com.workday.meta.MetaTypes;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
@@ -39,6 +47,7 @@ import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
 
 /**
@@ -54,6 +63,7 @@ class ParseChildrenMethodWriter {
     private final MetaTypes metaTypes;
     private final TypeElement classElement;
     private final Initializers initializers;
+    private final Map<Element, DeclaredType> childTypes = new HashMap<>();
 
     public ParseChildrenMethodWriter(AttributesAndElements attributesAndElements,
                                      ProcessingEnvironment processingEnv,
@@ -74,6 +84,8 @@ class ParseChildrenMethodWriter {
         parameters.add("object");
         parameters.add(XmlStreamReader.class.getSimpleName());
         parameters.add("reader");
+        parameters.add(XmlParserContext.class.getSimpleName());
+        parameters.add("context");
 
         List<String> throwsTypes = CollectionUtils.newArrayList(
                 ParseException.class.getSimpleName(),
@@ -88,21 +100,32 @@ class ParseChildrenMethodWriter {
 
         initializeSetters(writer);
 
+        Map<String, TypeElement> staticChildTypes = findStaticChildTypes();
+        if (!staticChildTypes.isEmpty()) {
+            writer.emitStatement(
+                    "ParserMap parserMap = context.getParserMap()");
+        }
+
         writer.beginControlFlow("while (!reader.isEndElement())");
         writer.emitStatement(
                 "Preconditions.checkState(reader.isStartElement(), \"Expected to be at a start "
                         + "element\")");
         writer.emitStatement("String name = reader.getName()");
-        writer.emitStatement("Object child = ParserUtils.parseCurrentElement(reader)");
+        if (!staticChildTypes.isEmpty()) {
+            writeNameSwitch(staticChildTypes, writer);
+        }
+        writer.emitStatement("Object child = ParserUtils.parseCurrentElement(reader, context)");
 
         boolean first = true;
         first = writeChildIfStatements(writer, first);
 
         String unexpectedChildStatement =
-                String.format("%s.handleUnexpectedChild(object, child, name)",
+                String.format("%s.handleUnexpectedChild(object, child, name, context)",
                               UnexpectedElementHandler.class.getSimpleName());
         if (first) {
+            writer.beginControlFlow("if (child != null)");
             writer.emitStatement(unexpectedChildStatement);
+            writer.endControlFlow();
         } else {
             writer.nextControlFlow("else if (child == null)");
             writer.emitSingleLineComment("do nothing");
@@ -206,29 +229,130 @@ class ParseChildrenMethodWriter {
         return initializer;
     }
 
-    private boolean writeChildIfStatements(JavaWriter writer, boolean first)
-            throws IOException {
+    /**
+     * @return The methods and fields that take parsed children, in the order in which they are
+     * tried.
+     */
+    private List<Element> getChildTargets() {
         // TODO: assign children according to the highest specificity metric
-        for (Element e : attributesAndElements.getSingletonFieldChildren()) {
-            first = writeSingletonChildIfStatement(e, writer, first);
+        List<Element> targets = new ArrayList<>();
+        targets.addAll(attributesAndElements.getSingletonFieldChildren());
+        targets.addAll(attributesAndElements.getCollectionFieldChildren());
+        targets.addAll(attributesAndElements.getSingletonSetterChildren());
+        targets.addAll(attributesAndElements.getCollectionSetterChildren());
+        return targets;
+    }
+
+    private boolean isCollectionTarget(Element target) {
+        return attributesAndElements.getCollectionFieldChildren().contains(target)
+                || attributesAndElements.getCollectionSetterChildren().contains(target);
+    }
+
+    /**
+     * Finds the element names whose parser is known at compile time: those of the child types that
+     * are annotated with {@link XmlElement} themselves.
+     *
+     * @return A map from element name to child type, in a stable order.
+     */
+    private Map<String, TypeElement> findStaticChildTypes() {
+        Map<String, TypeElement> staticChildTypes = new LinkedHashMap<>();
+        for (Element target : getChildTargets()) {
+            TypeElement childType = (TypeElement) getChildType(target).asElement();
+            XmlElement annotation = childType.getAnnotation(XmlElement.class);
+            if (annotation == null || childType.getKind() != ElementKind.CLASS) {
+                continue;
+            }
+            for (String name : annotation.value()) {
+                if (StringUtils.isNotEmpty(name) && !staticChildTypes.containsKey(name)) {
+                    staticChildTypes.put(name, childType);
+                }
+            }
         }
-        for (Element e : attributesAndElements.getCollectionFieldChildren()) {
-            first = writeCollectionChildIfStatement(e, writer, first);
+        return staticChildTypes;
+    }
+
+    /**
+     * @return The method or field that the {@code instanceof} chain assigns instances of {@code
+     * childType} to.
+     */
+    private Element findFirstMatchingTarget(TypeElement childType) {
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror erasure = types.erasure(childType.asType());
+        for (Element target : getChildTargets()) {
+            if (types.isAssignable(erasure, types.erasure(getChildType(target)))) {
+                return target;
+            }
         }
-        for (Element e : attributesAndElements.getSingletonSetterChildren()) {
-            first = writeSingletonChildIfStatement(e, writer, first);
+        throw new IllegalStateException(childType + " does not match any child of "
+                                                + classElement);
+    }
+
+    /**
+     * Writes a switch that calls the parsers of children with statically known types directly,
+     * rather than looking them up and testing the type of the result. The parser map of the
+     * current context is still consulted, so that partitions and unknown element handling behave
+     * exactly as they do for other children; anything not handled here falls through to the
+     * generic path.
+     */
+    private void writeNameSwitch(Map<String, TypeElement> staticChildTypes, JavaWriter writer)
+            throws IOException {
+        writer.beginControlFlow("switch (name)");
+        for (Map.Entry<String, TypeElement> entry : staticChildTypes.entrySet()) {
+            TypeElement childType = entry.getValue();
+            Element target = findFirstMatchingTarget(childType);
+            String parserName = writer.compressType(
+                    childType.getQualifiedName() + GeneratedClassNames.PARSER_SUFFIX);
+            writer.beginControlFlow(String.format("case \"%s\":", entry.getKey()));
+            writer.beginControlFlow(
+                    String.format("if (parserMap.get(name) == %s.INSTANCE)", parserName));
+            writer.emitStatement(
+                    "Object child = ParserUtils.parseElement(%s.INSTANCE, reader, name, context)",
+                    parserName);
+            writer.beginControlFlow("if (child != null)");
+            if (isCollectionTarget(target)) {
+                writeCollectionAssignment(target, writer);
+            } else {
+                writeSingletonAssignment(target, writer);
+            }
+            writer.endControlFlow();
+            writer.emitStatement("continue");
+            writer.endControlFlow();
+            writer.emitStatement("break");
+            writer.endControlFlow();
         }
-        for (Element e : attributesAndElements.getCollectionSetterChildren()) {
-            first = writeCollectionChildIfStatement(e, writer, first);
+        writer.beginControlFlow("default:");
+        writer.emitStatement("break");
+        writer.endControlFlow();
+        writer.endControlFlow();
+    }
+
+    private boolean writeChildIfStatements(JavaWriter writer, boolean first)
+            throws IOException {
+        for (Element e : getChildTargets()) {
+            boolean isCollection = isCollectionTarget(e);
+            String typeName = extractChildTypeName(e, writer);
+            String ifStatement = String.format("if (child instanceof %s)", typeName);
+            if (first) {
+                first = false;
+                writer.beginControlFlow(ifStatement);
+            } else {
+                writer.nextControlFlow("else " + ifStatement);
+            }
+            if (isCollection) {
+                writeCollectionAssignment(e, writer);
+            } else {
+                writeSingletonAssignment(e, writer);
+            }
         }
         return first;
     }
 
-    private boolean writeSingletonChildIfStatement(Element element,
-                                                   JavaWriter writer,
-                                                   boolean first)
+    /**
+     * Writes the statements that assign {@code child} to a singleton field or setter value.
+     */
+    private void writeSingletonAssignment(Element element, JavaWriter writer)
             throws IOException {
-        String typeName = extractChildTypeName(element, writer, false);
+        String typeName = extractChildTypeName(element, writer);
         String assignmentStatement;
         String singletonValidationStatement;
         if (element instanceof ExecutableElement) {
@@ -242,16 +366,6 @@ class ParseChildrenMethodWriter {
             singletonValidationStatement =
                     String.format("object.%s == null", element.getSimpleName());
         }
-        String ifStatement;
-
-        ifStatement = String.format("if (child instanceof %s)", typeName);
-
-        if (first) {
-            first = false;
-            writer.beginControlFlow(ifStatement);
-        } else {
-            writer.nextControlFlow("else " + ifStatement);
-        }
 
         String errorMessage =
                 String.format(
@@ -262,15 +376,14 @@ class ParseChildrenMethodWriter {
                              singletonValidationStatement,
                              errorMessage);
         writer.emitStatement(assignmentStatement);
-        return first;
     }
 
-    private boolean writeCollectionChildIfStatement(Element element,
-                                                    JavaWriter writer,
-                                                    boolean first)
+    /**
+     * Writes the statement that adds {@code child} to a collection field or setter value.
+     */
+    private void writeCollectionAssignment(Element element, JavaWriter writer)
             throws IOException {
-
-        String parameterTypeName = extractChildTypeName(element, writer, true);
+        String parameterTypeName = extractChildTypeName(element, writer);
         String addStatement;
 
         if (element instanceof ExecutableElement) {
@@ -282,17 +395,7 @@ class ParseChildrenMethodWriter {
                                          element.getSimpleName(),
                                          parameterTypeName);
         }
-        String ifStatement = String.format("if (child instanceof %s)", parameterTypeName);
-
-        if (first) {
-            first = false;
-            writer.beginControlFlow(ifStatement);
-        } else {
-            writer.nextControlFlow("else " + ifStatement);
-        }
-
         writer.emitStatement(addStatement);
-        return first;
     }
 
     /**
@@ -301,23 +404,30 @@ class ParseChildrenMethodWriter {
      *
      * @return The compressed name of the parsed type.
      */
-    private String extractChildTypeName(Element element, JavaWriter writer, boolean isCollection) {
-        String typeName;
-        if (element instanceof ExecutableElement) {
-            DeclaredType declaredType =
-                    (DeclaredType) ((ExecutableElement) element).getParameters().get(0).asType();
-            if (isCollection) {
-                declaredType = getCollectionParameterType(declaredType, element);
+    private String extractChildTypeName(Element element, JavaWriter writer) {
+        return writer.compressType(getChildType(element).toString());
+    }
+
+    /**
+     * @return The type of child that {@code target} takes, which for a collection is the type of
+     * its elements.
+     */
+    private DeclaredType getChildType(Element target) {
+        DeclaredType childType = childTypes.get(target);
+        if (childType == null) {
+            if (target instanceof ExecutableElement) {
+                childType = (DeclaredType) ((ExecutableElement) target).getParameters()
+                                                                        .get(0)
+                                                                        .asType();
+            } else {
+                childType = (DeclaredType) target.asType();
             }
-            typeName = writer.compressType(declaredType.toString());
-        } else {
-            DeclaredType declaredType = (DeclaredType) element.asType();
-            if (isCollection) {
-                declaredType = getCollectionParameterType(declaredType, element);
+            if (isCollectionTarget(target)) {
+                childType = getCollectionParameterType(childType, target);
             }
-            typeName = writer.compressType(declaredType.toString());
+            childTypes.put(target, childType);
         }
-        return typeName;
+        return childType;
     }
 
     private DeclaredType getCollectionParameterType(DeclaredType collectionType,
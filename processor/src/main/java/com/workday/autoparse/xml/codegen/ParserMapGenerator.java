@@ -11,15 +11,22 @@ import com.squareup.javawriter.JavaWriter;
 import com.workday.autoparse.xml.context.XmlParserSettingsBuilder;
 import com.workday.autoparse.xml.parser.GeneratedClassNames;
 import com.workday.autoparse.xml.parser.ParserMap;
+import com.workday.autoparse.xml.parser.ParserUtils;
 import com.workday.autoparse.xml.parser.XmlElementParser;
 import com.workday.meta.Modifiers;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
@@ -34,18 +41,17 @@ import javax.tools.JavaFileObject;
  */
 class ParserMapGenerator {
 
-    private static final String MAP_TYPE =
-            String.format("Map<String, %s<?>>", XmlElementParser.class.getSimpleName());
-
     private final ProcessingEnvironment processingEnv;
     private final PackageElement packageElement;
     private final Map<String, TypeElement> parseMap;
+    private final List<String> sortedKeys;
 
     ParserMapGenerator(ProcessingEnvironment processingEnv, PackageElement packageElement,
                        Map<String, TypeElement> parseMap) {
         this.processingEnv = processingEnv;
         this.packageElement = packageElement;
         this.parseMap = parseMap;
+        sortedKeys = new ArrayList<>(new TreeSet<>(parseMap.keySet()));
     }
 
     public void generateParseMap() throws IOException {
@@ -75,10 +81,12 @@ class ParserMapGenerator {
                 ParserMap.class.getCanonicalName());
         writer.emitEmptyLine();
 
-        writeMapField(writer);
+        writeKeysField(writer);
         writer.emitEmptyLine();
         writeGetter(writer);
         writer.emitEmptyLine();
+        writeCharacterGetters(writer);
+        writer.emitEmptyLine();
         writeKeySet(writer);
 
         writer.endType();
@@ -95,45 +103,175 @@ class ParserMapGenerator {
 
     private Set<String> getJavaImports() {
         Set<String> results = new HashSet<>();
-        results.add(Map.class.getCanonicalName());
-        results.add(HashMap.class.getCanonicalName());
+        results.add(Arrays.class.getCanonicalName());
+        results.add(Collections.class.getCanonicalName());
+        results.add(HashSet.class.getCanonicalName());
+        results.add(Set.class.getCanonicalName());
         if (packageElement != null) {
             results.add(ParserMap.class.getCanonicalName());
+            results.add(ParserUtils.class.getCanonicalName());
             results.add(XmlElementParser.class.getCanonicalName());
         }
         return results;
     }
 
-    private void writeMapField(JavaWriter writer) throws IOException {
-        writer.emitField(MAP_TYPE, "MAP", Modifiers.PRIVATE_CONSTANT,
-                String.format("new HashMap<String, %s<?>>()",
-                        XmlElementParser.class.getSimpleName()));
-
-        writer.beginInitializer(true);
-        for (Map.Entry<String, TypeElement> entry : parseMap.entrySet()) {
-            writer.emitStatement("MAP.put(\"%s\", %s.INSTANCE)", entry.getKey(),
-                    entry.getValue().getSimpleName());
+    private void writeKeysField(JavaWriter writer) throws IOException {
+        StringBuilder keys = new StringBuilder();
+        for (String key : sortedKeys) {
+            if (keys.length() > 0) {
+                keys.append(", ");
+            }
+            keys.append(JavaWriter.stringLiteral(key));
         }
-        writer.endInitializer();
+        writer.emitField("Set<String>", "KEYS", Modifiers.PRIVATE_CONSTANT,
+                String.format("Collections.unmodifiableSet(new HashSet<String>(%s))",
+                        "Arrays.asList(" + keys + ")"));
     }
 
+    /**
+     * Writes {@code get(String)} as a switch on the name, which javac compiles to a switch on the
+     * name's hash code followed by a single equality check.
+     */
     private void writeGetter(JavaWriter writer) throws IOException {
-
         writer.emitAnnotation(Override.class);
         writer.beginMethod(JavaWriter.type(XmlElementParser.class, "?"),
                 "get",
                 EnumSet.of(Modifier.PUBLIC),
                 "String",
                 "name");
-        writer.emitStatement("return MAP.get(name)");
+        writer.beginControlFlow("if (name == null)");
+        writer.emitStatement("return null");
+        writer.endControlFlow();
+        writer.beginControlFlow("switch (name)");
+        for (String key : sortedKeys) {
+            writer.emitStatement("case %s: return %s.INSTANCE", JavaWriter.stringLiteral(key),
+                    parseMap.get(key).getSimpleName());
+        }
+        writer.emitStatement("default: return null");
+        writer.endControlFlow();
+        writer.endMethod();
+    }
+
+    /**
+     * Writes {@code get(CharSequence)} and {@code get(char[], int, int)}, which switch on the
+     * length of the name and then on the characters that tell the remaining keys apart, and only
+     * compare the whole name once a single key is left.
+     */
+    private void writeCharacterGetters(JavaWriter writer) throws IOException {
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod(JavaWriter.type(XmlElementParser.class, "?"),
+                "get",
+                EnumSet.of(Modifier.PUBLIC),
+                "CharSequence",
+                "name");
+        writeLengthSwitch("name.length()", "name.charAt(%d)", "ParserUtils.contentEquals(name, %s)",
+                writer);
+        writer.endMethod();
+        writer.emitEmptyLine();
+
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod(JavaWriter.type(XmlElementParser.class, "?"),
+                "get",
+                EnumSet.of(Modifier.PUBLIC),
+                Arrays.asList("char[]", "chars", "int", "offset", "int", "length"),
+                null);
+        writeLengthSwitch("length", "chars[offset + %d]",
+                "ParserUtils.contentEquals(chars, offset, length, %s)", writer);
         writer.endMethod();
     }
 
+    private void writeLengthSwitch(String length, String charAtPattern, String equalsPattern,
+            JavaWriter writer) throws IOException {
+        Map<Integer, List<String>> keysByLength = new TreeMap<>();
+        for (String key : sortedKeys) {
+            List<String> keys = keysByLength.get(key.length());
+            if (keys == null) {
+                keys = new ArrayList<>();
+                keysByLength.put(key.length(), keys);
+            }
+            keys.add(key);
+        }
+        if (!keysByLength.isEmpty()) {
+            writer.beginControlFlow(String.format("switch (%s)", length));
+            for (Map.Entry<Integer, List<String>> entry : keysByLength.entrySet()) {
+                writer.beginControlFlow(String.format(Locale.US, "case %d:", entry.getKey()));
+                writeCharacterSwitch(entry.getValue(), charAtPattern, equalsPattern, writer);
+                writer.endControlFlow();
+            }
+            writer.emitStatement("default: return null");
+            writer.endControlFlow();
+        } else {
+            writer.emitStatement("return null");
+        }
+    }
+
+    /**
+     * Writes the lookup for a set of keys of equal length.
+     */
+    private void writeCharacterSwitch(List<String> keys, String charAtPattern,
+            String equalsPattern, JavaWriter writer) throws IOException {
+        if (keys.size() == 1) {
+            String key = keys.get(0);
+            writer.emitStatement("return %s ? %s.INSTANCE : null",
+                    String.format(equalsPattern, JavaWriter.stringLiteral(key)),
+                    parseMap.get(key).getSimpleName());
+            return;
+        }
+
+        int position = findMostDistinctivePosition(keys);
+        Map<Character, List<String>> keysByCharacter = new TreeMap<>();
+        for (String key : keys) {
+            List<String> group = keysByCharacter.get(key.charAt(position));
+            if (group == null) {
+                group = new ArrayList<>();
+                keysByCharacter.put(key.charAt(position), group);
+            }
+            group.add(key);
+        }
+        writer.beginControlFlow(String.format(Locale.US, "switch (%s)",
+                String.format(Locale.US, charAtPattern, position)));
+        for (Map.Entry<Character, List<String>> entry : keysByCharacter.entrySet()) {
+            writer.beginControlFlow(String.format("case %s:", charLiteral(entry.getKey())));
+            writeCharacterSwitch(entry.getValue(), charAtPattern, equalsPattern, writer);
+            writer.endControlFlow();
+        }
+        writer.emitStatement("default: return null");
+        writer.endControlFlow();
+    }
+
+    /**
+     * @return The position at which the keys, which all have the same length, have the most
+     * distinct characters.
+     */
+    private static int findMostDistinctivePosition(List<String> keys) {
+        int bestPosition = 0;
+        int bestCount = 0;
+        for (int position = 0; position < keys.get(0).length(); position++) {
+            Set<Character> characters = new HashSet<>();
+            for (String key : keys) {
+                characters.add(key.charAt(position));
+            }
+            if (characters.size() > bestCount) {
+                bestCount = characters.size();
+                bestPosition = position;
+            }
+        }
+        return bestPosition;
+    }
+
+    private static String charLiteral(char c) {
+        if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_'
+                || c == ':' || c == '-' || c == '.') {
+            return "'" + c + "'";
+        }
+        return String.format(Locale.US, "'\\u%04x'", (int) c);
+    }
+
     private void writeKeySet(JavaWriter writer) throws IOException {
 
         writer.emitAnnotation(Override.class);
         writer.beginMethod(JavaWriter.type(Set.class, "String"), "keySet", Modifiers.PUBLIC);
-        writer.emitStatement("return MAP.keySet()");
+        writer.emitStatement("return KEYS");
         writer.endMethod();
     }
 
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.codegen;
+
+import com.squareup.javawriter.JavaWriter;
+import com.workday.autoparse.xml.annotations.XmlRecyclable;
+import com.workday.autoparse.xml.codegen.AttributesAndElements.TextContentKind;
+import com.workday.autoparse.xml.parser.RecyclingXmlElementParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Writes the {@code reset} method in a {@link RecyclingXmlElementParser}, which undoes what a
+ * parse sets on an object as described in {@link XmlRecyclable}.
+ *
+ * @since 1.3
+ */
+class ResetMethodWriter {
+
+    private static final String DEFAULTS = "DEFAULTS";
+
+    private final AttributesAndElements attributesAndElements;
+
+    public ResetMethodWriter(AttributesAndElements attributesAndElements) {
+        this.attributesAndElements = attributesAndElements;
+    }
+
+    /**
+     * Writes the instance that fields are reset from, if there are any such fields. Taking their
+     * values from an untouched instance restores whatever the fields are initialized with, which
+     * the processor cannot see.
+     */
+    public void writeDefaultsField(TypeElement classElement, JavaWriter writer)
+            throws IOException {
+        if (!hasResetFields()) {
+            return;
+        }
+        String className = classElement.getSimpleName().toString();
+        writer.emitField(className,
+                         DEFAULTS,
+                         EnumSet.of(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL),
+                         String.format("new %s()", className));
+        writer.emitEmptyLine();
+    }
+
+    public void writeResetMethod(TypeElement classElement, JavaWriter writer)
+            throws IOException {
+        List<String> parameters = new ArrayList<String>(2);
+        parameters.add(classElement.getSimpleName().toString());
+        parameters.add("object");
+
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod("void",
+                           "reset",
+                           EnumSet.of(Modifier.PUBLIC),
+                           parameters,
+                           Collections.<String>emptyList());
+
+        for (Element attribute : attributesAndElements.getAttributes().values()) {
+            writeDefaultAssignment(attribute, writer);
+        }
+        if (isTextContentKept()) {
+            writeDefaultAssignment(attributesAndElements.getTextContentElement(), writer);
+        }
+        for (VariableElement child : attributesAndElements.getSingletonFieldChildren()) {
+            writer.emitStatement("object.%s = null", child.getSimpleName());
+        }
+        // Children taken through setters are always set at the end of a parse, so they are left
+        // alone here.
+        for (VariableElement children : attributesAndElements.getCollectionFieldChildren()) {
+            writer.emitStatement("object.%s.clear()", children.getSimpleName());
+        }
+        writer.endMethod();
+    }
+
+    /**
+     * Text content passed as a Reader or to an XmlTextConsumer is not kept by the parse, so there
+     * is nothing to undo.
+     */
+    private boolean isTextContentKept() {
+        TextContentKind kind = attributesAndElements.getTextContentKind();
+        return kind != null && kind != TextContentKind.READER && kind != TextContentKind.CONSUMER;
+    }
+
+    private boolean hasResetFields() {
+        for (Element attribute : attributesAndElements.getAttributes().values()) {
+            if (attribute instanceof VariableElement) {
+                return true;
+            }
+        }
+        return isTextContentKept()
+                && attributesAndElements.getTextContentElement() instanceof VariableElement;
+    }
+
+    /**
+     * Fields are reset to their value in the instance written by {@link #writeDefaultsField}.
+     * Setters cannot be read back, so they are called with the default value of their type.
+     */
+    private void writeDefaultAssignment(Element element, JavaWriter writer)
+            throws IOException {
+        if (element instanceof ExecutableElement) {
+            TypeMirror type = ((ExecutableElement) element).getParameters().get(0).asType();
+            writer.emitStatement("object.%s(%s)", element.getSimpleName(), getDefaultValue(type));
+        } else {
+            writer.emitStatement("object.%1$s = %2$s.%1$s", element.getSimpleName(), DEFAULTS);
+        }
+    }
+
+    /**
+     * @return An expression of the default value of a field of type {@code type}.
+     */
+    private static String getDefaultValue(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "false";
+            case CHAR:
+                return "'\\0'";
+            case BYTE:
+                return "(byte) 0";
+            case SHORT:
+                return "(short) 0";
+            case INT:
+                return "0";
+            case LONG:
+                return "0L";
+            case FLOAT:
+                return "0f";
+            case DOUBLE:
+                return "0d";
+            default:
+                return "null";
+        }
+    }
+}
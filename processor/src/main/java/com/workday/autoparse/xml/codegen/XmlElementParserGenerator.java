@@ -10,11 +10,16 @@ package com.workday.autoparse.xml.codegen;
 import com.squareup.javawriter.JavaWriter;
 import com.workday.autoparse.xml.annotations.XmlElement;
 import com.workday.autoparse.xml.annotations.XmlPostParse;
+import com.workday.autoparse.xml.annotations.XmlRecyclable;
 import com.workday.autoparse.xml.annotations.codegen.XmlParser;
+import com.workday.autoparse.xml.context.XmlContextHolder;
+import com.workday.autoparse.xml.context.XmlParserContext;
 import com.workday.autoparse.xml.parser.Attributes;
 import com.workday.autoparse.xml.parser.GeneratedClassNames;
 import com.workday.autoparse.xml.parser.ParseException;
+import com.workday.autoparse.xml.parser.ParserMap;
 import com.workday.autoparse.xml.parser.ParserUtils;
+import com.workday.autoparse.xml.parser.RecyclingXmlElementParser;
 import com.workday.autoparse.xml.parser.UnexpectedChildException;
 import com.workday.autoparse.xml.parser.UnexpectedElementHandler;
 import com.workday.autoparse.xml.parser.UnknownElementException;
@@ -25,6 +30,7 @@ import com.workday.autoparse.xml.utils.Preconditions;
 import com.workday.meta.MetaTypes;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashSet;
@@ -51,6 +57,8 @@ class XmlElementParserGenerator {
     private final TypeElement classElement;
     private final ParseAttributesMethodWriter parseAttributesMethodWriter;
     private final ParseChildrenMethodWriter parseChildrenMethodWriter;
+    private final ResetMethodWriter resetMethodWriter;
+    private final boolean recyclable;
 
     XmlElementParserGenerator(ProcessingEnvironment processingEnv, TypeElement classElement) {
 
@@ -66,6 +74,8 @@ class XmlElementParserGenerator {
                         processingEnv,
                         metaTypes,
                         classElement);
+        resetMethodWriter = new ResetMethodWriter(attributesAndElements);
+        recyclable = classElement.getAnnotation(XmlRecyclable.class) != null;
 
     }
 
@@ -93,8 +103,10 @@ class XmlElementParserGenerator {
             writer.emitAnnotation("XmlParser", values);
         }
 
+        Class<?> parserInterface =
+                recyclable ? RecyclingXmlElementParser.class : XmlElementParser.class;
         String xmlElementParserName =
-                JavaWriter.type(XmlElementParser.class, classElement.getSimpleName().toString());
+                JavaWriter.type(parserInterface, classElement.getSimpleName().toString());
         writer.beginType(parserName,
                 "class",
                 EnumSet.of(Modifier.PUBLIC, Modifier.FINAL),
@@ -107,6 +119,9 @@ class XmlElementParserGenerator {
                 EnumSet.of(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL),
                 String.format("new %s()", writer.compressType(parserName)));
         writer.emitEmptyLine();
+        if (recyclable) {
+            resetMethodWriter.writeDefaultsField(classElement, writer);
+        }
 
         // Constructor
         writer.beginMethod(null, parserName, EnumSet.of(Modifier.PRIVATE));
@@ -115,6 +130,10 @@ class XmlElementParserGenerator {
 
         writeParseElementMethod(writer);
         writer.emitEmptyLine();
+        if (recyclable) {
+            resetMethodWriter.writeResetMethod(classElement, writer);
+            writer.emitEmptyLine();
+        }
         parseAttributesMethodWriter.writeParseAttributesMethod(classElement, writer);
         writer.emitEmptyLine();
         parseChildrenMethodWriter.writeParseChildrenMethod(classElement, writer);
@@ -131,12 +150,18 @@ class XmlElementParserGenerator {
         results.add(Preconditions.class.getCanonicalName());
         results.add(CollectionUtils.class.getCanonicalName());
         results.add(ParseException.class.getCanonicalName());
+        results.add(ParserMap.class.getCanonicalName());
         results.add(ParserUtils.class.getCanonicalName());
+        results.add(XmlContextHolder.class.getCanonicalName());
+        results.add(XmlParserContext.class.getCanonicalName());
         results.add(Set.class.getCanonicalName());
         results.add(UnexpectedChildException.class.getCanonicalName());
         results.add(UnexpectedElementHandler.class.getCanonicalName());
         results.add(UnknownElementException.class.getCanonicalName());
         results.add(XmlElementParser.class.getCanonicalName());
+        if (recyclable) {
+            results.add(RecyclingXmlElementParser.class.getCanonicalName());
+        }
         results.add(XmlStreamReader.class.getCanonicalName());
         results.add(XmlParser.class.getCanonicalName());
         return results;
@@ -160,12 +185,50 @@ class XmlElementParserGenerator {
                 EnumSet.of(Modifier.PUBLIC),
                 parameters,
                 throwsTypes);
+        writer.emitStatement("return parseElement(reader, XmlContextHolder.getContext())");
+        writer.endMethod();
+        writer.emitEmptyLine();
+
+        List<String> contextParameters = new ArrayList<>(parameters);
+        contextParameters.add(XmlParserContext.class.getSimpleName());
+        contextParameters.add("context");
 
-        writer.emitStatement("%s object = new %s()",
-                classElement.getSimpleName(),
-                classElement.getSimpleName());
-        writer.emitStatement("parseAttributes(object, reader)");
-        writer.emitStatement("parseChildren(object, reader)");
+        writer.emitAnnotation(Override.class);
+        writer.beginMethod(classElement.getSimpleName().toString(),
+                "parseElement",
+                EnumSet.of(Modifier.PUBLIC),
+                contextParameters,
+                throwsTypes);
+
+        if (recyclable) {
+            writer.emitStatement("%s object = ParserUtils.acquireRecycled(%s.class, context)",
+                    classElement.getSimpleName(),
+                    classElement.getSimpleName());
+            writer.beginControlFlow("if (object == null)");
+            writer.emitStatement("object = new %s()", classElement.getSimpleName());
+            writer.endControlFlow();
+            writer.emitStatement("return parseInto(object, reader, context)");
+            writer.endMethod();
+            writer.emitEmptyLine();
+
+            List<String> parseIntoParameters = new ArrayList<>();
+            parseIntoParameters.add(classElement.getSimpleName().toString());
+            parseIntoParameters.add("object");
+            parseIntoParameters.addAll(contextParameters);
+
+            writer.emitAnnotation(Override.class);
+            writer.beginMethod(classElement.getSimpleName().toString(),
+                    "parseInto",
+                    EnumSet.of(Modifier.PUBLIC),
+                    parseIntoParameters,
+                    throwsTypes);
+        } else {
+            writer.emitStatement("%s object = new %s()",
+                    classElement.getSimpleName(),
+                    classElement.getSimpleName());
+        }
+        writer.emitStatement("parseAttributes(object, reader, context)");
+        writer.emitStatement("parseChildren(object, reader, context)");
 
         writer.emitStatement(
                 "Preconditions.checkState(reader.isEndElement(), \"Expected to be at an end "
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.stax;
+
+import com.workday.autoparse.xml.parser.ParseException;
+import com.workday.autoparse.xml.parser.XmlStreamReader;
+import com.workday.autoparse.xml.utils.CharSequenceReader;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * An {@link XmlStreamReader} backed by a StAX {@link javax.xml.stream.XMLStreamReader}.
+ * <p/>
+ * Adjacent character data, CDATA sections and text around comments and processing instructions
+ * are reported as a single {@link #CHARACTERS} event, and whitespace outside of the root element
+ * is not reported at all, the same way a pull parser does.
+ *
+ * @since 1.3
+ */
+public class StaxXmlStreamReader extends XmlStreamReader {
+
+    private static final int NO_PENDING_EVENT = -1;
+
+    private final XMLInputFactory inputFactory;
+    private javax.xml.stream.XMLStreamReader reader;
+
+    private int eventType = START_DOCUMENT;
+    private int depth;
+    // The StAX event that ended the current text event, which has not been reported yet.
+    private int pendingEvent = NO_PENDING_EVENT;
+    private final StringBuilder textBuilder = new StringBuilder();
+    private String text;
+
+    /**
+     * @param inputFactory The factory to create the underlying readers with. It should not be
+     * namespace aware.
+     */
+    public StaxXmlStreamReader(XMLInputFactory inputFactory) {
+        this.inputFactory = inputFactory;
+    }
+
+    @Override
+    protected void setInput(InputStream in, Charset charset)
+            throws ParseException {
+        reset();
+        if (in == null) {
+            return;
+        }
+        try {
+            // Not all factories are safe to create readers from concurrently.
+            synchronized (inputFactory) {
+                reader = charset != null
+                         ? inputFactory.createXMLStreamReader(in, charset.name())
+                         : inputFactory.createXMLStreamReader(in);
+            }
+        } catch (XMLStreamException e) {
+            throw new ParseException(e);
+        }
+    }
+
+    @Override
+    protected void setInput(CharSequence text)
+            throws ParseException {
+        reset();
+        try {
+            synchronized (inputFactory) {
+                reader = inputFactory.createXMLStreamReader(new CharSequenceReader(text));
+            }
+        } catch (XMLStreamException e) {
+            throw new ParseException(e);
+        }
+    }
+
+    private void reset() {
+        closeReader();
+        eventType = START_DOCUMENT;
+        depth = 0;
+        pendingEvent = NO_PENDING_EVENT;
+        text = null;
+    }
+
+    @Override
+    public int next()
+            throws ParseException {
+        if (reader == null || eventType == END_DOCUMENT) {
+            throw new ParseException("There are no more events to read.");
+        }
+        if (eventType == END_ELEMENT) {
+            depth--;
+        }
+        text = null;
+        if (pendingEvent != NO_PENDING_EVENT) {
+            int event = pendingEvent;
+            pendingEvent = NO_PENDING_EVENT;
+            return report(event);
+        }
+
+        textBuilder.setLength(0);
+        boolean hasText = false;
+        try {
+            while (true) {
+                int event = reader.next();
+                switch (event) {
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (depth > 0) {
+                            textBuilder.append(reader.getTextCharacters(),
+                                               reader.getTextStart(),
+                                               reader.getTextLength());
+                            hasText = true;
+                        }
+                        break;
+                    case XMLStreamConstants.START_ELEMENT:
+                    case XMLStreamConstants.END_ELEMENT:
+                    case XMLStreamConstants.END_DOCUMENT:
+                        if (hasText) {
+                            pendingEvent = event;
+                            text = textBuilder.toString();
+                            return eventType = CHARACTERS;
+                        }
+                        return report(event);
+                    default:
+                        // Comments, processing instructions and the document type declaration.
+                        break;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new ParseException(e);
+        }
+    }
+
+    private int report(int staxEvent) {
+        switch (staxEvent) {
+            case XMLStreamConstants.START_ELEMENT:
+                depth++;
+                eventType = START_ELEMENT;
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                eventType = END_ELEMENT;
+                break;
+            default:
+                eventType = END_DOCUMENT;
+                closeReader();
+                break;
+        }
+        return eventType;
+    }
+
+    @Override
+    public int nextTag()
+            throws ParseException {
+        int event = next();
+        if (event == CHARACTERS && isWhiteSpace()) {
+            event = next();
+        }
+        if (event != START_ELEMENT && event != END_ELEMENT) {
+            throw new ParseException("Expected a start or end tag.");
+        }
+        return event;
+    }
+
+    @Override
+    public int getEventType() {
+        return eventType;
+    }
+
+    @Override
+    public boolean isWhiteSpace() {
+        if (eventType != CHARACTERS) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != ' ' && c != '\n' && c != '\t' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String getText() {
+        return eventType == CHARACTERS ? text : null;
+    }
+
+    @Override
+    public String getEncoding() {
+        return reader != null ? reader.getEncoding() : null;
+    }
+
+    @Override
+    public String getLocalName() {
+        return hasName() ? reader.getLocalName() : null;
+    }
+
+    @Override
+    public String getPrefix() {
+        return hasName() ? reader.getPrefix() : null;
+    }
+
+    @Override
+    public boolean hasName() {
+        return eventType == START_ELEMENT || eventType == END_ELEMENT;
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return eventType == START_ELEMENT ? reader.getAttributeCount() : -1;
+    }
+
+    @Override
+    public String getAttributeValue(String namespaceURI, String localName) {
+        if (eventType != START_ELEMENT) {
+            return null;
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (localName.equals(getAttributeName(i))) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+        return "";
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+        return reader.getAttributeLocalName(index);
+    }
+
+    @Override
+    public String getAttributePrefix(int index) {
+        return reader.getAttributePrefix(index);
+    }
+
+    @Override
+    public String getAttributeType(int index) {
+        return reader.getAttributeType(index);
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        return reader.getAttributeValue(index);
+    }
+
+    private void closeReader() {
+        if (reader == null) {
+            return;
+        }
+        try {
+            // This does not close the underlying stream, which is the caller's responsibility.
+            reader.close();
+        } catch (XMLStreamException e) {
+            e.printStackTrace();
+        }
+        reader = null;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 Workday, Inc.
+ *
+ * This software is available under the MIT license.
+ * Please see the LICENSE.txt file in this project.
+ */
+
+package com.workday.autoparse.xml.stax;
+
+import com.workday.autoparse.xml.context.XmlParserSettingsBuilder;
+import com.workday.autoparse.xml.parser.XmlStreamReader;
+import com.workday.autoparse.xml.parser.XmlStreamReaderProvider;
+
+import javax.xml.stream.XMLInputFactory;
+
+/**
+ * An {@link XmlStreamReaderProvider} that reads documents with whichever StAX implementation
+ * {@link XMLInputFactory#newInstance()} finds, such as Woodstox or Aalto if they are on the
+ * classpath. This provider is registered with {@link java.util.ServiceLoader}, so simply adding
+ * this artifact to the classpath is enough to use it, unless a different backend is set with
+ * {@link XmlParserSettingsBuilder#withReaderBackend}.
+ *
+ * @since 1.3
+ */
+public class StaxXmlStreamReaderProvider implements XmlStreamReaderProvider {
+
+    private final XMLInputFactory inputFactory;
+
+    public StaxXmlStreamReaderProvider() {
+        this(newDefaultInputFactory());
+    }
+
+    /**
+     * @param inputFactory The factory to create readers with. It should be configured to not be
+     * namespace aware, so that element and attribute names include their prefixes.
+     */
+    public StaxXmlStreamReaderProvider(XMLInputFactory inputFactory) {
+        this.inputFactory = inputFactory;
+    }
+
+    private static XMLInputFactory newDefaultInputFactory() {
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        // Document type declarations are not used for parsing; also refuse external entities.
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return inputFactory;
+    }
+
+    @Override
+    public XmlStreamReader newXmlStreamReader() {
+        return new StaxXmlStreamReader(inputFactory);
+    }
+}